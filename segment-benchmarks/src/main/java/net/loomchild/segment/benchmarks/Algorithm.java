@@ -0,0 +1,108 @@
+package net.loomchild.segment.benchmarks;
+
+import static net.loomchild.segment.util.Util.readAll;
+
+import java.io.Reader;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxTextIterator;
+import net.loomchild.segment.srx.legacy.AccurateSrxTextIterator;
+import net.loomchild.segment.srx.legacy.FastTextIterator;
+import net.loomchild.segment.srx.legacy.ScannerSrxTextIterator;
+
+/**
+ * Segmentation algorithms available in benchmarks, the same as in segment-ui.
+ * 
+ * @author loomchild
+ */
+public enum Algorithm {
+	
+	ultimate {
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, CharSequence text, 
+				Map<String, Object> parameterMap) {
+			return new SrxTextIterator(document, languageCode, text, parameterMap);
+		}
+
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, Reader reader, 
+				Map<String, Object> parameterMap) {
+			return new SrxTextIterator(document, languageCode, reader, parameterMap);
+		}
+	},
+	
+	fast {
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, CharSequence text, 
+				Map<String, Object> parameterMap) {
+			return new FastTextIterator(document, languageCode, text, parameterMap);
+		}
+
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, Reader reader, 
+				Map<String, Object> parameterMap) {
+			return new FastTextIterator(document, languageCode, reader, parameterMap);
+		}
+	},
+
+	accurate {
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, CharSequence text, 
+				Map<String, Object> parameterMap) {
+			return new AccurateSrxTextIterator(document, languageCode, text, parameterMap);
+		}
+
+		/**
+		 * Accurate algorithm cannot read from a stream, so the whole text
+		 * is preloaded first, like in segment-ui.
+		 */
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, Reader reader, 
+				Map<String, Object> parameterMap) {
+			return createTextIterator(document, languageCode, readAll(reader), 
+					parameterMap);
+		}
+	},
+
+	scanner {
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, CharSequence text, 
+				Map<String, Object> parameterMap) {
+			return new ScannerSrxTextIterator(document, languageCode, 
+					text.toString(), parameterMap);
+		}
+
+		public TextIterator createTextIterator(SrxDocument document, 
+				String languageCode, Reader reader, 
+				Map<String, Object> parameterMap) {
+			return new ScannerSrxTextIterator(document, languageCode, reader, parameterMap);
+		}
+	};
+
+	/**
+	 * Creates text iterator segmenting text held in memory.
+	 * @param document SRX document
+	 * @param languageCode text language code
+	 * @param text text
+	 * @param parameterMap additional segmentation parameters
+	 * @return text iterator
+	 */
+	public abstract TextIterator createTextIterator(SrxDocument document, 
+			String languageCode, CharSequence text, 
+			Map<String, Object> parameterMap);
+
+	/**
+	 * Creates text iterator segmenting text read from a stream.
+	 * @param document SRX document
+	 * @param languageCode text language code
+	 * @param reader reader from which text will be read
+	 * @param parameterMap additional segmentation parameters
+	 * @return text iterator
+	 */
+	public abstract TextIterator createTextIterator(SrxDocument document, 
+			String languageCode, Reader reader, 
+			Map<String, Object> parameterMap);
+
+}
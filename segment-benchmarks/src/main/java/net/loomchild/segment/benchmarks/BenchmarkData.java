@@ -0,0 +1,222 @@
+package net.loomchild.segment.benchmarks;
+
+import static net.loomchild.segment.util.Util.getReader;
+import static net.loomchild.segment.util.Util.getResourceStream;
+import static net.loomchild.segment.util.Util.readAll;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import net.loomchild.segment.srx.LanguageRule;
+import net.loomchild.segment.srx.Rule;
+import net.loomchild.segment.srx.SrxDocument;
+
+/**
+ * Generates benchmark input. Text and rules are generated the same way as
+ * in segment-ui performance mode (--generate-text and --generate-srx), but
+ * using fixed random seed, so consecutive runs are comparable.
+ * 
+ * @author loomchild
+ */
+public class BenchmarkData {
+
+	public static final String DEFAULT_SRX = "net/loomchild/segment/res/xml/default.srx";
+
+	/**
+	 * Language code used in benchmarks. Generated rules match any language.
+	 */
+	public static final String LANGUAGE = "en";
+	
+	/**
+	 * Special value of a rule parameter meaning that default SRX 
+	 * should be used instead of generated rules.
+	 */
+	public static final String DEFAULT = "default";
+
+	public static final int WORD_LENGTH = 2;
+	public static final int SENTENCE_LENGTH = 5;
+	
+	public static final long SEED = 2008L;
+
+	private Random random;
+	
+	public BenchmarkData() {
+		this.random = new Random(SEED);
+	}
+
+	/**
+	 * Generates random text consisting of words and sentences.
+	 * @param textLength text length in kilobytes
+	 * @return generated text
+	 */
+	public String generateText(int textLength) {
+		if (textLength < 1) {
+			throw new IllegalArgumentException("Text too short: " + textLength + "K.");
+		}
+
+		int wordCount = textLength * 1024 / (WORD_LENGTH + 1);
+		StringBuilder stringBuilder = new StringBuilder();
+		for (int i = 0; i < wordCount; ++i) {
+			stringBuilder.append(' ');
+			String word = generateWord(WORD_LENGTH);
+			stringBuilder.append(word);
+			if ((i % SENTENCE_LENGTH) == 0) {
+				stringBuilder.append('.');
+			}
+		}
+
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * Creates SRX document described by rule specification.
+	 * @param rules {@link #DEFAULT} or rule count and rule length separated 
+	 * 		by a comma
+	 * @return SRX document
+	 * @see #generateDocument(int, int)
+	 */
+	public SrxDocument createDocument(String rules) {
+		if (DEFAULT.equals(rules)) {
+			return Parser.sax.createParser().parse(
+					new StringReader(readDefaultSrx()));
+		} else {
+			int[] parameters = parseRules(rules);
+			return generateDocument(parameters[0], parameters[1]);
+		}
+	}
+
+	/**
+	 * Creates SRX 2.0 document text described by rule specification.
+	 * @param rules {@link #DEFAULT} or rule count and rule length separated 
+	 * 		by a comma
+	 * @return SRX document text
+	 * @see #generateSrx(int, int)
+	 */
+	public String createSrx(String rules) {
+		if (DEFAULT.equals(rules)) {
+			return readDefaultSrx();
+		} else {
+			int[] parameters = parseRules(rules);
+			return generateSrx(parameters[0], parameters[1]);
+		}
+	}
+
+	/**
+	 * Generates SRX document containing given number of exception rules 
+	 * followed by single end of sentence break rule.
+	 * @param ruleCount exception rule count
+	 * @param ruleLength number of alternative words in each rule
+	 * @return generated document
+	 */
+	public SrxDocument generateDocument(int ruleCount, int ruleLength) {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		for (int i = 0; i < ruleCount; ++i) {
+			languageRule.addRule(generateRule(false, ruleLength));
+		}
+		languageRule.addRule(new Rule(true, "\\.", " "));
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+
+	/**
+	 * Generates SRX document containing given number of break rules, 
+	 * each one breaking after a few words ending a sentence. 
+	 * Used to measure how segmentation scales with number of break rules, 
+	 * as every break rule has its own matcher.
+	 * @param ruleCount break rule count
+	 * @param ruleLength number of alternative words in each rule
+	 * @return generated document
+	 */
+	public SrxDocument generateBreakDocument(int ruleCount, int ruleLength) {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		for (int i = 0; i < ruleCount; ++i) {
+			languageRule.addRule(generateRule(true, ruleLength));
+		}
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+
+	/**
+	 * Generates the same rules as {@link #generateDocument(int, int)}
+	 * but as SRX 2.0 document text, so it can be used to measure parsing.
+	 * @param ruleCount exception rule count
+	 * @param ruleLength number of alternative words in each rule
+	 * @return generated SRX document text
+	 */
+	public String generateSrx(int ruleCount, int ruleLength) {
+		SrxDocument document = generateDocument(ruleCount, ruleLength);
+		LanguageRule languageRule = 
+			document.getLanguageMapList().get(0).getLanguageRule();
+		
+		StringBuilder srx = new StringBuilder();
+		srx.append("<?xml version=\"1.0\"?>\n");
+		srx.append("<srx version=\"2.0\" xmlns=\"http://www.lisa.org/srx20\">\n");
+		srx.append("<header segmentsubflows=\"yes\" cascade=\"yes\"/>\n");
+		srx.append("<body>\n");
+		srx.append("<languagerules>\n");
+		srx.append("<languagerule languagerulename=\"Generated\">\n");
+		for (Rule rule : languageRule.getRuleList()) {
+			srx.append("<rule break=\"" + (rule.isBreak() ? "yes" : "no") + "\">");
+			srx.append("<beforebreak>" + rule.getBeforePattern() + "</beforebreak>");
+			srx.append("<afterbreak>" + rule.getAfterPattern() + "</afterbreak>");
+			srx.append("</rule>\n");
+		}
+		srx.append("</languagerule>\n");
+		srx.append("</languagerules>\n");
+		srx.append("<maprules>\n");
+		srx.append("<languagemap languagepattern=\".*\" languagerulename=\"Generated\"/>\n");
+		srx.append("</maprules>\n");
+		srx.append("</body>\n");
+		srx.append("</srx>\n");
+		return srx.toString();
+	}
+
+	/**
+	 * @return default SRX document text
+	 */
+	public String readDefaultSrx() {
+		return readAll(getReader(getResourceStream(DEFAULT_SRX)));
+	}
+
+	private int[] parseRules(String rules) {
+		String[] parts = rules.split(",");
+		if (parts.length != 2) {
+			throw new IllegalArgumentException("Cannot parse rule count and length: " + rules + ".");
+		}
+		int ruleCount = Integer.parseInt(parts[0].trim());
+		if (ruleCount < 0) {
+			throw new IllegalArgumentException("Rule count must be positive: " + ruleCount + ".");
+		}
+		int ruleLength = Integer.parseInt(parts[1].trim());
+		if (ruleLength < 1) {
+			throw new IllegalArgumentException("Rule length must be greater or equal to one: " + ruleLength + ".");
+		}
+		return new int[] {ruleCount, ruleLength};
+	}
+
+	private Rule generateRule(boolean breaking, int length) {
+		StringBuilder regex = new StringBuilder();
+		regex.append('(');
+		for (int i = 0; i < length; ++i) {
+			String word = generateWord(WORD_LENGTH);
+			regex.append(word);
+			if (i != length - 1) {
+				regex.append('|');
+			}
+		}
+		regex.append(')');
+		return new Rule(breaking, regex + "\\.", " ");
+	}
+
+	private String generateWord(int length) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < length; ++i) {
+			int character = random.nextInt('Z' - 'A' + 1) + 'A';
+			word.append((char)character);
+		}
+		return word.toString();
+	}
+
+}
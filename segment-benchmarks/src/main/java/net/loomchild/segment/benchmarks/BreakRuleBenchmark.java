@@ -0,0 +1,91 @@
+package net.loomchild.segment.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.loomchild.segment.TextIterator;
+import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxTextIterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how segmentation time scales with the number of break rules.
+ * Each break rule has its own matcher, so this shows the cost of 
+ * selecting and moving the matchers, not only of matching the patterns.
+ * With automaton all the rules are matched at once.
+ * 
+ * @author loomchild
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BreakRuleBenchmark {
+
+	@Param({"ultimate"})
+	public Algorithm algorithm;
+
+	/**
+	 * Text length in kilobytes.
+	 */
+	@Param({"100"})
+	public int textLength;
+	
+	/**
+	 * Generated break rule count.
+	 */
+	@Param({"10", "100", "500"})
+	public int ruleCount;
+
+	/**
+	 * Number of alternative words in each generated rule.
+	 */
+	@Param({"10"})
+	public int ruleLength;
+	
+	/**
+	 * Match break rules by finite automaton.
+	 */
+	@Param({"false", "true"})
+	public boolean automaton;
+
+	private String text;
+	
+	private SrxDocument document;
+	
+	private Map<String, Object> parameterMap;
+	
+	@Setup
+	public void setUp() {
+		BenchmarkData data = new BenchmarkData();
+		this.text = data.generateText(textLength);
+		this.document = data.generateBreakDocument(ruleCount, ruleLength);
+		this.parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.AUTOMATON_PARAMETER, automaton);
+	}
+
+	@Benchmark
+	public void segment(Blackhole blackhole) {
+		TextIterator textIterator = algorithm.createTextIterator(document, 
+				BenchmarkData.LANGUAGE, text, parameterMap);
+		while (textIterator.hasNext()) {
+			blackhole.consume(textIterator.next());
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package net.loomchild.segment.benchmarks;
+
+import net.loomchild.segment.srx.SrxParser;
+import net.loomchild.segment.srx.io.Srx2Parser;
+import net.loomchild.segment.srx.io.Srx2SaxParser;
+import net.loomchild.segment.srx.io.Srx2StaxParser;
+
+/**
+ * SRX parsers available in benchmarks, the same as in segment-ui.
+ * 
+ * @author loomchild
+ */
+public enum Parser {
+
+	jaxb {
+		public SrxParser createParser() {
+			return new Srx2Parser();
+		}
+	},
+	
+	sax {
+		public SrxParser createParser() {
+			return new Srx2SaxParser();
+		}
+	},
+	
+	stax {
+		public SrxParser createParser() {
+			return new Srx2StaxParser();
+		}
+	};
+
+	/**
+	 * @return new parser instance
+	 */
+	public abstract SrxParser createParser();
+
+}
@@ -0,0 +1,60 @@
+package net.loomchild.segment.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures SRX document load time of all the parsers.
+ * 
+ * @author loomchild
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SrxParserBenchmark {
+
+	@Param({"jaxb", "sax", "stax"})
+	public Parser parser;
+
+	/**
+	 * {@link BenchmarkData#DEFAULT} or generated rule count and length 
+	 * separated by a comma.
+	 */
+	@Param({BenchmarkData.DEFAULT, "1000,10"})
+	public String rules;
+	
+	private String srx;
+	
+	private SrxParser srxParser;
+
+	@Setup
+	public void setUp() {
+		BenchmarkData data = new BenchmarkData();
+		this.srx = data.createSrx(rules);
+		this.srxParser = parser.createParser();
+	}
+	
+	@Benchmark
+	public SrxDocument parse() {
+		return srxParser.parse(new StringReader(srx));
+	}
+
+}
@@ -0,0 +1,91 @@
+package net.loomchild.segment.benchmarks;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.loomchild.segment.TextIterator;
+import net.loomchild.segment.srx.SrxDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures segmentation time of all the algorithms, both when text is 
+ * held in memory and when it is read from a stream.
+ * Rule matchers and patterns are cached in SRX document, so the
+ * measurement reflects segmentation of a subsequent document, not the first 
+ * one. 
+ * 
+ * @author loomchild
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextIteratorBenchmark {
+
+	@Param({"ultimate", "fast", "accurate", "scanner"})
+	public Algorithm algorithm;
+
+	/**
+	 * Text length in kilobytes.
+	 */
+	@Param({"100"})
+	public int textLength;
+	
+	/**
+	 * {@link BenchmarkData#DEFAULT} or generated rule count and length 
+	 * separated by a comma.
+	 */
+	@Param({BenchmarkData.DEFAULT, "10,10"})
+	public String rules;
+
+	private String text;
+	
+	private SrxDocument document;
+	
+	private Map<String, Object> parameterMap;
+	
+	@Setup
+	public void setUp() {
+		BenchmarkData data = new BenchmarkData();
+		this.text = data.generateText(textLength);
+		this.document = data.createDocument(rules);
+		this.parameterMap = new HashMap<String, Object>();
+	}
+
+	@Benchmark
+	public void segmentCharSequence(Blackhole blackhole) {
+		TextIterator textIterator = algorithm.createTextIterator(document, 
+				BenchmarkData.LANGUAGE, text, parameterMap);
+		segment(textIterator, blackhole);
+	}
+
+	@Benchmark
+	public void segmentReader(Blackhole blackhole) {
+		TextIterator textIterator = algorithm.createTextIterator(document, 
+				BenchmarkData.LANGUAGE, new StringReader(text), parameterMap);
+		segment(textIterator, blackhole);
+	}
+
+	private void segment(TextIterator textIterator, Blackhole blackhole) {
+		while (textIterator.hasNext()) {
+			blackhole.consume(textIterator.next());
+		}
+	}
+
+}
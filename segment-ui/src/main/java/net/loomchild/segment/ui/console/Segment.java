@@ -5,7 +5,6 @@ import static net.loomchild.segment.util.Util.getFileOutputStream;
 import static net.loomchild.segment.util.Util.getReader;
 import static net.loomchild.segment.util.Util.getResourceStream;
 import static net.loomchild.segment.util.Util.getWriter;
-import static net.loomchild.segment.util.Util.readAll;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,6 +12,7 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -21,6 +21,8 @@ import net.loomchild.segment.srx.io.Srx2Parser;
 import net.loomchild.segment.srx.io.Srx2SaxParser;
 import net.loomchild.segment.srx.io.Srx2StaxParser;
 import net.loomchild.segment.srx.io.SrxAnyTransformer;
+import net.loomchild.segment.util.ChannelReader;
+import net.loomchild.segment.util.CompactCharSequence;
 import net.loomchild.segment.util.NullWriter;
 import net.loomchild.segment.util.Version;
 import net.loomchild.segment.TextIterator;
@@ -56,6 +58,8 @@ public class Segment {
 
 	private static final Log log = LogFactory.getLog(Segment.class);
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	private enum Algorithm {
 		accurate, fast, ultimate, scanner;
 	}
@@ -78,7 +82,7 @@ public class Segment {
 	public static final String TEST_SUITE_CLASS_NAME = "net.loomchild.segment.SegmentTestSuite";
 
 	private Random random;
-	private String text;
+	private CharSequence text;
 	private boolean stdinReader;
 	private boolean stdoutWriter;
 
@@ -142,6 +146,9 @@ public class Segment {
 		options.addOption(null, "lookbehind", true, "Maximum length of a regular expression construct that occurs in lookbehind. Default: " + SrxTextIterator.DEFAULT_MAX_LOOKBEHIND_CONSTRUCT_LENGTH + ".");
 		options.addOption(null, "buffer-length", true, "Length of a buffer when reading text as a stream. Default: " + SrxTextIterator.DEFAULT_BUFFER_LENGTH + ".");
 		options.addOption(null, "margin", true, "If rule is matched but its position is in the margin (position > bufferLength - margin) then the matching is ignored. Default " + SrxTextIterator.DEFAULT_MARGIN + ".");
+		options.addOption(null, "automaton", false, "Match regular break rules by finite automaton instead of regular expression engine.");
+		options.addOption(null, "reverse-exception", false, "Match exception rules backwards instead of in lookbehind, so their length is not limited.");
+		options.addOption(null, "low-latency", false, "Output each segment as soon as its end is confirmed instead of waiting until the buffer is full. Consider using small --margin with rules that have unbounded after patterns.");
 		options.addOption(null, "generate-text", true, "Generate random input with given length in KB.");
 		options.addOption(null, "generate-srx", true, "Generate random segmentation rules with given rule count and rule length separated by a comma.");
 		options.addOption("h", "help", false, "Print this help.");
@@ -240,7 +247,7 @@ public class Segment {
 	}
 
 	private Reader createStandardInputReader() {
-		Reader reader = getReader(System.in);
+		Reader reader = new ChannelReader(System.in, UTF_8);
 		// Indicate that our reader is standard input to avoid closing it.
 		stdinReader = true;
 		return reader;
@@ -248,7 +255,7 @@ public class Segment {
 
 	private Reader createFileReader(String fileName) throws IOException {
 		InputStream inputStream = getFileInputStream(fileName);
-		Reader reader = getReader(inputStream);
+		Reader reader = new ChannelReader(inputStream, UTF_8);
 
 		return reader;
 	}
@@ -269,7 +276,7 @@ public class Segment {
 			}
 		}
 
-		Reader reader = new StringReader(text);
+		Reader reader = new StringReader(text.toString());
 		return reader;
 	}
 
@@ -539,6 +546,24 @@ public class Segment {
 					SrxTextIterator.MARGIN_PARAMETER,
 					Integer.parseInt(commandLine.getOptionValue("margin")));
 		}
+		if (commandLine.hasOption("automaton")) {
+			if (algorithm != Algorithm.ultimate) {
+				throw new IllegalArgumentException("--automaton parameter can be only used with ultimate algorithm.");
+			}
+			parameterMap.put(SrxTextIterator.AUTOMATON_PARAMETER, true);
+		}
+		if (commandLine.hasOption("reverse-exception")) {
+			if (algorithm != Algorithm.ultimate) {
+				throw new IllegalArgumentException("--reverse-exception parameter can be only used with ultimate algorithm.");
+			}
+			parameterMap.put(SrxTextIterator.REVERSE_EXCEPTION_PARAMETER, true);
+		}
+		if (commandLine.hasOption("low-latency")) {
+			if (algorithm != Algorithm.ultimate || commandLine.hasOption('r')) {
+				throw new IllegalArgumentException("--low-latency parameter can be only used with ultimate algorithm when reading text from a stream.");
+			}
+			parameterMap.put(SrxTextIterator.LOW_LATENCY_PARAMETER, true);
+		}
 
 		if (profile) {
 			System.out.print("    Creating text iterator... ");
@@ -566,7 +591,7 @@ public class Segment {
 			}
 		} else if (algorithm == Algorithm.scanner) {
 			if (text != null) {
-				textIterator = new ScannerSrxTextIterator(document, languageCode, text, parameterMap);
+				textIterator = new ScannerSrxTextIterator(document, languageCode, text.toString(), parameterMap);
 			} else {
 				textIterator = new ScannerSrxTextIterator(document, languageCode, reader, parameterMap);
 			}
@@ -598,6 +623,8 @@ public class Segment {
 			System.out.print("    Performing segmentation... ");
 		}
 
+		boolean lowLatency = commandLine.hasOption("low-latency");
+
 		long start = System.currentTimeMillis();
 
 		while (textIterator.hasNext()) {
@@ -605,6 +632,9 @@ public class Segment {
 			writer.write(beginSegment);
 			writer.write(segment);
 			writer.write(endSegment);
+			if (lowLatency) {
+				writer.flush();
+			}
 		}
 
 		if (profile) {
@@ -613,13 +643,13 @@ public class Segment {
 
 	}
 
-	private String preloadText(Reader reader, boolean profile) {
+	private CharSequence preloadText(Reader reader, boolean profile) {
 		if (text == null) {
 			if (profile) {
 				System.out.print("Preloading text... ");
 			}
 			long start = System.currentTimeMillis();
-			text = readAll(reader);
+			text = CompactCharSequence.read(reader);
 			if (profile) {
 				System.out.println(System.currentTimeMillis() - start + " ms.");
 			}
@@ -0,0 +1,29 @@
+package net.loomchild.segment;
+
+/**
+ * Boundary iterator interface. Finds subsequent segments in the text 
+ * like {@link TextIterator}, but instead of creating segment strings
+ * returns only the positions where they end, so no memory is allocated 
+ * for each segment. 
+ * Segments are adjacent - each one starts where the previous one ends, and 
+ * the first one starts at the beginning of the text.
+ * 
+ * @author loomchild
+ */
+public interface BoundaryIterator {
+
+	/**
+	 * Finds the next segment in the text.
+	 * 
+	 * @return position where the next segment ends, counted from the 
+	 *         beginning of the whole input (also when the text is read 
+	 *         from a stream), or -1 if end of text has been reached
+	 */
+	public int nextBoundary();
+
+	/**
+	 * @return true if there are more segments
+	 */
+	public boolean hasNext();
+
+}
@@ -0,0 +1,134 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents alternative of nodes, for example "a|b".
+ * 
+ * @author loomchild
+ */
+class AlternationNode extends Node {
+	
+	private List<Node> nodeList;
+	
+	public AlternationNode(List<Node> nodeList) {
+		this.nodeList = nodeList;
+	}
+	
+	public List<Node> getNodeList() {
+		return nodeList;
+	}
+
+	public int getMinLength() {
+		int length = Regex.INFINITY;
+		for (Node node : nodeList) {
+			length = Math.min(length, node.getMinLength());
+		}
+		return length;
+	}
+
+	public int getMaxLength() {
+		int length = 0;
+		for (Node node : nodeList) {
+			length = Math.max(length, node.getMaxLength());
+		}
+		return length;
+	}
+
+	public int getMaxReadLength() {
+		int length = 0;
+		for (Node node : nodeList) {
+			length = Math.max(length, node.getMaxReadLength());
+		}
+		return length;
+	}
+
+	public boolean isBoundarySensitive() {
+		for (Node node : nodeList) {
+			if (node.isBoundarySensitive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public CharacterSet getFirstSet() {
+		List<CharacterSet> setList = new ArrayList<CharacterSet>();
+		for (Node node : nodeList) {
+			setList.add(node.getFirstSet());
+		}
+		return CharacterSet.createUnion(setList);
+	}
+
+	public CharacterSet getLastSet() {
+		List<CharacterSet> setList = new ArrayList<CharacterSet>();
+		for (Node node : nodeList) {
+			setList.add(node.getLastSet());
+		}
+		return CharacterSet.createUnion(setList);
+	}
+
+	public List<String> getLiterals(int maxCount) {
+		List<String> literalList = new ArrayList<String>();
+		for (Node node : nodeList) {
+			List<String> nodeLiteralList = node.getLiterals(maxCount);
+			if (nodeLiteralList == null || 
+					literalList.size() + nodeLiteralList.size() > maxCount) {
+				return null;
+			}
+			literalList.addAll(nodeLiteralList);
+		}
+		return literalList;
+	}
+
+	public Node reverse() {
+		List<Node> reversedList = new ArrayList<Node>();
+		for (Node node : nodeList) {
+			reversedList.add(node.reverse());
+		}
+		return new AlternationNode(reversedList);
+	}
+
+	public Node reduceStart() {
+		List<Node> reducedList = new ArrayList<Node>();
+		for (Node node : nodeList) {
+			Node reducedNode = node.reduceStart();
+			if (reducedNode == null) {
+				return null;
+			}
+			reducedList.add(reducedNode);
+		}
+		return new AlternationNode(reducedList);
+	}
+
+	public Node finitize(int infinity) {
+		List<Node> finiteList = new ArrayList<Node>();
+		for (Node node : nodeList) {
+			finiteList.add(node.finitize(infinity));
+		}
+		return new AlternationNode(finiteList);
+	}
+
+	public int addTo(Nfa nfa, int state) {
+		int end = nfa.addState();
+		for (Node node : nodeList) {
+			int start = nfa.addState();
+			nfa.addEmptyTransition(state, start);
+			nfa.addEmptyTransition(node.addTo(nfa, start), end);
+		}
+		return end;
+	}
+
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (int i = 0; i < nodeList.size(); ++i) {
+			if (i > 0) {
+				string.append('|');
+			}
+			string.append(nodeList.get(i));
+		}
+		return string.toString();
+	}
+
+}
@@ -0,0 +1,69 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents zero-width construct, for example line or word boundary.
+ * 
+ * @author loomchild
+ */
+class AssertionNode extends Node {
+	
+	private String source;
+	
+	private boolean boundarySensitive;
+	
+	/**
+	 * Creates node.
+	 * @param source regular expression of the node
+	 * @param boundarySensitive true if construct looks before its position
+	 */
+	public AssertionNode(String source, boolean boundarySensitive) {
+		this.source = source;
+		this.boundarySensitive = boundarySensitive;
+	}
+
+	public int getMinLength() {
+		return 0;
+	}
+
+	public int getMaxLength() {
+		return 0;
+	}
+
+	public int getMaxReadLength() {
+		// Most of the assertions need to see next character or end of text.
+		if (source.equals("\\A") || source.equals("\\G")) {
+			return 0;
+		} else {
+			return 1;
+		}
+	}
+
+	public boolean isBoundarySensitive() {
+		return boundarySensitive;
+	}
+
+	public CharacterSet getFirstSet() {
+		return CharacterSet.EMPTY;
+	}
+
+	public CharacterSet getLastSet() {
+		return CharacterSet.EMPTY;
+	}
+
+	public Node reverse() {
+		// Word boundary looks at both sides, beginning of input becomes 
+		// its end. Line boundaries depend on flags and line terminators.
+		if (source.equals("\\b") || source.equals("\\B")) {
+			return this;
+		} else if (source.equals("\\A")) {
+			return new AssertionNode("\\z", false);
+		} else {
+			return super.reverse();
+		}
+	}
+
+	public String toString() {
+		return source;
+	}
+
+}
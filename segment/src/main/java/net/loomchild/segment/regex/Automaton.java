@@ -0,0 +1,313 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents deterministic finite automaton matching several regular
+ * expressions at once. Text is read only once, character by character,
+ * without backtracking, so matching time is linear in text length
+ * and does not depend on expressions. Only regular expressions
+ * can be matched, see {@link Regex#isRegular()}.
+ *
+ * Anchored automaton matches expressions starting at given position,
+ * unanchored automaton matches expressions starting anywhere
+ * after given position. Automaton finds all the positions where
+ * a match ends, regardless of greedy or lazy quantifiers.
+ *
+ * Deterministic states are computed lazily from nondeterministic
+ * automaton when they are reached for the first time, and remembered
+ * together with transitions between them. When there are more than
+ * {@link #MAX_STATE_COUNT} states all of them are forgotten together with
+ * their transitions and computed again, so memory is bounded. 
+ * Automaton can be used by many threads at once.
+ *
+ * @author loomchild
+ */
+public class Automaton {
+
+	/**
+	 * Maximum number of remembered deterministic states.
+	 */
+	public static final int MAX_STATE_COUNT = 4096;
+
+	private static final int PAGE_COUNT = 256;
+
+	private static final int PAGE_SIZE = 256;
+
+	private Nfa nfa;
+
+	private int startState;
+
+	private boolean anchored;
+
+	private Map<StateKey, State> stateMap;
+
+	private State initialState;
+
+	/**
+	 * Creates automaton matching given expressions. Each expression
+	 * is identified by its index on the list.
+	 * @param regexList list of expressions, null elements are ignored
+	 * @param anchored true if expressions must start at given position
+	 * @throws UnsupportedRegexException if any of expressions
+	 * 		is not regular
+	 */
+	public Automaton(List<Regex> regexList, boolean anchored) {
+		this.nfa = new Nfa();
+		this.startState = nfa.addState();
+		this.anchored = anchored;
+		for (int i = 0; i < regexList.size(); ++i) {
+			Regex regex = regexList.get(i);
+			if (regex != null) {
+				int state = nfa.addState();
+				nfa.addEmptyTransition(startState, state);
+				state = regex.getNode().addTo(nfa, state);
+				nfa.setAcceptId(state, i);
+			}
+		}
+		this.stateMap = new HashMap<StateKey, State>();
+		this.initialState = getState(getClosure(new int[] {startState}));
+	}
+
+	/**
+	 * @return true if expressions must start at given position
+	 */
+	public boolean isAnchored() {
+		return anchored;
+	}
+
+	/**
+	 * Creates matcher finding ends of expression matches in given text.
+	 * @param text text
+	 * @return matcher
+	 */
+	public AutomatonMatcher matcher(CharSequence text) {
+		return new AutomatonMatcher(this, text);
+	}
+
+	/**
+	 * Returns true if any of the expressions matches text starting at
+	 * given position. Text is read only until first match is found or
+	 * until no match is possible.
+	 * Automaton must be anchored.
+	 * @param text text
+	 * @param start start position
+	 * @return true if expression matches
+	 */
+	public boolean lookingAt(CharSequence text, int start) {
+		if (!anchored) {
+			throw new IllegalStateException("Automaton is not anchored.");
+		}
+		State state = initialState;
+		int position = start;
+		while (state.acceptIds.length == 0) {
+			if (state.nfaStates.length == 0 || position >= text.length()) {
+				return false;
+			}
+			int codePoint = Character.codePointAt(text, position);
+			position += Character.charCount(codePoint);
+			state = next(state, codePoint);
+		}
+		return true;
+	}
+
+	/**
+	 * @return initial state
+	 */
+	State getInitialState() {
+		return initialState;
+	}
+
+	/**
+	 * Returns state after reading given character. Transitions between
+	 * states are remembered, if they are already known no synchronization
+	 * is needed.
+	 * @param state current state
+	 * @param codePoint character
+	 * @return next state
+	 */
+	State next(State state, int codePoint) {
+		if (codePoint < PAGE_COUNT * PAGE_SIZE) {
+			State[] page = state.pages[codePoint / PAGE_SIZE];
+			if (page != null) {
+				State nextState = page[codePoint % PAGE_SIZE];
+				if (nextState != null) {
+					return nextState;
+				}
+			}
+		}
+		return computeNext(state, codePoint);
+	}
+
+	/**
+	 * Computes state after reading given character and remembers
+	 * the transition. As states are immutable apart from transitions, and
+	 * each transition written to a page is valid, threads reading the
+	 * pages without synchronization at most call this method again.
+	 * @param state current state
+	 * @param codePoint character
+	 * @return next state
+	 */
+	private synchronized State computeNext(State state, int codePoint) {
+		List<Integer> targetList = new ArrayList<Integer>();
+		for (int nfaState : state.nfaStates) {
+			List<CharacterSet> setList = nfa.getSetList(nfaState);
+			for (int i = 0; i < setList.size(); ++i) {
+				if (setList.get(i).contains(codePoint)) {
+					targetList.add(nfa.getTargetList(nfaState).get(i));
+				}
+			}
+		}
+		if (!anchored) {
+			targetList.add(startState);
+		}
+		int[] targets = new int[targetList.size()];
+		for (int i = 0; i < targets.length; ++i) {
+			targets[i] = targetList.get(i);
+		}
+		State nextState = getState(getClosure(targets));
+		if (codePoint < PAGE_COUNT * PAGE_SIZE) {
+			State[] page = state.pages[codePoint / PAGE_SIZE];
+			if (page == null) {
+				page = new State[PAGE_SIZE];
+				state.pages[codePoint / PAGE_SIZE] = page;
+			}
+			page[codePoint % PAGE_SIZE] = nextState;
+		}
+		return nextState;
+	}
+
+	/**
+	 * Returns deterministic state consisting of given nondeterministic
+	 * states, creates it if it does not exist.
+	 * @param nfaStates sorted nondeterministic states
+	 * @return state
+	 */
+	private State getState(int[] nfaStates) {
+		StateKey key = new StateKey(nfaStates);
+		State state = stateMap.get(key);
+		if (state == null) {
+			if (stateMap.size() >= MAX_STATE_COUNT) {
+				clearStates();
+			}
+			state = new State(nfaStates, getAcceptIds(nfaStates));
+			stateMap.put(key, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Forgets all the states apart from initial state and all 
+	 * the transitions between them, so they are no longer reachable from 
+	 * initial state. States still referenced by matchers remain valid, 
+	 * their next states are computed again.
+	 */
+	private void clearStates() {
+		for (State state : stateMap.values()) {
+			Arrays.fill(state.pages, null);
+		}
+		stateMap.clear();
+		stateMap.put(new StateKey(initialState.nfaStates), initialState);
+	}
+
+	/**
+	 * @param nfaStates nondeterministic states
+	 * @return sorted states reachable from given states without
+	 * 		consuming any character
+	 */
+	private int[] getClosure(int[] nfaStates) {
+		BitSet closure = new BitSet(nfa.getStateCount());
+		int[] stack = new int[nfa.getStateCount()];
+		int size = 0;
+		for (int nfaState : nfaStates) {
+			if (!closure.get(nfaState)) {
+				closure.set(nfaState);
+				stack[size++] = nfaState;
+			}
+		}
+		while (size > 0) {
+			int nfaState = stack[--size];
+			for (int target : nfa.getEmptyTargetList(nfaState)) {
+				if (!closure.get(target)) {
+					closure.set(target);
+					stack[size++] = target;
+				}
+			}
+		}
+		int[] result = new int[closure.cardinality()];
+		int index = 0;
+		for (int i = closure.nextSetBit(0); i >= 0;
+				i = closure.nextSetBit(i + 1)) {
+			result[index++] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @param nfaStates nondeterministic states
+	 * @return sorted identifiers of expressions accepted by given states
+	 */
+	private int[] getAcceptIds(int[] nfaStates) {
+		List<Integer> acceptIdList = new ArrayList<Integer>();
+		for (int nfaState : nfaStates) {
+			int acceptId = nfa.getAcceptId(nfaState);
+			if (acceptId != -1) {
+				acceptIdList.add(acceptId);
+			}
+		}
+		int[] acceptIds = new int[acceptIdList.size()];
+		for (int i = 0; i < acceptIds.length; ++i) {
+			acceptIds[i] = acceptIdList.get(i);
+		}
+		Arrays.sort(acceptIds);
+		return acceptIds;
+	}
+
+	/**
+	 * Represents deterministic state. All fields are final, so the state
+	 * can be safely read by other threads without synchronization.
+	 */
+	static class State {
+
+		final int[] nfaStates;
+
+		final int[] acceptIds;
+
+		final State[][] pages;
+
+		public State(int[] nfaStates, int[] acceptIds) {
+			this.nfaStates = nfaStates;
+			this.acceptIds = acceptIds;
+			this.pages = new State[PAGE_COUNT][];
+		}
+
+	}
+
+	/**
+	 * Represents key identifying deterministic state in a map.
+	 */
+	private static class StateKey {
+
+		private int[] nfaStates;
+
+		public StateKey(int[] nfaStates) {
+			this.nfaStates = nfaStates;
+		}
+
+		public int hashCode() {
+			return Arrays.hashCode(nfaStates);
+		}
+
+		public boolean equals(Object object) {
+			return object instanceof StateKey &&
+				Arrays.equals(nfaStates, ((StateKey)object).nfaStates);
+		}
+
+	}
+
+}
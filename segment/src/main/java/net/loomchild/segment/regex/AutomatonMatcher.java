@@ -0,0 +1,114 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents matcher finding subsequent positions in the text where
+ * expressions of {@link Automaton} match ends. Each position is reported
+ * once, together with identifiers of all the expressions matching there.
+ * Matcher is not thread safe, but many matchers can use the same automaton.
+ *
+ * @author loomchild
+ */
+public class AutomatonMatcher {
+
+	private Automaton automaton;
+
+	private CharSequence text;
+
+	private Automaton.State state;
+
+	private int position;
+
+	private boolean started;
+
+	/**
+	 * Creates matcher. Matching starts at the beginning of the text.
+	 * @param automaton automaton
+	 * @param text text
+	 */
+	public AutomatonMatcher(Automaton automaton, CharSequence text) {
+		this.automaton = automaton;
+		this.text = text;
+		reset(0);
+	}
+
+	/**
+	 * Restarts matching at the beginning of given text.
+	 * @param text text
+	 */
+	public void reset(CharSequence text) {
+		this.text = text;
+		reset(0);
+	}
+
+	/**
+	 * Restarts matching at given position. Matches found afterwards
+	 * start at this position or after it, so it works like region start.
+	 * @param start start position
+	 */
+	public void reset(int start) {
+		this.state = automaton.getInitialState();
+		this.position = start;
+		this.started = false;
+	}
+
+	/**
+	 * Finds next position where any of the expressions match ends.
+	 * Position where matching starts is also checked, as expressions
+	 * can match empty string.
+	 * @return true if match has been found
+	 */
+	public boolean find() {
+		return find(text.length());
+	}
+
+	/**
+	 * Finds next position where any of the expressions match ends, 
+	 * reading the text only up to given position. If match is not found
+	 * before it, matching can be continued by calling this method again 
+	 * with greater limit, unless {@link #hitEnd()} returns true.
+	 * @param limit position where reading stops
+	 * @return true if match has been found
+	 */
+	public boolean find(int limit) {
+		if (!started) {
+			started = true;
+			if (state.acceptIds.length > 0) {
+				return true;
+			}
+		}
+		int end = Math.min(limit, text.length());
+		while (position < end && state.nfaStates.length > 0) {
+			int codePoint = Character.codePointAt(text, position);
+			position += Character.charCount(codePoint);
+			state = automaton.next(state, codePoint);
+			if (state.acceptIds.length > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if no more matches can be found, because end of text 
+	 * 		has been reached or no expression can match further
+	 */
+	public boolean hitEnd() {
+		return position >= text.length() || state.nfaStates.length == 0;
+	}
+
+	/**
+	 * @return position where last found match ends
+	 */
+	public int end() {
+		return position;
+	}
+
+	/**
+	 * @return sorted identifiers of expressions whose match ends at
+	 * 		last found position; array must not be modified
+	 */
+	public int[] getIds() {
+		return state.acceptIds;
+	}
+
+}
@@ -0,0 +1,41 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents back reference, for example "\1" or "\k&lt;name&gt;". 
+ * It can match any text, so its length is unknown.
+ * 
+ * @author loomchild
+ */
+class BackReferenceNode extends Node {
+	
+	private String source;
+	
+	public BackReferenceNode(String source) {
+		this.source = source;
+	}
+
+	public int getMinLength() {
+		return 0;
+	}
+
+	public int getMaxLength() {
+		return Regex.INFINITY;
+	}
+
+	public boolean isBoundarySensitive() {
+		return false;
+	}
+
+	public CharacterSet getFirstSet() {
+		return CharacterSet.ALL;
+	}
+
+	public CharacterSet getLastSet() {
+		return CharacterSet.ALL;
+	}
+
+	public String toString() {
+		return source;
+	}
+
+}
@@ -0,0 +1,95 @@
+package net.loomchild.segment.regex;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents construct matching single character, for example literal
+ * character, character class or predefined character class like "\w".
+ * Characters outside Basic Multilingual Plane take two chars in the text.
+ * 
+ * @author loomchild
+ */
+class CharacterNode extends Node {
+	
+	private String source;
+	
+	private CharacterSet characterSet;
+	
+	private boolean basic;
+	
+	private String literal;
+	
+	/**
+	 * Creates node.
+	 * @param source regular expression of the node
+	 * @param characterSet set of matched characters
+	 * @param basic true if all matched characters are from Basic 
+	 * 		Multilingual Plane and take one char in the text
+	 */
+	public CharacterNode(String source, CharacterSet characterSet, 
+			boolean basic) {
+		this.source = source;
+		this.characterSet = characterSet;
+		this.basic = basic;
+		this.literal = null;
+	}
+
+	/**
+	 * Creates node matching exactly one character.
+	 * @param source regular expression of the node
+	 * @param codePoint matched character
+	 */
+	public CharacterNode(String source, int codePoint) {
+		this(source, CharacterSet.createLiteral(codePoint), 
+				codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT);
+		this.literal = new String(Character.toChars(codePoint));
+	}
+	
+	public CharacterSet getCharacterSet() {
+		return characterSet;
+	}
+
+	public int getMinLength() {
+		return 1;
+	}
+
+	public int getMaxLength() {
+		return basic ? 1 : 2;
+	}
+
+	public boolean isBoundarySensitive() {
+		return false;
+	}
+
+	public CharacterSet getFirstSet() {
+		return characterSet;
+	}
+
+	public CharacterSet getLastSet() {
+		return characterSet;
+	}
+	
+	public List<String> getLiterals(int maxCount) {
+		if (literal != null && maxCount >= 1) {
+			return Collections.singletonList(literal);
+		} else {
+			return null;
+		}
+	}
+	
+	public Node reverse() {
+		return this;
+	}
+
+	public int addTo(Nfa nfa, int state) {
+		int end = nfa.addState();
+		nfa.addTransition(state, characterSet, end);
+		return end;
+	}
+	
+	public String toString() {
+		return source;
+	}
+
+}
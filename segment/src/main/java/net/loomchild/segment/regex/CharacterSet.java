@@ -0,0 +1,147 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Represents set of characters (code points) that can be matched 
+ * by a single regular expression construct, for example a character class.
+ * Membership of characters from Basic Multilingual Plane is computed
+ * once and remembered, so after a while testing it is a table lookup.
+ * Memory is safe to use by many threads at once. 
+ * 
+ * @author loomchild
+ */
+public abstract class CharacterSet {
+	
+	public static final CharacterSet EMPTY = new CharacterSet() {
+		protected boolean match(int codePoint) {
+			return false;
+		}
+	};
+
+	public static final CharacterSet ALL = new CharacterSet() {
+		protected boolean match(int codePoint) {
+			return true;
+		}
+	};
+	
+	private static final int PAGE_COUNT = 256;
+
+	private static final int PAGE_SIZE = 256;
+
+	private static final int CHARACTERS_PER_WORD = 16;
+	
+	private static final int UNKNOWN = 0;
+
+	private static final int FALSE = 1;
+
+	private static final int TRUE = 3;
+	
+	/**
+	 * Each character has two bits: {@link #UNKNOWN}, {@link #FALSE} 
+	 * or {@link #TRUE}. Pages are allocated on first access. 
+	 * As every int written to the page is a valid state lost updates 
+	 * by concurrent threads at most cause membership to be computed again.
+	 */
+	private int[][] pages;
+
+	protected CharacterSet() {
+		this.pages = new int[PAGE_COUNT][];
+	}
+
+	/**
+	 * Creates set containing one character.
+	 * @param codePoint character
+	 * @return character set
+	 */
+	public static CharacterSet createLiteral(final int codePoint) {
+		return new CharacterSet() {
+			public boolean contains(int c) {
+				return c == codePoint;
+			}
+			protected boolean match(int c) {
+				return c == codePoint;
+			}
+		};
+	}
+
+	/**
+	 * Creates set containing characters matched by given pattern, 
+	 * which should match exactly one character, for example "[a-z]" or "\w".
+	 * @param pattern pattern
+	 * @return character set
+	 */
+	public static CharacterSet createPattern(final Pattern pattern) {
+		return new CharacterSet() {
+			protected boolean match(int codePoint) {
+				String string = new String(Character.toChars(codePoint));
+				return pattern.matcher(string).matches();
+			}
+		};
+	}
+
+	/**
+	 * Creates set containing characters belonging to any of given sets.
+	 * @param setList list of character sets
+	 * @return character set
+	 */
+	public static CharacterSet createUnion(List<CharacterSet> setList) {
+		final List<CharacterSet> unionList = new ArrayList<CharacterSet>();
+		for (CharacterSet set : setList) {
+			if (set == ALL) {
+				return ALL;
+			} else if (set != EMPTY && !unionList.contains(set)) {
+				unionList.add(set);
+			}
+		}
+		if (unionList.size() == 0) {
+			return EMPTY;
+		} else if (unionList.size() == 1) {
+			return unionList.get(0);
+		} else {
+			return new CharacterSet() {
+				protected boolean match(int codePoint) {
+					for (CharacterSet set : unionList) {
+						if (set.match(codePoint)) {
+							return true;
+						}
+					}
+					return false;
+				}
+			};
+		}
+	}
+
+	/**
+	 * @param codePoint character
+	 * @return true if character belongs to this set
+	 */
+	public boolean contains(int codePoint) {
+		if (codePoint >= PAGE_COUNT * PAGE_SIZE) {
+			return match(codePoint);
+		}
+		int[] page = pages[codePoint / PAGE_SIZE];
+		if (page == null) {
+			page = new int[PAGE_SIZE / CHARACTERS_PER_WORD];
+			pages[codePoint / PAGE_SIZE] = page;
+		}
+		int index = (codePoint % PAGE_SIZE) / CHARACTERS_PER_WORD;
+		int shift = (codePoint % CHARACTERS_PER_WORD) * 2;
+		int state = (page[index] >>> shift) & TRUE;
+		if (state == UNKNOWN) {
+			state = match(codePoint) ? TRUE : FALSE;
+			page[index] = page[index] | (state << shift);
+		}
+		return state == TRUE;
+	}
+	
+	/**
+	 * Computes if character belongs to this set. Result is not remembered.
+	 * @param codePoint character
+	 * @return true if character belongs to this set
+	 */
+	protected abstract boolean match(int codePoint);
+	
+}
@@ -0,0 +1,31 @@
+package net.loomchild.segment.regex;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents inline flags, for example "(?i)". They change how the rest
+ * of the enclosing group is parsed, so the node itself matches 
+ * empty string anywhere.
+ * 
+ * @author loomchild
+ */
+class FlagsNode extends AssertionNode {
+	
+	public FlagsNode(String source) {
+		super(source, false);
+	}
+	
+	public int getMaxReadLength() {
+		return 0;
+	}
+	
+	public List<String> getLiterals(int maxCount) {
+		return Collections.singletonList("");
+	}
+	
+	public int addTo(Nfa nfa, int state) {
+		return state;
+	}
+
+}
@@ -0,0 +1,114 @@
+package net.loomchild.segment.regex;
+
+import java.util.List;
+
+/**
+ * Represents group, for example capturing group "(a)", non-capturing 
+ * group "(?:a)", atomic group "(?>a)" or group with flags "(?i:a)".
+ * 
+ * @author loomchild
+ */
+class GroupNode extends Node {
+	
+	private String prefix;
+	
+	private Node node;
+	
+	private boolean atomic;
+	
+	/**
+	 * Creates node.
+	 * @param prefix opening of the group, for example "(" or "(?:"
+	 * @param node group content
+	 * @param atomic true if this is atomic group, which never backtracks
+	 */
+	public GroupNode(String prefix, Node node, boolean atomic) {
+		this.prefix = prefix;
+		this.node = node;
+		this.atomic = atomic;
+	}
+	
+	public String getPrefix() {
+		return prefix;
+	}
+	
+	public Node getNode() {
+		return node;
+	}
+	
+	public boolean isAtomic() {
+		return atomic;
+	}
+	
+	public int getMinLength() {
+		return node.getMinLength();
+	}
+
+	public int getMaxLength() {
+		return node.getMaxLength();
+	}
+
+	public int getMaxReadLength() {
+		return node.getMaxReadLength();
+	}
+
+	public boolean isBoundarySensitive() {
+		return node.isBoundarySensitive();
+	}
+
+	public CharacterSet getFirstSet() {
+		return node.getFirstSet();
+	}
+
+	public CharacterSet getLastSet() {
+		return node.getLastSet();
+	}
+
+	public List<String> getLiterals(int maxCount) {
+		// Atomic group does not backtrack, so it does not match all 
+		// the strings in lookbehind.
+		if (atomic) {
+			return null;
+		} else {
+			return node.getLiterals(maxCount);
+		}
+	}
+
+	public Node reverse() {
+		if (atomic) {
+			return super.reverse();
+		} else {
+			return new GroupNode(prefix, node.reverse(), false);
+		}
+	}
+
+	public Node reduceStart() {
+		// Atomic group does not backtrack, so it cannot be reduced.
+		if (atomic) {
+			return this;
+		}
+		Node reducedNode = node.reduceStart();
+		if (reducedNode == null) {
+			return null;
+		} else {
+			return new GroupNode(prefix, reducedNode, false);
+		}
+	}
+
+	public Node finitize(int infinity) {
+		return new GroupNode(prefix, node.finitize(infinity), atomic);
+	}
+
+	public int addTo(Nfa nfa, int state) {
+		if (atomic) {
+			return super.addTo(nfa, state);
+		} else {
+			return node.addTo(nfa, state);
+		}
+	}
+
+	public String toString() {
+		return prefix + node + ")";
+	}
+
+}
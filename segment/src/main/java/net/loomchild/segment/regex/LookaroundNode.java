@@ -0,0 +1,75 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents lookahead or lookbehind, for example "(?=a)" or "(?&lt;!a)". 
+ * It does not consume any characters.
+ * 
+ * @author loomchild
+ */
+class LookaroundNode extends Node {
+	
+	private Node node;
+	
+	private boolean ahead;
+	
+	private boolean negative;
+	
+	public LookaroundNode(Node node, boolean ahead, boolean negative) {
+		this.node = node;
+		this.ahead = ahead;
+		this.negative = negative;
+	}
+	
+	public Node getNode() {
+		return node;
+	}
+	
+	public boolean isAhead() {
+		return ahead;
+	}
+	
+	public boolean isNegative() {
+		return negative;
+	}
+
+	public int getMinLength() {
+		return 0;
+	}
+
+	public int getMaxLength() {
+		return 0;
+	}
+
+	public int getMaxReadLength() {
+		if (ahead) {
+			return node.getMaxReadLength();
+		} else {
+			return 0;
+		}
+	}
+
+	public boolean isBoundarySensitive() {
+		return !ahead || node.isBoundarySensitive();
+	}
+
+	public CharacterSet getFirstSet() {
+		return CharacterSet.EMPTY;
+	}
+
+	public CharacterSet getLastSet() {
+		return CharacterSet.EMPTY;
+	}
+
+	public Node reverse() {
+		return new LookaroundNode(node.reverse(), !ahead, negative);
+	}
+
+	public Node finitize(int infinity) {
+		return new LookaroundNode(node.finitize(infinity), ahead, negative);
+	}
+
+	public String toString() {
+		return "(?" + (ahead ? "" : "<") + (negative ? "!" : "=") + node + ")";
+	}
+
+}
@@ -0,0 +1,116 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents nondeterministic finite automaton built from regular
+ * expression tree, see {@link Node#addTo(Nfa, int)}.
+ * States are identified by consecutive numbers, each state can have
+ * transitions on character sets and empty transitions to other states.
+ * Used by {@link Automaton} to compute deterministic states.
+ *
+ * @author loomchild
+ */
+class Nfa {
+
+	private List<List<CharacterSet>> setListList;
+
+	private List<List<Integer>> targetListList;
+
+	private List<List<Integer>> emptyTargetListList;
+
+	private List<Integer> acceptIdList;
+	
+	private int maxStateCount;
+
+	/**
+	 * Creates empty automaton with unlimited number of states.
+	 */
+	public Nfa() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates empty automaton.
+	 * @param maxStateCount maximum number of states
+	 */
+	public Nfa(int maxStateCount) {
+		this.maxStateCount = maxStateCount;
+		this.setListList = new ArrayList<List<CharacterSet>>();
+		this.targetListList = new ArrayList<List<Integer>>();
+		this.emptyTargetListList = new ArrayList<List<Integer>>();
+		this.acceptIdList = new ArrayList<Integer>();
+	}
+
+	/**
+	 * Adds new state.
+	 * @return added state
+	 * @throws UnsupportedRegexException if automaton is too big
+	 */
+	public int addState() {
+		if (getStateCount() >= maxStateCount) {
+			throw new UnsupportedRegexException("Automaton too big");
+		}
+		setListList.add(new ArrayList<CharacterSet>());
+		targetListList.add(new ArrayList<Integer>());
+		emptyTargetListList.add(new ArrayList<Integer>());
+		acceptIdList.add(-1);
+		return getStateCount() - 1;
+	}
+
+	/**
+	 * Adds transition on any character from given set.
+	 * @param state source state
+	 * @param characterSet character set
+	 * @param target target state
+	 */
+	public void addTransition(int state, CharacterSet characterSet,
+			int target) {
+		setListList.get(state).add(characterSet);
+		targetListList.get(state).add(target);
+	}
+
+	/**
+	 * Adds transition which does not consume any character.
+	 * @param state source state
+	 * @param target target state
+	 */
+	public void addEmptyTransition(int state, int target) {
+		emptyTargetListList.get(state).add(target);
+	}
+
+	/**
+	 * Marks state as accepting expression with given identifier.
+	 * @param state state
+	 * @param id expression identifier
+	 */
+	public void setAcceptId(int state, int id) {
+		acceptIdList.set(state, id);
+	}
+
+	public int getStateCount() {
+		return acceptIdList.size();
+	}
+
+	public List<CharacterSet> getSetList(int state) {
+		return setListList.get(state);
+	}
+
+	public List<Integer> getTargetList(int state) {
+		return targetListList.get(state);
+	}
+
+	public List<Integer> getEmptyTargetList(int state) {
+		return emptyTargetListList.get(state);
+	}
+
+	/**
+	 * @param state state
+	 * @return identifier of expression accepted by the state or -1
+	 */
+	public int getAcceptId(int state) {
+		return acceptIdList.get(state);
+	}
+
+}
@@ -0,0 +1,174 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents node of parsed regular expression tree.
+ * toString() returns regular expression equivalent to the node.
+ * 
+ * @author loomchild
+ */
+abstract class Node {
+	
+	/**
+	 * @return minimum number of characters matched by the node
+	 */
+	public abstract int getMinLength();
+
+	/**
+	 * @return maximum number of characters matched by the node or 
+	 * 		{@link Regex#INFINITY} if it is unbounded
+	 */
+	public abstract int getMaxLength();
+	
+	/**
+	 * Returns maximum number of characters from the match start that are
+	 * examined by the node. It can be greater than maximum match length,
+	 * for example when the node contains lookahead or end of line.
+	 * @return maximum number of examined characters or 
+	 * 		{@link Regex#INFINITY} if it is unbounded
+	 */
+	public int getMaxReadLength() {
+		return getMaxLength();
+	}
+	
+	/**
+	 * Returns true if the node looks at the text before its match,
+	 * for example lookbehind or word boundary, so the result depends on
+	 * where matcher region starts.
+	 * @return true if node is sensitive to region start
+	 */
+	public abstract boolean isBoundarySensitive();
+
+	/**
+	 * @return set of characters that can be the first character matched 
+	 * 		by the node
+	 */
+	public abstract CharacterSet getFirstSet();
+
+	/**
+	 * @return set of characters that can be the last character matched 
+	 * 		by the node
+	 */
+	public abstract CharacterSet getLastSet();
+	
+	/**
+	 * Returns all the strings matched by the node, if there are only
+	 * a few of them. 
+	 * @param maxCount maximum number of strings
+	 * @return list of strings or null if node can match more strings or 
+	 * 		it is not possible to determine them
+	 */
+	public List<String> getLiterals(int maxCount) {
+		return null;
+	}
+
+	/**
+	 * Adds states matching the node to the automaton. 
+	 * @param nfa automaton
+	 * @param state state where the match starts
+	 * @return state where the match ends
+	 * @throws UnsupportedRegexException if node cannot be matched 
+	 * 		by finite automaton, for example lookbehind or backreference
+	 */
+	public int addTo(Nfa nfa, int state) {
+		throw new UnsupportedRegexException(
+				"Construct not supported by automaton: " + this);
+	}
+
+	/**
+	 * Returns node matching reversed strings matched by this node.
+	 * toString() of returned node is a regular expression which 
+	 * can be matched backwards, on reversed text. 
+	 * @return reversed node
+	 * @throws UnsupportedRegexException if node cannot be reversed, 
+	 * 		for example backreference or atomic group
+	 */
+	public Node reverse() {
+		throw new UnsupportedRegexException(
+				"Construct cannot be reversed: " + this);
+	}
+
+	/**
+	 * Returns node matching text ending at the same positions as this node,
+	 * with leading repetitions reduced to minimum number of repetitions 
+	 * and leading optional parts removed, for example "ab" for "a+b" or
+	 * "b" for "\\s*b". In lookbehind only the end of the match matters,
+	 * so both nodes are equivalent there. 
+	 * Groups can be removed, so backreferences are not taken into account.
+	 * @return reduced node or null if node can match empty string, 
+	 * 		so it matches at every position
+	 */
+	public Node reduceStart() {
+		return this;
+	}
+
+	/**
+	 * Returns node where repetitions with unbounded maximum number of 
+	 * repetitions are limited, for example "a{1,100}" for "a+". Repetitions
+	 * which are already bounded are not changed.
+	 * @param infinity maximum number of repetitions replacing unbounded one,
+	 * 		if minimum number of repetitions is greater it is used instead
+	 * @return node matching strings of bounded length
+	 */
+	public Node finitize(int infinity) {
+		return this;
+	}
+
+	/**
+	 * Concatenates each string from the first list with each string 
+	 * from the second list.
+	 * @param list1 first list
+	 * @param list2 second list, can be null
+	 * @param maxCount maximum number of strings in the result
+	 * @return list of concatenated strings or null if second list is null 
+	 * 		or result would be too long
+	 */
+	protected static List<String> concatenate(List<String> list1, 
+			List<String> list2, int maxCount) {
+		if (list2 == null || (long)list1.size() * list2.size() > maxCount) {
+			return null;
+		}
+		List<String> result = new ArrayList<String>();
+		for (String string1 : list1) {
+			for (String string2 : list2) {
+				result.add(string1 + string2);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds two lengths. 
+	 * @param length1 first length, can be {@link Regex#INFINITY}
+	 * @param length2 second length, can be {@link Regex#INFINITY}
+	 * @return sum of lengths or {@link Regex#INFINITY}
+	 */
+	protected static int add(int length1, int length2) {
+		if (length1 == Regex.INFINITY || length2 == Regex.INFINITY || 
+				(long)length1 + length2 >= Regex.INFINITY) {
+			return Regex.INFINITY;
+		} else {
+			return length1 + length2;
+		}
+	}
+
+	/**
+	 * Multiplies two lengths.
+	 * @param length1 first length, can be {@link Regex#INFINITY}
+	 * @param length2 second length, can be {@link Regex#INFINITY}
+	 * @return product of lengths or {@link Regex#INFINITY}
+	 */
+	protected static int multiply(int length1, int length2) {
+		if (length1 == 0 || length2 == 0) {
+			return 0;
+		} else if (length1 == Regex.INFINITY || length2 == Regex.INFINITY || 
+				(long)length1 * length2 >= Regex.INFINITY) {
+			return Regex.INFINITY;
+		} else {
+			return length1 * length2;
+		}
+	}
+	
+}
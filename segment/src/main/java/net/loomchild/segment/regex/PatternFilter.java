@@ -0,0 +1,149 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents fast filter of positions where given regular expression 
+ * can start matching. It is based on the set of characters that can 
+ * end a match, the set of characters that can start it and on match 
+ * length, so the text can be scanned char by char without running 
+ * regular expression engine. For example "(Mr|Dr)\." can only start
+ * two or three characters before a dot. 
+ * 
+ * Filter is created only when it is likely to skip most of the text: 
+ * match length must be bounded and there must be few characters that 
+ * can end the match.
+ * 
+ * @author loomchild
+ */
+public class PatternFilter {
+	
+	/**
+	 * Maximum number of Latin-1 characters in a set so it is considered
+	 * worth filtering.
+	 */
+	public static final int MAX_LATIN1_SET_SIZE = 32;
+
+	/**
+	 * Maximum number of sampled characters from the rest of 
+	 * Basic Multilingual Plane in a set so it is considered worth filtering. 
+	 */
+	public static final int MAX_SAMPLE_SET_SIZE = 16;
+	
+	private static final int LATIN1_SIZE = 256;
+
+	private static final int SAMPLE_DISTANCE = 257;
+
+	private CharacterSet firstSet;
+
+	private CharacterSet lastSet;
+	
+	private int minLength;
+	
+	private int maxLength;
+	
+	/**
+	 * Creates filter for given expression if it can be filtered and it is 
+	 * worth doing. Expression cannot match empty string, cannot be 
+	 * sensitive to region start and cannot contain supplementary characters,
+	 * because filtered matching is started in the middle of the text.
+	 * @param regex regular expression
+	 * @return filter or null if it cannot be created
+	 */
+	public static PatternFilter create(Regex regex) {
+		if (regex.getMinLength() == 0 || 
+				regex.getMaxLength() == Regex.INFINITY ||
+				regex.isBoundarySensitive() || regex.hasSupplementary()) {
+			return null;
+		}
+		CharacterSet lastSet = regex.getLastSet();
+		if (!isSelective(lastSet)) {
+			return null;
+		}
+		CharacterSet firstSet = regex.getFirstSet();
+		if (!isSelective(firstSet)) {
+			firstSet = null;
+		}
+		return new PatternFilter(firstSet, lastSet, regex.getMinLength(), 
+				regex.getMaxLength());
+	}
+	
+	private PatternFilter(CharacterSet firstSet, CharacterSet lastSet, 
+			int minLength, int maxLength) {
+		this.firstSet = firstSet;
+		this.lastSet = lastSet;
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+	}
+	
+	/**
+	 * Finds first position where a match can start. It is guaranteed 
+	 * that there is no match starting between start and returned position.
+	 * @param text text
+	 * @param start search start position
+	 * @param end search end position, match cannot go beyond it
+	 * @return first possible match start position or -1 if there is none
+	 */
+	public int find(CharSequence text, int start, int end) {
+		int position = start;
+		int lastEnd = -1;
+		while (true) {
+			if (firstSet != null) {
+				position = scan(firstSet, text, position, end);
+				if (position == -1) {
+					return -1;
+				}
+			}
+			if (lastEnd < (long)position + minLength) {
+				if ((long)position + minLength > end) {
+					return -1;
+				}
+				int index = scan(lastSet, text, position + minLength - 1, end);
+				if (index == -1) {
+					return -1;
+				}
+				lastEnd = index + 1;
+			}
+			if (lastEnd - maxLength > position) {
+				// Match starting here would end before the first possible end.
+				position = lastEnd - maxLength;
+			} else {
+				return position;
+			}
+		}
+	}
+	
+	/**
+	 * Finds first character belonging to given set. Surrogate characters
+	 * are always accepted.
+	 */
+	private int scan(CharacterSet set, CharSequence text, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			char c = text.charAt(i);
+			if (set.contains(c) || 
+					(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static boolean isSelective(CharacterSet set) {
+		int count = 0;
+		for (int c = 0; c < LATIN1_SIZE; ++c) {
+			if (set.match(c)) {
+				++count;
+			}
+		}
+		if (count > MAX_LATIN1_SET_SIZE) {
+			return false;
+		}
+		count = 0;
+		for (int c = LATIN1_SIZE; c < Character.MIN_SUPPLEMENTARY_CODE_POINT; 
+				c += SAMPLE_DISTANCE) {
+			if (set.match(c)) {
+				++count;
+			}
+		}
+		return count <= MAX_SAMPLE_SET_SIZE;
+	}
+
+}
@@ -0,0 +1,253 @@
+package net.loomchild.segment.regex;
+
+import java.util.List;
+
+/**
+ * Represents regular expression in {@link java.util.regex.Pattern} syntax
+ * parsed for static analysis. Used to compute properties of the 
+ * expression that allow to speed up matching, for example match length 
+ * or characters that can start or end the match.
+ * 
+ * @author loomchild
+ */
+public class Regex {
+	
+	/**
+	 * Length meaning that match length is not bounded.
+	 */
+	public static final int INFINITY = Integer.MAX_VALUE;
+	
+	/**
+	 * Maximum number of automaton states of regular expression. Limits 
+	 * the size of expanded counted repetitions, for example "(?:a|bc){1000}".
+	 */
+	public static final int MAX_STATE_COUNT = 10000;
+	
+	private String pattern;
+	
+	private int flags;
+	
+	private Node node;
+	
+	private boolean supplementary;
+	
+	private boolean backReference;
+	
+	/**
+	 * Parses regular expression.
+	 * @param pattern regular expression, must be valid
+	 * @param flags pattern flags, see 
+	 * 		{@link java.util.regex.Pattern#compile(String, int)}
+	 * @throws UnsupportedRegexException if pattern contains constructs 
+	 * 		that cannot be analyzed
+	 */
+	public Regex(String pattern, int flags) {
+		this.pattern = pattern;
+		this.flags = flags;
+		RegexParser parser = new RegexParser(pattern, flags);
+		this.node = parser.parse();
+		this.supplementary = parser.hasSupplementary();
+		this.backReference = parser.hasBackReference();
+	}
+	
+	/**
+	 * @return regular expression
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return pattern flags
+	 */
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 * @return minimum number of characters matched by the expression
+	 */
+	public int getMinLength() {
+		return node.getMinLength();
+	}
+
+	/**
+	 * @return maximum number of characters matched by the expression or
+	 * 		{@link #INFINITY} if it is unbounded
+	 */
+	public int getMaxLength() {
+		return node.getMaxLength();
+	}
+
+	/**
+	 * Returns maximum number of characters after match start examined 
+	 * by the expression, including lookahead and assertions like "$"
+	 * which need to see next character. Matching gives the same result
+	 * when more text is available after that.
+	 * @return maximum number of examined characters or {@link #INFINITY} 
+	 * 		if it is unbounded
+	 */
+	public int getMaxReadLength() {
+		return node.getMaxReadLength();
+	}
+
+	/**
+	 * Returns true if matching depends on the text before the match start, 
+	 * for example because expression contains lookbehind, 
+	 * word boundary or "^". Such expression can give different result when 
+	 * matcher region starts in a different place.
+	 * @return true if expression is sensitive to region start
+	 */
+	public boolean isBoundarySensitive() {
+		return node.isBoundarySensitive();
+	}
+
+	/**
+	 * @return true if expression contains literal characters outside 
+	 * 		Basic Multilingual Plane
+	 */
+	public boolean hasSupplementary() {
+		return supplementary;
+	}
+
+	/**
+	 * Returns true if expression can be matched by {@link Automaton}. 
+	 * It cannot contain backreferences, lookaround, boundary assertions
+	 * like "^" or "\b", atomic groups or possessive quantifiers, 
+	 * and it cannot be too long after expanding counted repetitions.
+	 * @return true if expression is regular
+	 */
+	public boolean isRegular() {
+		try {
+			Nfa nfa = new Nfa(MAX_STATE_COUNT);
+			node.addTo(nfa, nfa.addState());
+			return true;
+		} catch (UnsupportedRegexException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns regular expression matching reversed strings matched by 
+	 * this expression, for example "\\.(?:rM|rD)" for "(?:Mr|Dr)\\.".
+	 * It should be compiled with the same flags and matched on 
+	 * {@link ReversedCharSequence}. This way expression can be matched 
+	 * backwards from given position, like in lookbehind, but without 
+	 * limiting its length.
+	 * Lookahead becomes lookbehind, so it must have bounded length. 
+	 * @return reversed regular expression
+	 * @throws UnsupportedRegexException if expression cannot be reversed,
+	 * 		for example because it contains backreferences, atomic groups,
+	 * 		possessive quantifiers, line boundaries or inline flags 
+	 * 		which are not at the beginning 
+	 */
+	public String getReversedPattern() {
+		return node.reverse().toString();
+	}
+
+	/**
+	 * Returns regular expression which can be used in lookbehind, matching 
+	 * text ending at the same positions as this expression. 
+	 * Leading repetitions are reduced to their minimum, for example 
+	 * "\\s" for "\\s+", as only the match end matters in lookbehind. 
+	 * Remaining unbounded repetitions are limited to given number of 
+	 * repetitions, as lookbehind must have bounded length.
+	 * @param infinity maximum number of remaining unbounded repetitions
+	 * @return regular expression with bounded length, empty if expression 
+	 * 		matches at every position
+	 */
+	public String getLookbehindPattern(int infinity) {
+		Node reducedNode = node;
+		// Reduction removes groups, which would change backreferences.
+		if (!backReference) {
+			reducedNode = node.reduceStart();
+		}
+		if (reducedNode == null) {
+			return "";
+		} else {
+			return reducedNode.finitize(infinity).toString();
+		}
+	}
+
+	/**
+	 * Returns all the literal strings matched by the expression, if there 
+	 * are only a few of them, for example "Mr\." or "(?:Mr|Dr)\.".
+	 * Inside lookbehind the expression matches when any of the strings 
+	 * ends at given position.
+	 * @param maxCount maximum number of strings
+	 * @return list of strings or null if expression can match more strings 
+	 * 		or they cannot be determined
+	 */
+	public List<String> getLiterals(int maxCount) {
+		return node.getLiterals(maxCount);
+	}
+
+	/**
+	 * Returns true if no two matches of the expression can overlap, 
+	 * for example "\\." or "(?:Mr|Dr)\\.", but not "[0-9]+" or "ab|a". 
+	 * Then {@link java.util.regex.Matcher#find()} finds all the matches, 
+	 * so {@link Automaton}, which reports every position where any match 
+	 * ends, gives the same result. Only expressions matching just empty 
+	 * strings, single characters or a few literal strings are checked.
+	 * @param maxCount maximum number of literal strings
+	 * @return true if expression cannot have overlapping matches
+	 */
+	public boolean isOverlapFree(int maxCount) {
+		if (getMaxLength() == 0 || 
+				(getMinLength() == 1 && getMaxLength() == 1)) {
+			return true;
+		}
+		List<String> literalList = getLiterals(maxCount);
+		if (literalList == null) {
+			return false;
+		}
+		for (String literal : literalList) {
+			if (literal.length() == 0) {
+				return false;
+			}
+			for (String otherLiteral : literalList) {
+				if (otherLiteral.length() > literal.length() && 
+						otherLiteral.startsWith(literal)) {
+					return false;
+				}
+				for (int i = 1; i < literal.length(); ++i) {
+					String suffix = literal.substring(i);
+					if (suffix.startsWith(otherLiteral) || 
+							otherLiteral.startsWith(suffix)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return set of characters that can be the first character of a match
+	 */
+	public CharacterSet getFirstSet() {
+		return node.getFirstSet();
+	}
+
+	/**
+	 * @return set of characters that can be the last character of a match
+	 */
+	public CharacterSet getLastSet() {
+		return node.getLastSet();
+	}
+	
+	/**
+	 * @return root node of parsed expression
+	 */
+	Node getNode() {
+		return node;
+	}
+	
+	/**
+	 * @return regular expression
+	 */
+	public String toString() {
+		return pattern;
+	}
+
+}
@@ -0,0 +1,665 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Represents parser of regular expressions in {@link Pattern} syntax.
+ * Builds a tree of nodes which can be analyzed. Pattern must be valid, 
+ * parser does not report all syntax errors. Throws 
+ * {@link UnsupportedRegexException} if pattern contains constructs that 
+ * cannot be analyzed, for example "\R" or comments.
+ * 
+ * @author loomchild
+ */
+class RegexParser {
+	
+	/**
+	 * Value of Pattern.UNICODE_CHARACTER_CLASS flag, available since Java 7.
+	 */
+	private static final int UNICODE_CHARACTER_CLASS = 0x100;
+
+	private static final int UNSUPPORTED_FLAGS = 
+		Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ;
+	
+	/**
+	 * Flags affecting which characters are matched by a character node.
+	 */
+	private static final int CHARACTER_FLAGS = Pattern.CASE_INSENSITIVE |
+		Pattern.UNICODE_CASE | Pattern.DOTALL | Pattern.UNIX_LINES | 
+		UNICODE_CHARACTER_CLASS;
+
+	private String pattern;
+	
+	private int position;
+	
+	private int flags;
+	
+	private int groupCount;
+	
+	private boolean quote;
+	
+	private boolean supplementary;
+	
+	private boolean backReference;
+	
+	/**
+	 * Creates parser.
+	 * @param pattern regular expression
+	 * @param flags pattern flags, see {@link Pattern#compile(String, int)}
+	 */
+	public RegexParser(String pattern, int flags) {
+		this.pattern = pattern;
+		this.flags = flags;
+	}
+	
+	/**
+	 * @return parsed regular expression tree
+	 * @throws UnsupportedRegexException if pattern cannot be analyzed
+	 */
+	public Node parse() {
+		this.position = 0;
+		this.groupCount = 0;
+		this.quote = false;
+		this.supplementary = false;
+		this.backReference = false;
+		checkFlags();
+		Node node = parseAlternation();
+		if (position < pattern.length()) {
+			throw unsupported("Unmatched closing parenthesis");
+		}
+		return node;
+	}
+	
+	/**
+	 * @return true if parsed pattern contains literal characters outside
+	 * 		Basic Multilingual Plane
+	 */
+	public boolean hasSupplementary() {
+		return supplementary;
+	}
+	
+	/**
+	 * @return true if parsed pattern contains backreferences
+	 */
+	public boolean hasBackReference() {
+		return backReference;
+	}
+	
+	private Node parseAlternation() {
+		List<Node> nodeList = new ArrayList<Node>();
+		nodeList.add(parseSequence());
+		while (position < pattern.length() && pattern.charAt(position) == '|') {
+			++position;
+			nodeList.add(parseSequence());
+		}
+		if (nodeList.size() == 1) {
+			return nodeList.get(0);
+		} else {
+			return new AlternationNode(nodeList);
+		}
+	}
+	
+	private Node parseSequence() {
+		List<Node> nodeList = new ArrayList<Node>();
+		while (position < pattern.length()) {
+			if (quote) {
+				if (pattern.startsWith("\\E", position)) {
+					position += 2;
+					quote = false;
+					continue;
+				}
+				Node node = parseQuotedCharacter();
+				if (!quote) {
+					node = parseQuantifier(node);
+				}
+				nodeList.add(node);
+			} else {
+				char c = pattern.charAt(position);
+				if (c == '|' || c == ')') {
+					break;
+				} else if (pattern.startsWith("\\Q", position)) {
+					position += 2;
+					quote = true;
+				} else {
+					nodeList.add(parseQuantifier(parseAtom()));
+				}
+			}
+		}
+		if (nodeList.size() == 1) {
+			return nodeList.get(0);
+		} else {
+			return new SequenceNode(nodeList);
+		}
+	}
+	
+	private Node parseQuotedCharacter() {
+		int codePoint = pattern.codePointAt(position);
+		position += Character.charCount(codePoint);
+		// Quantifier can only follow the end of quote.
+		if (pattern.startsWith("\\E", position)) {
+			position += 2;
+			quote = false;
+		}
+		String source;
+		if (codePoint < 0x80 && !Character.isLetterOrDigit(codePoint)) {
+			source = "\\" + (char)codePoint;
+		} else {
+			source = new String(Character.toChars(codePoint));
+		}
+		return createLiteral(source, codePoint);
+	}
+	
+	private Node parseAtom() {
+		char c = pattern.charAt(position);
+		switch (c) {
+		case '(':
+			return parseGroup();
+		case '[':
+			return parseClass();
+		case '\\':
+			return parseEscape();
+		case '.':
+			++position;
+			return createCharacter(".", false);
+		case '^':
+			++position;
+			return new AssertionNode("^", true);
+		case '$':
+			++position;
+			return new AssertionNode("$", false);
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw unsupported("Dangling meta character");
+		default:
+			int codePoint = pattern.codePointAt(position);
+			int start = position;
+			position += Character.charCount(codePoint);
+			return createLiteral(pattern.substring(start, position), codePoint);
+		}
+	}
+	
+	private Node parseGroup() {
+		int start = position;
+		int savedFlags = flags;
+		++position;
+		Node node;
+		if (pattern.startsWith("?:", position)) {
+			position += 2;
+			node = new GroupNode("(?:", parseGroupContent(), false);
+		} else if (pattern.startsWith("?>", position)) {
+			position += 2;
+			node = new GroupNode("(?>", parseGroupContent(), true);
+		} else if (pattern.startsWith("?=", position) || 
+				pattern.startsWith("?!", position)) {
+			boolean negative = pattern.charAt(position + 1) == '!';
+			position += 2;
+			node = new LookaroundNode(parseGroupContent(), true, negative);
+		} else if (pattern.startsWith("?<=", position) || 
+				pattern.startsWith("?<!", position)) {
+			boolean negative = pattern.charAt(position + 2) == '!';
+			position += 3;
+			node = new LookaroundNode(parseGroupContent(), false, negative);
+		} else if (pattern.startsWith("?<", position)) {
+			int end = pattern.indexOf('>', position);
+			if (end == -1) {
+				throw unsupported("Unclosed group name");
+			}
+			position = end + 1;
+			++groupCount;
+			node = new GroupNode(pattern.substring(start, position), 
+					parseGroupContent(), false);
+		} else if (pattern.startsWith("?", position)) {
+			++position;
+			parseFlags();
+			if (pattern.startsWith(")", position)) {
+				// Flags stay changed until the end of enclosing group.
+				++position;
+				return new FlagsNode(pattern.substring(start, position));
+			} else if (pattern.startsWith(":", position)) {
+				++position;
+				node = new GroupNode(pattern.substring(start, position), 
+						parseGroupContent(), false);
+			} else {
+				throw unsupported("Unknown group type");
+			}
+		} else {
+			++groupCount;
+			node = new GroupNode("(", parseGroupContent(), false);
+		}
+		flags = savedFlags;
+		return node;
+	}
+	
+	private Node parseGroupContent() {
+		Node node = parseAlternation();
+		if (!pattern.startsWith(")", position)) {
+			throw unsupported("Unclosed group");
+		}
+		++position;
+		return node;
+	}
+	
+	private void parseFlags() {
+		boolean on = true;
+		while (position < pattern.length()) {
+			char c = pattern.charAt(position);
+			int flag;
+			switch (c) {
+			case 'i':
+				flag = Pattern.CASE_INSENSITIVE;
+				break;
+			case 'd':
+				flag = Pattern.UNIX_LINES;
+				break;
+			case 'm':
+				flag = Pattern.MULTILINE;
+				break;
+			case 's':
+				flag = Pattern.DOTALL;
+				break;
+			case 'u':
+				flag = Pattern.UNICODE_CASE;
+				break;
+			case 'x':
+				flag = Pattern.COMMENTS;
+				break;
+			case 'U':
+				flag = UNICODE_CHARACTER_CLASS | Pattern.UNICODE_CASE;
+				break;
+			case '-':
+				on = false;
+				++position;
+				continue;
+			default:
+				checkFlags();
+				return;
+			}
+			if (on) {
+				flags |= flag;
+			} else {
+				flags &= ~flag;
+			}
+			++position;
+		}
+	}
+	
+	private Node parseClass() {
+		int start = position;
+		boolean basic = true;
+		int depth = 0;
+		do {
+			char c = pattern.charAt(position);
+			if (c == '[') {
+				++depth;
+				++position;
+				if (pattern.startsWith("^", position)) {
+					basic = false;
+					++position;
+				}
+				// Closing bracket just after opening one is a literal.
+				if (pattern.startsWith("]", position)) {
+					++position;
+				}
+			} else if (c == ']') {
+				--depth;
+				++position;
+			} else if (c == '\\') {
+				basic &= skipClassEscape();
+			} else if (pattern.startsWith("&&", position)) {
+				position += 2;
+			} else {
+				if (isSurrogate(c)) {
+					basic = false;
+					supplementary = true;
+				}
+				++position;
+			}
+			if (depth > 0 && position >= pattern.length()) {
+				throw unsupported("Unclosed character class");
+			}
+		} while (depth > 0);
+		return createCharacter(pattern.substring(start, position), basic);
+	}
+	
+	/**
+	 * Skips escape sequence in character class.
+	 * @return true if escape can only match Basic Multilingual Plane 
+	 * 		characters
+	 */
+	private boolean skipClassEscape() {
+		++position;
+		char c = pattern.charAt(position);
+		++position;
+		switch (c) {
+		case 'Q':
+			int end = pattern.indexOf("\\E", position);
+			if (end == -1) {
+				end = pattern.length();
+			}
+			boolean basic = true;
+			for (int i = position; i < end; ++i) {
+				if (isSurrogate(pattern.charAt(i))) {
+					basic = false;
+					supplementary = true;
+				}
+			}
+			position = Math.min(end + 2, pattern.length());
+			return basic;
+		case 'p':
+		case 'P':
+		case 'N':
+			skipName();
+			return false;
+		case 'x':
+			return checkBasic(parseHexadecimal());
+		case 'u':
+			return checkBasic(parseUnicode());
+		case 'd':
+		case 'w':
+			return (flags & UNICODE_CHARACTER_CLASS) == 0;
+		case 'D':
+		case 'W':
+		case 'S':
+		case 'H':
+		case 'V':
+			return false;
+		default:
+			return checkBasic(c);
+		}
+	}
+	
+	/**
+	 * @param codePoint character
+	 * @return true if character is from Basic Multilingual Plane
+	 */
+	private boolean checkBasic(int codePoint) {
+		if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT || 
+				isSurrogate((char)codePoint)) {
+			supplementary = true;
+			return false;
+		} else {
+			return true;
+		}
+	}
+	
+	private Node parseEscape() {
+		int start = position;
+		++position;
+		if (position >= pattern.length()) {
+			throw unsupported("Unexpected end of pattern");
+		}
+		char c = pattern.charAt(position);
+		++position;
+		switch (c) {
+		case 'd':
+		case 'w':
+			return createCharacter(pattern.substring(start, position), 
+					(flags & UNICODE_CHARACTER_CLASS) == 0);
+		case 's':
+		case 'h':
+		case 'v':
+			return createCharacter(pattern.substring(start, position), true);
+		case 'D':
+		case 'W':
+		case 'S':
+		case 'H':
+		case 'V':
+			return createCharacter(pattern.substring(start, position), false);
+		case 'p':
+		case 'P':
+			skipName();
+			return createCharacter(pattern.substring(start, position), false);
+		case 'b':
+			if (pattern.startsWith("{", position)) {
+				throw unsupported("Unsupported boundary");
+			}
+			return new AssertionNode("\\b", true);
+		case 'B':
+		case 'A':
+		case 'G':
+			return new AssertionNode(pattern.substring(start, position), true);
+		case 'Z':
+		case 'z':
+			return new AssertionNode(pattern.substring(start, position), false);
+		case 'k':
+			int end = pattern.indexOf('>', position);
+			if (!pattern.startsWith("<", position) || end == -1) {
+				throw unsupported("Invalid named reference");
+			}
+			position = end + 1;
+			backReference = true;
+			return new BackReferenceNode(pattern.substring(start, position));
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			int reference = c - '0';
+			while (position < pattern.length() && 
+					Character.isDigit(pattern.charAt(position))) {
+				int newReference = reference * 10 + 
+					(pattern.charAt(position) - '0');
+				if (newReference > groupCount) {
+					break;
+				}
+				reference = newReference;
+				++position;
+			}
+			backReference = true;
+			return new BackReferenceNode(pattern.substring(start, position));
+		case '0':
+			int octal = 0;
+			int digits = 0;
+			while (position < pattern.length() && digits < 3) {
+				int digit = pattern.charAt(position) - '0';
+				if (digit < 0 || digit > 7 || octal * 8 + digit > 0377) {
+					break;
+				}
+				octal = octal * 8 + digit;
+				++digits;
+				++position;
+			}
+			return createLiteral(pattern.substring(start, position), octal);
+		case 'x':
+			int hexadecimal = parseHexadecimal();
+			return createLiteral(pattern.substring(start, position), 
+					hexadecimal);
+		case 'u':
+			int unicode = parseUnicode();
+			if (Character.isHighSurrogate((char)unicode) && 
+					pattern.startsWith("\\u", position)) {
+				int savedPosition = position;
+				position += 2;
+				int low = parseUnicode();
+				if (Character.isLowSurrogate((char)low)) {
+					unicode = Character.toCodePoint((char)unicode, (char)low);
+				} else {
+					position = savedPosition;
+				}
+			}
+			return createLiteral(pattern.substring(start, position), unicode);
+		case 't':
+			return createLiteral(pattern.substring(start, position), '\t');
+		case 'n':
+			return createLiteral(pattern.substring(start, position), '\n');
+		case 'r':
+			return createLiteral(pattern.substring(start, position), '\r');
+		case 'f':
+			return createLiteral(pattern.substring(start, position), '\f');
+		case 'a':
+			return createLiteral(pattern.substring(start, position), '\u0007');
+		case 'e':
+			return createLiteral(pattern.substring(start, position), '\u001B');
+		case 'c':
+			if (position >= pattern.length()) {
+				throw unsupported("Illegal control escape sequence");
+			}
+			char control = pattern.charAt(position);
+			++position;
+			return createLiteral(pattern.substring(start, position), 
+					control ^ 64);
+		default:
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				throw unsupported("Unsupported escape sequence");
+			}
+			int codePoint = pattern.codePointAt(position - 1);
+			position += Character.charCount(codePoint) - 1;
+			return createLiteral(pattern.substring(start, position), codePoint);
+		}
+	}
+	
+	private Node parseQuantifier(Node node) {
+		if (position < pattern.length()) {
+			char c = pattern.charAt(position);
+			int min;
+			int max;
+			if (c == '?') {
+				min = 0;
+				max = 1;
+				++position;
+			} else if (c == '*') {
+				min = 0;
+				max = Regex.INFINITY;
+				++position;
+			} else if (c == '+') {
+				min = 1;
+				max = Regex.INFINITY;
+				++position;
+			} else if (c == '{') {
+				int end = pattern.indexOf('}', position);
+				if (end == -1) {
+					throw unsupported("Unclosed counted closure");
+				}
+				String[] bounds = pattern.substring(position + 1, end).split(",", -1);
+				try {
+					min = Integer.parseInt(bounds[0]);
+					if (bounds.length == 1) {
+						max = min;
+					} else if (bounds.length == 2 && bounds[1].length() == 0) {
+						max = Regex.INFINITY;
+					} else if (bounds.length == 2) {
+						max = Integer.parseInt(bounds[1]);
+					} else {
+						throw unsupported("Illegal repetition");
+					}
+				} catch (NumberFormatException e) {
+					throw unsupported("Illegal repetition");
+				}
+				position = end + 1;
+			} else {
+				return node;
+			}
+			RepetitionNode.Type type = RepetitionNode.Type.GREEDY;
+			if (pattern.startsWith("?", position)) {
+				type = RepetitionNode.Type.LAZY;
+				++position;
+			} else if (pattern.startsWith("+", position)) {
+				type = RepetitionNode.Type.POSSESSIVE;
+				++position;
+			}
+			node = new RepetitionNode(node, min, max, type);
+			if (position < pattern.length() && 
+					"?*+{".indexOf(pattern.charAt(position)) != -1) {
+				throw unsupported("Repeated quantifier");
+			}
+		}
+		return node;
+	}
+	
+	private int parseHexadecimal() {
+		int end;
+		int start;
+		if (pattern.startsWith("{", position)) {
+			start = position + 1;
+			end = pattern.indexOf('}', position);
+			if (end == -1) {
+				throw unsupported("Unclosed hexadecimal escape sequence");
+			}
+			position = end + 1;
+		} else {
+			start = position;
+			end = position + 2;
+			position = end;
+		}
+		return parseNumber(start, end, 16);
+	}
+
+	private int parseUnicode() {
+		int start = position;
+		position += 4;
+		return parseNumber(start, position, 16);
+	}
+	
+	private int parseNumber(int start, int end, int radix) {
+		try {
+			return Integer.parseInt(pattern.substring(start, end), radix);
+		} catch (IndexOutOfBoundsException e) {
+			throw unsupported("Illegal escape sequence");
+		} catch (NumberFormatException e) {
+			throw unsupported("Illegal escape sequence");
+		}
+	}
+	
+	private void skipName() {
+		if (pattern.startsWith("{", position)) {
+			int end = pattern.indexOf('}', position);
+			if (end == -1) {
+				throw unsupported("Unclosed character family");
+			}
+			position = end + 1;
+		} else {
+			++position;
+		}
+	}
+	
+	private static boolean isSurrogate(char c) {
+		return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+	}
+	
+	private Node createLiteral(String source, int codePoint) {
+		checkBasic(codePoint);
+		// Case insensitive matching does not change ASCII non-letters.
+		if ((flags & Pattern.CASE_INSENSITIVE) == 0 || 
+				(codePoint < 0x80 && !Character.isLetter(codePoint))) {
+			return new CharacterNode(source, codePoint);
+		} else {
+			return new CharacterNode(source, createPatternSet(source), 
+					codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT);
+		}
+	}
+	
+	private Node createCharacter(String source, boolean basic) {
+		return new CharacterNode(source, createPatternSet(source), basic);
+	}
+	
+	private CharacterSet createPatternSet(String source) {
+		try {
+			Pattern characterPattern = 
+				Pattern.compile(source, flags & CHARACTER_FLAGS);
+			return CharacterSet.createPattern(characterPattern);
+		} catch (PatternSyntaxException e) {
+			throw unsupported("Cannot parse character " + source);
+		}
+	}
+	
+	private void checkFlags() {
+		if ((flags & UNSUPPORTED_FLAGS) != 0) {
+			throw unsupported("Unsupported flags");
+		}
+	}
+	
+	private UnsupportedRegexException unsupported(String message) {
+		return new UnsupportedRegexException(message + " near index " + 
+				position + " in pattern: " + pattern + ".");
+	}
+
+}
@@ -0,0 +1,223 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents quantified node, for example "a*", "a{2,3}?" or "a++".
+ * 
+ * @author loomchild
+ */
+class RepetitionNode extends Node {
+	
+	public enum Type {
+		GREEDY(""), LAZY("?"), POSSESSIVE("+");
+		
+		private String suffix;
+		
+		private Type(String suffix) {
+			this.suffix = suffix;
+		}
+		
+		public String getSuffix() {
+			return suffix;
+		}
+	}
+	
+	private Node node;
+	
+	private int min;
+	
+	private int max;
+	
+	private Type type;
+	
+	/**
+	 * Creates node.
+	 * @param node repeated node
+	 * @param min minimum number of repetitions
+	 * @param max maximum number of repetitions or {@link Regex#INFINITY}
+	 * @param type quantifier type
+	 */
+	public RepetitionNode(Node node, int min, int max, Type type) {
+		this.node = node;
+		this.min = min;
+		this.max = max;
+		this.type = type;
+	}
+	
+	public Node getNode() {
+		return node;
+	}
+	
+	public int getMin() {
+		return min;
+	}
+	
+	public int getMax() {
+		return max;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+
+	public int getMinLength() {
+		return multiply(node.getMinLength(), min);
+	}
+
+	public int getMaxLength() {
+		return multiply(node.getMaxLength(), max);
+	}
+
+	public int getMaxReadLength() {
+		if (max == 0) {
+			return 0;
+		} else {
+			int length = multiply(node.getMaxLength(), 
+					max == Regex.INFINITY ? max : max - 1);
+			return add(length, node.getMaxReadLength());
+		}
+	}
+
+	public boolean isBoundarySensitive() {
+		return node.isBoundarySensitive();
+	}
+
+	public CharacterSet getFirstSet() {
+		if (max == 0) {
+			return CharacterSet.EMPTY;
+		} else {
+			return node.getFirstSet();
+		}
+	}
+
+	public CharacterSet getLastSet() {
+		if (max == 0) {
+			return CharacterSet.EMPTY;
+		} else {
+			return node.getLastSet();
+		}
+	}
+	
+	public List<String> getLiterals(int maxCount) {
+		// Possessive quantifier does not backtrack, so it does not match all 
+		// the strings in lookbehind.
+		if (type == Type.POSSESSIVE || max == Regex.INFINITY) {
+			return null;
+		}
+		List<String> nodeLiteralList = node.getLiterals(maxCount);
+		if (nodeLiteralList == null) {
+			return null;
+		}
+		List<String> literalList = new ArrayList<String>();
+		List<String> repeatedList = new ArrayList<String>();
+		repeatedList.add("");
+		for (int i = 0; i <= max; ++i) {
+			if (i >= min) {
+				if (literalList.size() + repeatedList.size() > maxCount) {
+					return null;
+				}
+				literalList.addAll(repeatedList);
+			}
+			if (i < max) {
+				repeatedList = 
+					concatenate(repeatedList, nodeLiteralList, maxCount);
+				if (repeatedList == null) {
+					return null;
+				}
+			}
+		}
+		return literalList;
+	}
+	
+	public Node reverse() {
+		if (type == Type.POSSESSIVE) {
+			return super.reverse();
+		} else {
+			return new RepetitionNode(node.reverse(), min, max, type);
+		}
+	}
+
+	public Node reduceStart() {
+		// Possessive quantifier does not backtrack, so it cannot be reduced.
+		if (type == Type.POSSESSIVE) {
+			return this;
+		} else if (min == 0) {
+			return null;
+		}
+		Node reducedNode = node.reduceStart();
+		if (reducedNode == null) {
+			return null;
+		} else if (min == 1) {
+			return reducedNode;
+		} else if (reducedNode == node) {
+			return new RepetitionNode(node, min, min, type);
+		}
+		List<Node> nodeList = new ArrayList<Node>();
+		nodeList.add(reducedNode);
+		nodeList.add(new RepetitionNode(node, min - 1, min - 1, type));
+		return new SequenceNode(nodeList);
+	}
+
+	public Node finitize(int infinity) {
+		int newMax = max;
+		if (max == Regex.INFINITY) {
+			newMax = Math.max(min, infinity);
+		}
+		return new RepetitionNode(node.finitize(infinity), min, newMax, type);
+	}
+
+	public int addTo(Nfa nfa, int state) {
+		// Greedy and lazy quantifiers only differ in match order, 
+		// automaton finds all the matches at once.
+		if (type == Type.POSSESSIVE) {
+			return super.addTo(nfa, state);
+		}
+		for (int i = 0; i < min; ++i) {
+			state = node.addTo(nfa, state);
+		}
+		int end = nfa.addState();
+		nfa.addEmptyTransition(state, end);
+		if (max == Regex.INFINITY) {
+			int start = nfa.addState();
+			nfa.addEmptyTransition(state, start);
+			int loop = node.addTo(nfa, start);
+			nfa.addEmptyTransition(loop, start);
+			nfa.addEmptyTransition(loop, end);
+		} else {
+			for (int i = min; i < max; ++i) {
+				int start = nfa.addState();
+				nfa.addEmptyTransition(state, start);
+				state = node.addTo(nfa, start);
+				nfa.addEmptyTransition(state, end);
+			}
+		}
+		return end;
+	}
+	
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		if (node instanceof SequenceNode || node instanceof AlternationNode) {
+			string.append("(?:" + node + ")");
+		} else {
+			string.append(node);
+		}
+		if (min == 0 && max == 1) {
+			string.append('?');
+		} else if (min == 0 && max == Regex.INFINITY) {
+			string.append('*');
+		} else if (min == 1 && max == Regex.INFINITY) {
+			string.append('+');
+		} else if (min == max) {
+			string.append("{" + min + "}");
+		} else if (max == Regex.INFINITY) {
+			string.append("{" + min + ",}");
+		} else {
+			string.append("{" + min + "," + max + "}");
+		}
+		string.append(type.getSuffix());
+		return string.toString();
+	}
+
+}
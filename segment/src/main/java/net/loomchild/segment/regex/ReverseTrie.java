@@ -0,0 +1,149 @@
+package net.loomchild.segment.regex;
+
+import java.util.Arrays;
+
+/**
+ * Represents trie of literal strings stored backwards. Used to find 
+ * all the strings ending at given position in the text at once, by reading 
+ * the text backwards from this position, instead of matching each 
+ * string separately. Each string has an identifier.
+ * Trie must not be modified after it has been shared between threads.
+ * 
+ * @author loomchild
+ */
+public class ReverseTrie {
+	
+	private TrieNode root;
+	
+	private int size;
+	
+	/**
+	 * Creates empty trie.
+	 */
+	public ReverseTrie() {
+		this.root = new TrieNode();
+		this.size = 0;
+	}
+	
+	/**
+	 * Adds string to the trie. The same identifier can be used for 
+	 * many strings.
+	 * @param literal string, can be empty
+	 * @param id string identifier
+	 */
+	public void add(String literal, int id) {
+		TrieNode node = root;
+		for (int i = literal.length() - 1; i >= 0; --i) {
+			node = node.getOrCreateChild(literal.charAt(i));
+		}
+		if (node.addId(id)) {
+			++size;
+		}
+	}
+	
+	/**
+	 * @return number of strings in the trie, not counting duplicates
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Finds all the strings that end at given position in the text.
+	 * @param text text
+	 * @param end position in the text
+	 * @param ids array where identifiers of found strings are stored, 
+	 * 		must be able to hold all the strings in the trie
+	 * @return number of found strings
+	 */
+	public int find(CharSequence text, int end, int[] ids) {
+		int count = 0;
+		TrieNode node = root;
+		int position = end;
+		while (node != null) {
+			count = node.copyIds(ids, count);
+			if (position == 0) {
+				break;
+			}
+			--position;
+			node = node.getChild(text.charAt(position));
+		}
+		return count;
+	}
+	
+	/**
+	 * Represents trie node. Children are kept in arrays sorted by 
+	 * character, as nodes usually have very few children.
+	 */
+	private static class TrieNode {
+		
+		private static final char[] EMPTY_KEYS = new char[0];
+
+		private static final TrieNode[] EMPTY_CHILDREN = new TrieNode[0];
+
+		private static final int[] EMPTY_IDS = new int[0];
+
+		private char[] keys;
+		
+		private TrieNode[] children;
+		
+		private int[] ids;
+		
+		public TrieNode() {
+			this.keys = EMPTY_KEYS;
+			this.children = EMPTY_CHILDREN;
+			this.ids = EMPTY_IDS;
+		}
+		
+		public TrieNode getChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0) {
+				return children[index];
+			} else {
+				return null;
+			}
+		}
+		
+		public TrieNode getOrCreateChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0) {
+				return children[index];
+			}
+			index = -index - 1;
+			TrieNode child = new TrieNode();
+			char[] newKeys = new char[keys.length + 1];
+			TrieNode[] newChildren = new TrieNode[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = c;
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, 
+					keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, 
+					children.length - index);
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+		
+		public boolean addId(int id) {
+			for (int existingId : ids) {
+				if (existingId == id) {
+					return false;
+				}
+			}
+			int[] newIds = new int[ids.length + 1];
+			System.arraycopy(ids, 0, newIds, 0, ids.length);
+			newIds[ids.length] = id;
+			ids = newIds;
+			return true;
+		}
+		
+		public int copyIds(int[] destination, int count) {
+			System.arraycopy(ids, 0, destination, count, ids.length);
+			return count + ids.length;
+		}
+		
+	}
+
+}
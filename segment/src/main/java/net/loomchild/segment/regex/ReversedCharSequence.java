@@ -0,0 +1,80 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Represents text read backwards, used to match reversed regular 
+ * expressions, see {@link Regex#getReversedPattern()}. Position in the 
+ * original text corresponds to position length() - position in reversed 
+ * text. Characters are not copied.
+ * Surrogate pairs are not reversed, so characters outside Basic 
+ * Multilingual Plane stay the same.
+ * 
+ * @author loomchild
+ */
+public class ReversedCharSequence implements CharSequence {
+	
+	private CharSequence text;
+	
+	private int start;
+	
+	private int end;
+
+	/**
+	 * Creates reversed text.
+	 * @param text original text
+	 */
+	public ReversedCharSequence(CharSequence text) {
+		this(text, 0, text.length());
+	}
+
+	/**
+	 * Creates reversed fragment of the text.
+	 * @param text original text
+	 * @param start fragment start position in original text
+	 * @param end fragment end position in original text
+	 */
+	public ReversedCharSequence(CharSequence text, int start, int end) {
+		this.text = text;
+		this.start = start;
+		this.end = end;
+	}
+
+	public int length() {
+		return end - start;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("Index: " + index + 
+					", length: " + length());
+		}
+		int position = end - 1 - index;
+		char c = text.charAt(position);
+		if (Character.isLowSurrogate(c)) {
+			if (position > start && 
+					Character.isHighSurrogate(text.charAt(position - 1))) {
+				return text.charAt(position - 1);
+			}
+		} else if (Character.isHighSurrogate(c)) {
+			if (position < end - 1 && 
+					Character.isLowSurrogate(text.charAt(position + 1))) {
+				return text.charAt(position + 1);
+			}
+		}
+		return c;
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length() || start > end) {
+			throw new IndexOutOfBoundsException("Start: " + start + 
+					", end: " + end + ", length: " + length());
+		}
+		return new ReversedCharSequence(text, this.end - end, 
+				this.end - start);
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder(text.subSequence(start, end));
+		return builder.reverse().toString();
+	}
+
+}
@@ -0,0 +1,158 @@
+package net.loomchild.segment.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents sequence of nodes matched one after another.
+ * 
+ * @author loomchild
+ */
+class SequenceNode extends Node {
+	
+	private List<Node> nodeList;
+	
+	public SequenceNode(List<Node> nodeList) {
+		this.nodeList = nodeList;
+	}
+	
+	public List<Node> getNodeList() {
+		return nodeList;
+	}
+
+	public int getMinLength() {
+		int length = 0;
+		for (Node node : nodeList) {
+			length = add(length, node.getMinLength());
+		}
+		return length;
+	}
+
+	public int getMaxLength() {
+		int length = 0;
+		for (Node node : nodeList) {
+			length = add(length, node.getMaxLength());
+		}
+		return length;
+	}
+
+	public int getMaxReadLength() {
+		int length = 0;
+		int readLength = 0;
+		for (Node node : nodeList) {
+			readLength = Math.max(readLength, 
+					add(length, node.getMaxReadLength()));
+			length = add(length, node.getMaxLength());
+		}
+		return readLength;
+	}
+
+	public boolean isBoundarySensitive() {
+		for (Node node : nodeList) {
+			if (node.isBoundarySensitive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public CharacterSet getFirstSet() {
+		List<CharacterSet> setList = new ArrayList<CharacterSet>();
+		for (Node node : nodeList) {
+			setList.add(node.getFirstSet());
+			if (node.getMinLength() > 0) {
+				break;
+			}
+		}
+		return CharacterSet.createUnion(setList);
+	}
+
+	public CharacterSet getLastSet() {
+		List<CharacterSet> setList = new ArrayList<CharacterSet>();
+		for (int i = nodeList.size() - 1; i >= 0; --i) {
+			Node node = nodeList.get(i);
+			setList.add(node.getLastSet());
+			if (node.getMinLength() > 0) {
+				break;
+			}
+		}
+		return CharacterSet.createUnion(setList);
+	}
+
+	public List<String> getLiterals(int maxCount) {
+		List<String> literalList = new ArrayList<String>();
+		literalList.add("");
+		for (Node node : nodeList) {
+			List<String> nodeLiteralList = node.getLiterals(maxCount);
+			literalList = concatenate(literalList, nodeLiteralList, maxCount);
+			if (literalList == null) {
+				return null;
+			}
+		}
+		return literalList;
+	}
+
+	public Node reverse() {
+		// Inline flags apply to the rest of enclosing group, so they can 
+		// only stay at the beginning.
+		int start = 0;
+		while (start < nodeList.size() && 
+				nodeList.get(start) instanceof FlagsNode) {
+			++start;
+		}
+		List<Node> reversedList = new ArrayList<Node>();
+		reversedList.addAll(nodeList.subList(0, start));
+		for (int i = nodeList.size() - 1; i >= start; --i) {
+			reversedList.add(nodeList.get(i).reverse());
+		}
+		return new SequenceNode(reversedList);
+	}
+
+	public Node reduceStart() {
+		List<Node> reducedList = new ArrayList<Node>();
+		for (int i = 0; i < nodeList.size(); ++i) {
+			Node node = nodeList.get(i);
+			if (node instanceof FlagsNode) {
+				reducedList.add(node);
+			} else {
+				Node reducedNode = node.reduceStart();
+				if (reducedNode != null) {
+					// Only leading nodes which can match empty string are 
+					// removed, rest of the sequence stays the same.
+					reducedList.add(reducedNode);
+					reducedList.addAll(nodeList.subList(i + 1, nodeList.size()));
+					return new SequenceNode(reducedList);
+				}
+			}
+		}
+		return null;
+	}
+
+	public Node finitize(int infinity) {
+		List<Node> finiteList = new ArrayList<Node>();
+		for (Node node : nodeList) {
+			finiteList.add(node.finitize(infinity));
+		}
+		return new SequenceNode(finiteList);
+	}
+
+	public int addTo(Nfa nfa, int state) {
+		for (Node node : nodeList) {
+			state = node.addTo(nfa, state);
+		}
+		return state;
+	}
+
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (Node node : nodeList) {
+			if (node instanceof AlternationNode) {
+				string.append("(?:" + node + ")");
+			} else {
+				string.append(node);
+			}
+		}
+		return string.toString();
+	}
+
+}
@@ -0,0 +1,19 @@
+package net.loomchild.segment.regex;
+
+/**
+ * Thrown when regular expression contains construct that cannot be 
+ * analyzed. Pattern itself is correct and can be used by 
+ * {@link java.util.regex.Pattern}, but optimizations based on 
+ * static analysis cannot be applied to it.
+ * 
+ * @author loomchild
+ */
+public class UnsupportedRegexException extends RuntimeException {
+
+	private static final long serialVersionUID = 2948209133620413853L;
+
+	public UnsupportedRegexException(String message) {
+		super(message);
+	}
+
+}
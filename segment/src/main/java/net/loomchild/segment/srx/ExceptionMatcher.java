@@ -0,0 +1,222 @@
+package net.loomchild.segment.srx;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.loomchild.segment.regex.ReverseTrie;
+import net.loomchild.segment.regex.ReversedCharSequence;
+
+/**
+ * Represents matcher of exception rules at break positions in a text.
+ * Exception rules with literal before pattern are found all at once
+ * using {@link RuleManager#getExceptionTrie()}, the remaining ones are 
+ * matched one by one with regular expressions. Matchers are created on 
+ * first access and reused.
+ * 
+ * Exception regular expression consists of lookbehind with finitized 
+ * before pattern and lookahead with after pattern. Optionally before 
+ * pattern can be matched backwards on reversed text instead, 
+ * see {@link RuleManager#getExceptionReversedPatternList()}.
+ * 
+ * @author loomchild
+ */
+class ExceptionMatcher {
+	
+	private RuleManager ruleManager;
+	
+	private CharSequence text;
+	
+	private Matcher[] matchers;
+	
+	private Matcher[] afterMatchers;
+	
+	private Matcher[] reversedMatchers;
+	
+	private CharSequence reversedText;
+	
+	private List<Pattern> reversedPatternList;
+	
+	private int[] literalIds;
+	
+	/**
+	 * Creates matcher.
+	 * @param ruleManager rule manager containing exception rules
+	 * @param text text
+	 */
+	public ExceptionMatcher(RuleManager ruleManager, CharSequence text) {
+		this(ruleManager, text, false);
+	}
+
+	/**
+	 * Creates matcher.
+	 * @param ruleManager rule manager containing exception rules
+	 * @param text text
+	 * @param reverse true if before patterns should be matched backwards 
+	 * 		when possible
+	 */
+	public ExceptionMatcher(RuleManager ruleManager, CharSequence text, 
+			boolean reverse) {
+		this.ruleManager = ruleManager;
+		this.text = text;
+		int exceptionCount = ruleManager.getExceptionPatternList().size();
+		this.matchers = new Matcher[exceptionCount];
+		this.afterMatchers = new Matcher[exceptionCount];
+		this.literalIds = new int[ruleManager.getExceptionTrie().getSize()];
+		if (reverse) {
+			this.reversedMatchers = new Matcher[exceptionCount];
+			this.reversedText = new ReversedCharSequence(text);
+			this.reversedPatternList = 
+				ruleManager.getExceptionReversedPatternList();
+		}
+	}
+	
+	/**
+	 * Resets matcher so it matches exception rules in given text. 
+	 * Matchers created so far are reused.
+	 * @param text text
+	 */
+	public void reset(CharSequence text) {
+		this.text = text;
+		for (Matcher matcher : matchers) {
+			if (matcher != null) {
+				matcher.reset(text);
+			}
+		}
+		for (Matcher matcher : afterMatchers) {
+			if (matcher != null) {
+				matcher.reset(text);
+			}
+		}
+		if (reversedMatchers != null) {
+			this.reversedText = new ReversedCharSequence(text);
+			for (Matcher matcher : reversedMatchers) {
+				if (matcher != null) {
+					matcher.reset(reversedText);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds first exception rule matching at given position. 
+	 * @param position break position in the text
+	 * @param exceptionCount number of exception rules to consider
+	 * @return index of the first matching exception rule smaller than 
+	 * 		exceptionCount or -1 if there is none
+	 */
+	public int find(int position, int exceptionCount) {
+		int limit = findLiteral(position, exceptionCount);
+		for (int i = 0; i < limit; ++i) {
+			if (!ruleManager.isLiteralException(i) && isMatching(i, position)) {
+				return i;
+			}
+		}
+		if (limit < exceptionCount) {
+			return limit;
+		} else {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Finds first literal exception rule matching at given position. 
+	 * @param position break position in the text
+	 * @param exceptionCount number of exception rules to consider
+	 * @return index of the first matching literal exception rule or 
+	 * 		exceptionCount if there is none
+	 */
+	private int findLiteral(int position, int exceptionCount) {
+		ReverseTrie trie = ruleManager.getExceptionTrie();
+		int count = trie.find(text, position, literalIds);
+		Arrays.sort(literalIds, 0, count);
+		for (int i = 0; i < count && literalIds[i] < exceptionCount; ++i) {
+			int index = literalIds[i];
+			if (isAfterMatching(index, position)) {
+				return index;
+			}
+		}
+		return exceptionCount;
+	}
+	
+	/**
+	 * @param index exception index
+	 * @param position break position in the text
+	 * @return true if exception rule matches at given position
+	 */
+	private boolean isMatching(int index, int position) {
+		Matcher reversedMatcher = getReversedMatcher(index);
+		if (reversedMatcher != null) {
+			int length = reversedText.length();
+			reversedMatcher.region(length - position, length);
+			return reversedMatcher.lookingAt() && 
+				isAfterMatching(index, position);
+		} else {
+			Matcher matcher = getMatcher(index);
+			matcher.region(position, text.length());
+			return matcher.lookingAt();
+		}
+	}
+
+	/**
+	 * @param index exception index
+	 * @param position break position in the text
+	 * @return true if exception after pattern matches at given position
+	 */
+	private boolean isAfterMatching(int index, int position) {
+		Matcher afterMatcher = getAfterMatcher(index);
+		if (afterMatcher == null) {
+			return true;
+		}
+		afterMatcher.region(position, text.length());
+		return afterMatcher.lookingAt();
+	}
+
+	private Matcher getMatcher(int index) {
+		Matcher matcher = matchers[index];
+		if (matcher == null) {
+			Pattern pattern = ruleManager.getExceptionPatternList().get(index);
+			matcher = pattern.matcher(text);
+			matcher.useTransparentBounds(true);
+			matchers[index] = matcher;
+		}
+		return matcher;
+	}
+
+	/**
+	 * @param index exception index
+	 * @return reversed before pattern matcher or null if before pattern
+	 * 		should not or cannot be matched backwards
+	 */
+	private Matcher getReversedMatcher(int index) {
+		if (reversedMatchers == null) {
+			return null;
+		}
+		Matcher matcher = reversedMatchers[index];
+		if (matcher == null) {
+			Pattern pattern = reversedPatternList.get(index);
+			if (pattern != null) {
+				matcher = pattern.matcher(reversedText);
+				matcher.useTransparentBounds(true);
+				reversedMatchers[index] = matcher;
+			}
+		}
+		return matcher;
+	}
+
+	private Matcher getAfterMatcher(int index) {
+		Matcher matcher = afterMatchers[index];
+		if (matcher == null) {
+			Pattern pattern = 
+				ruleManager.getExceptionAfterPatternList().get(index);
+			if (pattern != null) {
+				matcher = pattern.matcher(text);
+				matcher.useTransparentBounds(true);
+				afterMatchers[index] = matcher;
+			}
+		}
+		return matcher;
+	}
+
+}
@@ -0,0 +1,206 @@
+package net.loomchild.segment.srx;
+
+import static net.loomchild.segment.util.Util.getParameter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+
+import net.loomchild.segment.AbstractTextIterator;
+import net.loomchild.segment.util.IORuntimeException;
+import net.loomchild.segment.util.MappedFileReader;
+import net.loomchild.segment.util.Util;
+
+/**
+ * Represents text iterator splitting a file into segments. File is
+ * memory-mapped and decoded directly into the buffer of streaming
+ * {@link SrxTextIterator}, see {@link MappedFileReader}, so neither
+ * the whole text nor additional copies of it are kept in memory.
+ *
+ * Iterator reports position of each segment end in the file, both
+ * in characters and in bytes, as long numbers. Byte positions are
+ * computed by encoding the segments again, so the file must be
+ * correctly encoded; otherwise an exception is thrown.
+ *
+ * Iterator must be closed after use.
+ *
+ * @author loomchild
+ */
+public class FileSrxTextIterator extends AbstractTextIterator
+		implements Closeable {
+
+	/**
+	 * Length of a single mapped part of the file,
+	 * see {@link MappedFileReader}.
+	 */
+	public static final String MAP_LENGTH_PARAMETER = "mapLength";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private MappedFileReader reader;
+
+	private SrxTextIterator iterator;
+
+	private boolean utf8;
+
+	private CharsetEncoder encoder;
+
+	private ByteBuffer byteBuffer;
+
+	private long bytePosition;
+
+	/**
+	 * Creates text iterator and opens the file.
+	 * Supported parameters: {@link #MAP_LENGTH_PARAMETER} and parameters
+	 * of {@link SrxTextIterator#SrxTextIterator(SrxDocument, String, java.io.Reader, Map)}.
+	 *
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param file file
+	 * @param charset file character set
+	 * @param parameterMap additional segmentation parameters
+	 * @throws IORuntimeException if file cannot be opened
+	 */
+	public FileSrxTextIterator(SrxDocument document, String languageCode,
+			File file, Charset charset, Map<String, Object> parameterMap) {
+		int mapLength = getParameter(parameterMap.get(MAP_LENGTH_PARAMETER),
+				MappedFileReader.DEFAULT_MAP_LENGTH);
+		try {
+			this.reader = new MappedFileReader(file, charset, mapLength);
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
+		}
+		this.iterator = new SrxTextIterator(document, languageCode, reader,
+				parameterMap);
+		this.utf8 = charset.equals(UTF_8);
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPORT)
+			.onUnmappableCharacter(CodingErrorAction.REPORT);
+		this.byteBuffer = ByteBuffer.allocate(1024);
+		this.bytePosition = 0;
+	}
+
+	/**
+	 * Creates text iterator with no additional parameters.
+	 * @see #FileSrxTextIterator(SrxDocument, String, File, Charset, Map)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param file file
+	 * @param charset file character set
+	 */
+	public FileSrxTextIterator(SrxDocument document, String languageCode,
+			File file, Charset charset) {
+		this(document, languageCode, file, charset,
+				Util.getEmptyParameterMap());
+	}
+
+	/**
+	 * Finds the next segment in the file and returns it.
+	 *
+	 * @return next segment or null if it doesn't exist
+	 * @throws IORuntimeException if IO error occurs when reading the file,
+	 * 		also when file is not correctly encoded
+	 */
+	public String next() {
+		String segment = iterator.next();
+		if (segment != null) {
+			bytePosition += getByteLength(segment);
+		}
+		return segment;
+	}
+
+	/**
+	 * @return true if there are more segments
+	 */
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	/**
+	 * @return position in the file where last returned segment ends,
+	 * 		in characters
+	 */
+	public long getCharPosition() {
+		return iterator.getPosition();
+	}
+
+	/**
+	 * @return position in the file where last returned segment ends,
+	 * 		in bytes
+	 */
+	public long getBytePosition() {
+		return bytePosition;
+	}
+
+	/**
+	 * Closes the file.
+	 */
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns number of bytes occupied by given segment in the file.
+	 * Segments are encoded by the same encoder, so for example byte order
+	 * mark is counted only once, like in the file.
+	 * @param segment segment
+	 * @return number of bytes
+	 */
+	private long getByteLength(String segment) {
+		if (utf8) {
+			return getUtf8Length(segment);
+		}
+		try {
+			long length = 0;
+			CharBuffer charBuffer = CharBuffer.wrap(segment);
+			CoderResult result;
+			do {
+				byteBuffer.clear();
+				result = encoder.encode(charBuffer, byteBuffer, false);
+				if (result.isError()) {
+					result.throwException();
+				}
+				length += byteBuffer.position();
+			} while (result.isOverflow());
+			return length;
+		} catch (CharacterCodingException e) {
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param segment segment
+	 * @return number of bytes occupied by given segment in UTF-8
+	 */
+	private static long getUtf8Length(String segment) {
+		long length = 0;
+		for (int i = 0; i < segment.length(); ++i) {
+			char c = segment.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) ||
+					Character.isLowSurrogate(c)) {
+				// Surrogate pair is encoded on 4 bytes.
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+}
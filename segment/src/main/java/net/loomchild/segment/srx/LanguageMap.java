@@ -9,9 +9,9 @@ import java.util.regex.Pattern;
  */
 public class LanguageMap {
 
-	private Pattern languagePattern;
+	private final Pattern languagePattern;
 
-	private LanguageRule languageRule;
+	private final LanguageRule languageRule;
 
 	/**
 	 * Creates mapping.
@@ -20,7 +20,17 @@ public class LanguageMap {
 	 * @param languageRule language rule
 	 */
 	public LanguageMap(String pattern, LanguageRule languageRule) {
-		this.languagePattern = Pattern.compile(pattern);
+		this(Pattern.compile(pattern), languageRule);
+	}
+
+	/**
+	 * Creates mapping with already compiled language code pattern.
+	 * 
+	 * @param languagePattern language code pattern
+	 * @param languageRule language rule
+	 */
+	public LanguageMap(Pattern languagePattern, LanguageRule languageRule) {
+		this.languagePattern = languagePattern;
 		this.languageRule = languageRule;
 	}
 
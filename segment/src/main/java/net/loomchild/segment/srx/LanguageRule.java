@@ -1,6 +1,7 @@
 package net.loomchild.segment.srx;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -12,9 +13,11 @@ import java.util.List;
  */
 public class LanguageRule {
 
-	private List<Rule> ruleList;
+	private final List<Rule> ruleList;
 
-	private String name;
+	private final String name;
+
+	private final boolean frozen;
 
 	/**
 	 * Creates language rule.
@@ -25,6 +28,20 @@ public class LanguageRule {
 	public LanguageRule(String name, List<Rule> ruleList) {
 		this.ruleList = new ArrayList<Rule>(ruleList);
 		this.name = name;
+		this.frozen = false;
+	}
+
+	/**
+	 * Creates frozen copy of given language rule.
+	 * @see #freeze()
+	 * @param languageRule language rule
+	 */
+	private LanguageRule(LanguageRule languageRule) {
+		this.ruleList = Collections.unmodifiableList(Arrays.asList(
+				languageRule.ruleList.toArray(
+						new Rule[languageRule.ruleList.size()])));
+		this.name = languageRule.name;
+		this.frozen = true;
 	}
 
 	/**
@@ -40,17 +57,46 @@ public class LanguageRule {
 	 * @return unmodifiable rules list
 	 */
 	public List<Rule> getRuleList() {
-		return Collections.unmodifiableList(ruleList);
+		if (frozen) {
+			return ruleList;
+		} else {
+			return Collections.unmodifiableList(ruleList);
+		}
 	}
 
 	/**
 	 * Adds rule to the end of rule list.
 	 * @param rule
+	 * @throws IllegalStateException if language rule is frozen
 	 */
 	public void addRule(Rule rule) {
+		if (frozen) {
+			throw new IllegalStateException(
+					"Frozen language rule cannot be modified.");
+		}
 		ruleList.add(rule);
 	}
 
+	/**
+	 * Returns frozen copy of this language rule, which cannot be modified.
+	 * Rules themselves are immutable, so they are not copied.
+	 * @return frozen language rule, this if it is already frozen
+	 */
+	public LanguageRule freeze() {
+		if (frozen) {
+			return this;
+		} else {
+			return new LanguageRule(this);
+		}
+	}
+
+	/**
+	 * @return true if language rule is frozen and cannot be modified
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	/**
 	 * @return language rule name
 	 */
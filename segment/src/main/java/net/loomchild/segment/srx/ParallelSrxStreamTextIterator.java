@@ -0,0 +1,391 @@
+package net.loomchild.segment.srx;
+
+import static net.loomchild.segment.util.Util.getParameter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+
+import net.loomchild.segment.AbstractTextIterator;
+import net.loomchild.segment.BoundaryIterator;
+import net.loomchild.segment.util.IORuntimeException;
+import net.loomchild.segment.util.Util;
+
+/**
+ * Represents streaming text iterator splitting text into segments
+ * concurrently, using {@link SrxTextIterator}.
+ *
+ * Text read from the reader is divided into units ending with a hard
+ * boundary (see {@link #HARD_BOUNDARY_PARAMETER}), for example a blank
+ * line. Segment always ends at a hard boundary, and each unit is segmented
+ * independently by a separate task, as if it was the whole text.
+ * Rules are compiled once and shared by all the tasks via document cache.
+ *
+ * Text is read by the thread iterating over segments, ahead of
+ * the returned segments. At most {@link #QUEUE_LENGTH_PARAMETER} units
+ * are read and submitted to the executor at once, so memory usage
+ * does not depend on text length. Segments are returned in order.
+ *
+ * @author loomchild
+ */
+public class ParallelSrxStreamTextIterator extends AbstractTextIterator
+		implements BoundaryIterator {
+
+	/**
+	 * Regular expression matching hard boundary. Text unit ends where
+	 * the match ends. Must not match empty string. Compiled with the same
+	 * flags as the rules.
+	 */
+	public static final String HARD_BOUNDARY_PARAMETER = "hardBoundary";
+
+	/**
+	 * Maximum number of units read ahead and segmented concurrently.
+	 */
+	public static final String QUEUE_LENGTH_PARAMETER = "queueLength";
+
+	/**
+	 * Default hard boundary, one or more blank lines.
+	 */
+	public static final String DEFAULT_HARD_BOUNDARY = "\\n\\s*\\n";
+
+	/**
+	 * Default queue length.
+	 */
+	public static final int DEFAULT_QUEUE_LENGTH = 64;
+
+	/**
+	 * Minimum number of characters read from the reader at once.
+	 */
+	private static final int READ_LENGTH = 64 * 1024;
+
+	private SrxDocument document;
+
+	private String languageCode;
+
+	private Map<String, Object> parameterMap;
+
+	private ExecutorService executorService;
+
+	private Reader reader;
+
+	private Matcher hardBoundaryMatcher;
+
+	private int queueLength;
+
+	private StringBuilder buffer;
+
+	private int bufferStart;
+
+	private boolean endOfInput;
+
+	private long offset;
+
+	private LinkedList<Future<Unit>> futureList;
+
+	private Unit unit;
+
+	private int boundaryIndex;
+
+	private int start;
+
+	/**
+	 * Creates text iterator. Text is not actually read until required.
+	 * Supported parameters: {@link #HARD_BOUNDARY_PARAMETER},
+	 * {@link #QUEUE_LENGTH_PARAMETER} and parameters of
+	 * {@link SrxTextIterator#SrxTextIterator(SrxDocument, String, CharSequence, Map)}.
+	 *
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param reader reader from which read the text
+	 * @param parameterMap additional segmentation parameters
+	 * @param executorService executor running segmentation tasks
+	 */
+	public ParallelSrxStreamTextIterator(SrxDocument document,
+			String languageCode, Reader reader,
+			Map<String, Object> parameterMap,
+			ExecutorService executorService) {
+		String hardBoundary = getParameter(
+				parameterMap.get(HARD_BOUNDARY_PARAMETER),
+				DEFAULT_HARD_BOUNDARY);
+		int patternFlags = getParameter(parameterMap.get(
+				SrxTextIterator.DEFAULT_PATTERN_FLAGS_PARAMETER), 0);
+		int queueLength = getParameter(
+				parameterMap.get(QUEUE_LENGTH_PARAMETER), DEFAULT_QUEUE_LENGTH);
+		if (queueLength <= 0) {
+			throw new IllegalArgumentException("Queue length: " +
+					queueLength + " must be positive.");
+		}
+		this.document = document;
+		this.languageCode = languageCode;
+		this.parameterMap = parameterMap;
+		this.executorService = executorService;
+		this.reader = reader;
+		this.buffer = new StringBuilder();
+		this.hardBoundaryMatcher =
+			Util.compile(document, hardBoundary, patternFlags).matcher(buffer);
+		this.queueLength = queueLength;
+		this.bufferStart = 0;
+		this.endOfInput = false;
+		this.offset = 0;
+		this.futureList = new LinkedList<Future<Unit>>();
+		this.unit = null;
+		this.boundaryIndex = 0;
+		this.start = 0;
+	}
+
+	/**
+	 * Creates text iterator with no additional parameters.
+	 * @see #ParallelSrxStreamTextIterator(SrxDocument, String, Reader, Map, ExecutorService)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param reader reader from which read the text
+	 * @param executorService executor running segmentation tasks
+	 */
+	public ParallelSrxStreamTextIterator(SrxDocument document,
+			String languageCode, Reader reader,
+			ExecutorService executorService) {
+		this(document, languageCode, reader, Util.getEmptyParameterMap(),
+				executorService);
+	}
+
+	/**
+	 * Returns next segment. Waits until it is found by segmentation task.
+	 *
+	 * @return next segment or null if it doesn't exist
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public String next() {
+		if (hasNext()) {
+			int end = unit.boundaries[boundaryIndex++];
+			String segment = unit.text.substring(start, end);
+			start = end;
+			return segment;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns end position of next segment in the whole input.
+	 * Waits until it is found by segmentation task.
+	 *
+	 * @return position where next segment ends or -1 if it doesn't exist
+	 * @throws IllegalStateException if segmentation task failed,
+	 * 		current thread was interrupted or position exceeds integer 
+	 * 		range, see {@link #nextLongBoundary()}
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public int nextBoundary() {
+		long boundary = nextLongBoundary();
+		if (boundary > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Boundary position: " + boundary + 
+					" exceeds integer range; use nextLongBoundary()");
+		}
+		return (int)boundary;
+	}
+
+	/**
+	 * Returns end position of next segment in the whole input as long
+	 * number, so it can be used with streams longer than 
+	 * {@link Integer#MAX_VALUE} characters.
+	 * Waits until it is found by segmentation task.
+	 *
+	 * @return position where next segment ends or -1 if it doesn't exist
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public long nextLongBoundary() {
+		if (hasNext()) {
+			start = unit.boundaries[boundaryIndex++];
+			return unit.offset + start;
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Moves to the next unit containing segments if current one is
+	 * exhausted.
+	 *
+	 * @return true if there are more segments
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public boolean hasNext() {
+		while (unit == null || boundaryIndex >= unit.boundaries.length) {
+			fillQueue();
+			if (futureList.isEmpty()) {
+				return false;
+			}
+			unit = getUnit(futureList.removeFirst());
+			boundaryIndex = 0;
+			start = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads units of text and submits segmentation tasks until the queue
+	 * is full or there is no more text.
+	 */
+	private void fillQueue() {
+		String text;
+		while (futureList.size() < queueLength && (text = readUnit()) != null) {
+			futureList.add(executorService.submit(new UnitTask(text, offset)));
+			offset += text.length();
+		}
+	}
+
+	/**
+	 * Reads text until the next hard boundary or the end of input.
+	 * @return text unit or null if there is no more text
+	 */
+	private String readUnit() {
+		while (true) {
+			int end = findHardBoundary();
+			if (end != -1) {
+				String text = buffer.substring(bufferStart, end);
+				bufferStart = end;
+				return text;
+			} else if (endOfInput) {
+				if (bufferStart < buffer.length()) {
+					String text = buffer.substring(bufferStart);
+					bufferStart = buffer.length();
+					return text;
+				} else {
+					return null;
+				}
+			}
+			// Amount of text read at least doubles, so the unit is searched
+			// again only logarithmic number of times.
+			buffer.delete(0, bufferStart);
+			bufferStart = 0;
+			read(Math.max(READ_LENGTH, buffer.length()));
+		}
+	}
+
+	/**
+	 * Finds end of first non-empty hard boundary match in the buffer.
+	 * Match is only accepted if reading more text could not change it.
+	 * @return end of match or -1 if it has not been found
+	 */
+	private int findHardBoundary() {
+		hardBoundaryMatcher.reset();
+		hardBoundaryMatcher.region(bufferStart, buffer.length());
+		while (hardBoundaryMatcher.find()) {
+			if (hardBoundaryMatcher.hitEnd() && !endOfInput) {
+				return -1;
+			}
+			if (hardBoundaryMatcher.end() > bufferStart) {
+				return hardBoundaryMatcher.end();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads given amount of characters from the reader and appends them
+	 * to the buffer. Sets end of input flag if reader has been exhausted.
+	 * @param amount amount of characters to read
+	 */
+	private void read(int amount) {
+		try {
+			char[] charBuffer = new char[amount];
+			int count = 0;
+			while (count < amount) {
+				int result = reader.read(charBuffer, count, amount - count);
+				if (result == -1) {
+					endOfInput = true;
+					break;
+				}
+				count += result;
+			}
+			buffer.append(charBuffer, 0, count);
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Waits for unit segmentation task to finish.
+	 * @param future task result
+	 * @return segmented unit
+	 */
+	private Unit getUnit(Future<Unit> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for segmentation task.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} else {
+				throw new IllegalStateException(
+						"Segmentation task failed.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Represents segmented unit of the text.
+	 */
+	private static class Unit {
+
+		private String text;
+
+		private long offset;
+
+		private int[] boundaries;
+
+		public Unit(String text, long offset, int[] boundaries) {
+			this.text = text;
+			this.offset = offset;
+			this.boundaries = boundaries;
+		}
+
+	}
+
+	/**
+	 * Represents task segmenting a unit.
+	 */
+	private class UnitTask implements Callable<Unit> {
+
+		private String text;
+
+		private long offset;
+
+		public UnitTask(String text, long offset) {
+			this.text = text;
+			this.offset = offset;
+		}
+
+		public Unit call() {
+			SrxTextIterator iterator = new SrxTextIterator(document,
+					languageCode, text, parameterMap);
+			int[] boundaries = new int[16];
+			int count = 0;
+			while (iterator.hasNext()) {
+				if (count == boundaries.length) {
+					boundaries = Arrays.copyOf(boundaries, count * 2);
+				}
+				boundaries[count++] = iterator.nextBoundary();
+			}
+			return new Unit(text, offset, Arrays.copyOf(boundaries, count));
+		}
+
+	}
+
+}
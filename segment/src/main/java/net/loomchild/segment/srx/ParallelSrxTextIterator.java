@@ -0,0 +1,340 @@
+package net.loomchild.segment.srx;
+
+import static net.loomchild.segment.util.Util.getParameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.loomchild.segment.AbstractTextIterator;
+import net.loomchild.segment.BoundaryIterator;
+import net.loomchild.segment.util.Util;
+
+/**
+ * Represents text iterator splitting large text into segments concurrently,
+ * using {@link SrxTextIterator}. Returns exactly the same segments.
+ *
+ * Text is divided into chunks of equal length (see
+ * {@link #CHUNK_LENGTH_PARAMETER}) at arbitrary positions and each chunk
+ * is segmented by a separate task, as if previous segment ended at chunk
+ * start. Chunk iterator sees the whole text, so lookbehind and lookahead
+ * are not limited by chunk boundaries, and it continues until it finds
+ * a boundary after chunk end.
+ *
+ * Boundaries found at the beginning of a chunk can be wrong, as sequential
+ * segmentation does not necessarily end a segment at chunk start.
+ * Therefore when boundaries of the previous chunk are exhausted, its
+ * iterator continues to find boundaries until it reaches a boundary
+ * where both iterators have the same state of all rule matchers.
+ * From there both iterators find the same boundaries, so the remaining
+ * boundaries of the chunk are used. If no such boundary is found among
+ * first {@link #SYNCHRONIZATION_COUNT} boundaries of the chunk, the chunk
+ * is ignored and previous iterator continues through it.
+ *
+ * Text must not be modified during segmentation. Segments are returned
+ * in order; tasks are submitted to given executor when iterator is
+ * created.
+ *
+ * @author loomchild
+ */
+public class ParallelSrxTextIterator extends AbstractTextIterator
+		implements BoundaryIterator {
+
+	/**
+	 * Length of text segmented by a single task.
+	 */
+	public static final String CHUNK_LENGTH_PARAMETER = "chunkLength";
+
+	/**
+	 * Default chunk length.
+	 */
+	public static final int DEFAULT_CHUNK_LENGTH = 1024 * 1024;
+
+	/**
+	 * Number of boundaries at the beginning of each chunk where
+	 * iterator state is remembered, so it can be compared with the state
+	 * of previous chunk iterator.
+	 */
+	public static final int SYNCHRONIZATION_COUNT = 16;
+
+	private CharSequence text;
+
+	private List<Future<Chunk>> futureList;
+
+	private Chunk chunk;
+
+	private int boundaryIndex;
+
+	private SrxTextIterator iterator;
+
+	private int nextChunkIndex;
+
+	private Chunk nextChunk;
+
+	private int start;
+
+	/**
+	 * Creates text iterator and submits segmentation tasks to given
+	 * executor.
+	 * Supported parameters: {@link #CHUNK_LENGTH_PARAMETER} and
+	 * parameters of
+	 * {@link SrxTextIterator#SrxTextIterator(SrxDocument, String, CharSequence, Map)}.
+	 *
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param text text, must not be modified
+	 * @param parameterMap additional segmentation parameters
+	 * @param executorService executor running segmentation tasks
+	 */
+	public ParallelSrxTextIterator(SrxDocument document, String languageCode,
+			CharSequence text, Map<String, Object> parameterMap,
+			ExecutorService executorService) {
+		int chunkLength = getParameter(
+				parameterMap.get(CHUNK_LENGTH_PARAMETER), DEFAULT_CHUNK_LENGTH);
+		if (chunkLength <= 0) {
+			throw new IllegalArgumentException("Chunk length: " +
+					chunkLength + " must be positive.");
+		}
+		this.text = text;
+		this.futureList = new ArrayList<Future<Chunk>>();
+		// First iterator is created here, so rules are compiled and
+		// stored in document cache before tasks start.
+		SrxTextIterator chunkIterator =
+			new SrxTextIterator(document, languageCode, text, parameterMap, 0);
+		int chunkStart = 0;
+		do {
+			int chunkEnd = (int)Math.min((long)chunkStart + chunkLength,
+					text.length());
+			if (chunkStart > 0) {
+				chunkIterator = new SrxTextIterator(document, languageCode,
+						text, parameterMap, chunkStart);
+			}
+			futureList.add(executorService.submit(
+					new ChunkTask(chunkIterator, chunkStart, chunkEnd)));
+			chunkStart = chunkEnd;
+		} while (chunkStart < text.length());
+		this.chunk = getChunk(0);
+		this.boundaryIndex = 0;
+		this.iterator = chunk.iterator;
+		this.nextChunkIndex = 1;
+		this.nextChunk = getChunk(nextChunkIndex);
+		this.start = 0;
+	}
+
+	/**
+	 * Creates text iterator with no additional parameters.
+	 * @see #ParallelSrxTextIterator(SrxDocument, String, CharSequence, Map, ExecutorService)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param text text, must not be modified
+	 * @param executorService executor running segmentation tasks
+	 */
+	public ParallelSrxTextIterator(SrxDocument document, String languageCode,
+			CharSequence text, ExecutorService executorService) {
+		this(document, languageCode, text, Util.getEmptyParameterMap(),
+				executorService);
+	}
+
+	/**
+	 * Returns next segment. Waits until it is found by segmentation task.
+	 *
+	 * @return next segment or null if it doesn't exist
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 */
+	public String next() {
+		int segmentStart = start;
+		int end = nextBoundary();
+		if (end != -1) {
+			return text.subSequence(segmentStart, end).toString();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns end position of next segment. Waits until it is found by
+	 * segmentation task.
+	 *
+	 * @return position where next segment ends or -1 if it doesn't exist
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 */
+	public int nextBoundary() {
+		if (!hasNext()) {
+			return -1;
+		}
+		int end;
+		if (boundaryIndex < chunk.boundaryCount) {
+			end = chunk.boundaries[boundaryIndex++];
+		} else {
+			end = iterator.nextBoundary();
+		}
+		if (boundaryIndex >= chunk.boundaryCount) {
+			synchronize(end);
+		}
+		start = end;
+		return end;
+	}
+
+	/**
+	 * @return true if there are more segments
+	 */
+	public boolean hasNext() {
+		return boundaryIndex < chunk.boundaryCount || iterator.hasNext();
+	}
+
+	/**
+	 * Checks if current iterator has the same state as next chunk iterator
+	 * at given boundary. If so, switches to remaining boundaries of the
+	 * next chunk. Skips next chunk if that is no longer possible.
+	 * @param end last found boundary
+	 */
+	private void synchronize(int end) {
+		while (nextChunk != null && boundaryIndex >= chunk.boundaryCount) {
+			int index = nextChunk.indexOf(end, iterator.getState());
+			if (index != -1) {
+				chunk = nextChunk;
+				boundaryIndex = index + 1;
+				iterator = chunk.iterator;
+			} else if (end < nextChunk.getLastStateBoundary()) {
+				break;
+			}
+			++nextChunkIndex;
+			nextChunk = getChunk(nextChunkIndex);
+		}
+	}
+
+	/**
+	 * Waits for chunk segmentation task to finish.
+	 * @param index chunk index
+	 * @return segmented chunk or null if index is out of range
+	 */
+	private Chunk getChunk(int index) {
+		if (index >= futureList.size()) {
+			return null;
+		}
+		Future<Chunk> future = futureList.get(index);
+		// Release reference so the chunk can be garbage collected.
+		futureList.set(index, null);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for segmentation task.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} else {
+				throw new IllegalStateException(
+						"Segmentation task failed.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Represents segmented chunk of the text. Contains boundaries found by
+	 * the iterator and its state at the first boundaries. Iterator is
+	 * positioned after the last boundary, which is the first one after
+	 * chunk end.
+	 */
+	private static class Chunk {
+
+		private SrxTextIterator iterator;
+
+		private int[] boundaries;
+
+		private int boundaryCount;
+
+		private int[][] states;
+
+		public Chunk(SrxTextIterator iterator) {
+			this.iterator = iterator;
+			this.boundaries = new int[SYNCHRONIZATION_COUNT];
+			this.boundaryCount = 0;
+			this.states = new int[SYNCHRONIZATION_COUNT][];
+		}
+
+		/**
+		 * Finds next boundary and adds it to the chunk.
+		 * @return found boundary
+		 */
+		public int addBoundary() {
+			int boundary = iterator.nextBoundary();
+			if (boundaryCount == boundaries.length) {
+				boundaries = Arrays.copyOf(boundaries, boundaryCount * 2);
+			}
+			if (boundaryCount < SYNCHRONIZATION_COUNT) {
+				states[boundaryCount] = iterator.getState();
+			}
+			boundaries[boundaryCount++] = boundary;
+			return boundary;
+		}
+
+		/**
+		 * @param boundary boundary
+		 * @param state iterator state at the boundary
+		 * @return index of given boundary with given state or -1 if it
+		 * 		cannot be found
+		 */
+		public int indexOf(int boundary, int[] state) {
+			int count = Math.min(boundaryCount, SYNCHRONIZATION_COUNT);
+			for (int i = 0; i < count; ++i) {
+				if (boundaries[i] == boundary &&
+						Arrays.equals(states[i], state)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return last boundary with remembered state or -1
+		 * 		if there are no boundaries
+		 */
+		public int getLastStateBoundary() {
+			int count = Math.min(boundaryCount, SYNCHRONIZATION_COUNT);
+			if (count > 0) {
+				return boundaries[count - 1];
+			} else {
+				return -1;
+			}
+		}
+
+	}
+
+	/**
+	 * Represents task segmenting a chunk.
+	 */
+	private static class ChunkTask implements Callable<Chunk> {
+
+		private SrxTextIterator iterator;
+
+		private int start;
+
+		private int end;
+
+		public ChunkTask(SrxTextIterator iterator, int start, int end) {
+			this.iterator = iterator;
+			this.start = start;
+			this.end = end;
+		}
+
+		public Chunk call() {
+			Chunk chunk = new Chunk(iterator);
+			int boundary = start;
+			while (boundary < end && iterator.hasNext()) {
+				boundary = chunk.addBoundary();
+			}
+			return chunk;
+		}
+
+	}
+
+}
@@ -8,11 +8,11 @@ package net.loomchild.segment.srx;
  */
 public class Rule {
 
-	private boolean breaking;
+	private final boolean breaking;
 
-	private String beforePattern;
+	private final String beforePattern;
 
-	private String afterPattern;
+	private final String afterPattern;
 
 	/**
 	 * Creates rule.
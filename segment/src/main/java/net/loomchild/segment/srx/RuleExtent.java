@@ -0,0 +1,97 @@
+package net.loomchild.segment.srx;
+
+import net.loomchild.segment.regex.Regex;
+
+/**
+ * Represents lengths of text matched by before and after patterns of
+ * a rule, computed by static analysis of the patterns,
+ * see {@link RuleManager#getExtent(Rule)}. Unbounded length is
+ * equal to {@link Regex#INFINITY}. If pattern cannot be analyzed
+ * its minimum length is zero and maximum length is unbounded.
+ *
+ * @author loomchild
+ */
+public class RuleExtent {
+
+	private int minBeforeLength;
+
+	private int maxBeforeLength;
+
+	private int maxBeforeReadLength;
+
+	private int minAfterLength;
+
+	private int maxAfterLength;
+
+	private int maxAfterReadLength;
+
+	/**
+	 * Creates rule extent.
+	 * @param minBeforeLength minimum length of before pattern match
+	 * @param maxBeforeLength maximum length of before pattern match
+	 * @param maxBeforeReadLength maximum number of characters after 
+	 * 		match start examined by before pattern
+	 * @param minAfterLength minimum length of after pattern match
+	 * @param maxAfterLength maximum length of after pattern match
+	 * @param maxAfterReadLength maximum number of characters after break
+	 * 		position examined by after pattern
+	 */
+	public RuleExtent(int minBeforeLength, int maxBeforeLength,
+			int maxBeforeReadLength, int minAfterLength, int maxAfterLength, int maxAfterReadLength) {
+		this.minBeforeLength = minBeforeLength;
+		this.maxBeforeLength = maxBeforeLength;
+		this.maxBeforeReadLength = maxBeforeReadLength;
+		this.minAfterLength = minAfterLength;
+		this.maxAfterLength = maxAfterLength;
+		this.maxAfterReadLength = maxAfterReadLength;
+	}
+
+	/**
+	 * @return minimum length of before pattern match
+	 */
+	public int getMinBeforeLength() {
+		return minBeforeLength;
+	}
+
+	/**
+	 * @return maximum length of before pattern match
+	 */
+	public int getMaxBeforeLength() {
+		return maxBeforeLength;
+	}
+
+	/**
+	 * Returns maximum number of characters after match start examined
+	 * by before pattern. 
+	 * @see #getMaxAfterReadLength()
+	 * @return maximum number of examined characters
+	 */
+	public int getMaxBeforeReadLength() {
+		return maxBeforeReadLength;
+	}
+
+	/**
+	 * @return minimum length of after pattern match
+	 */
+	public int getMinAfterLength() {
+		return minAfterLength;
+	}
+
+	/**
+	 * @return maximum length of after pattern match
+	 */
+	public int getMaxAfterLength() {
+		return maxAfterLength;
+	}
+
+	/**
+	 * Returns maximum number of characters after break position examined
+	 * by after pattern. It can be greater than maximum match length,
+	 * for example when pattern contains lookahead.
+	 * @return maximum number of examined characters
+	 */
+	public int getMaxAfterReadLength() {
+		return maxAfterReadLength;
+	}
+
+}
@@ -1,11 +1,18 @@
 package net.loomchild.segment.srx;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import net.loomchild.segment.regex.Automaton;
+import net.loomchild.segment.regex.PatternFilter;
+import net.loomchild.segment.regex.Regex;
+import net.loomchild.segment.regex.ReverseTrie;
+import net.loomchild.segment.regex.UnsupportedRegexException;
 import net.loomchild.segment.util.Util;
 
 /**
@@ -16,66 +23,149 @@ import net.loomchild.segment.util.Util;
  */
 public class RuleManager {
 	
-	@SuppressWarnings("unused")
+	/**
+	 * Maximum number of literal strings matched by exception rule 
+	 * before pattern so it is added to exception trie.
+	 */
+	public static final int MAX_LITERAL_COUNT = 256;
+	
 	private SrxDocument document;
 	
 	private int maxLookbehindConstructLength;
+	
+	private int patternFlags;
 
 	private List<Rule> breakRuleList;
 	
+	private Map<Rule, PatternFilter> breakFilterMap;
+	
+	private List<String> exceptionPatternStringList;
+
+	private List<Pattern> exceptionPatternList;
+	
+	private List<String> exceptionBeforePatternStringList;
+	
+	private List<Pattern> exceptionAfterPatternList;
+	
+	private List<Boolean> literalExceptionList;
+	
+	private ReverseTrie exceptionTrie;
+	
+	private Map<Rule, Integer> exceptionCountMap;
+	
 	private Map<Rule, Pattern> exceptionPatternMap;
 	
+	private Map<Rule, RuleExtent> extentMap;
+	
+	private Map<Rule, Boolean> boundarySensitiveMap;
+	
+	private int requiredMargin;
+	
+	private List<Pattern> exceptionReversedPatternList;
+	
+	private Automaton breakAutomaton;
+	
+	private List<Automaton> breakAfterAutomatonList;
+	
+	/**
+	 * Creates rule manager compiling patterns with no flags.
+	 * @see #RuleManager(SrxDocument, List, int, int)
+	 * @param document SRX document
+	 * @param languageRuleList list of language rules
+	 * @param maxLookbehindConstructLength Maximum length of regular expression in lookbehind (see {@link Util#finitize(String, int)}).
+	 */
+	public RuleManager(SrxDocument document, List<LanguageRule> languageRuleList, 
+			int maxLookbehindConstructLength) {
+		this(document, languageRuleList, maxLookbehindConstructLength, 0);
+	}
+	
 	/**
 	 * Constructor. Responsible for retrieving rules from SRX document for
 	 * given language code, constructing patterns and storing them in 
 	 * quick accessible format.
-	 * Adds break rules to {@link #breakRuleList} and constructs
-	 * corresponding exception patterns in {@link #exceptionPatternMap}.  
+	 * Adds break rules to {@link #breakRuleList} and analyzes their
+	 * before patterns to create filters in {@link #breakFilterMap}.
+	 * Adds exception patterns 
+	 * to {@link #exceptionPatternList}. Each exception pattern is compiled
+	 * only once, for each break rule only the number of preceding 
+	 * exception rules is stored in {@link #exceptionCountMap}. 
+	 * Exception rules with before pattern matching only a few literal 
+	 * strings are also added to 
+	 * {@link #exceptionTrie}, so they can be matched all at once.
+	 * Computes extents of all the rules in {@link #extentMap}.
 	 * Uses document cache to store rules and patterns. 
 	 * @param document SRX document
 	 * @param languageRuleList list of language rules
 	 * @param maxLookbehindConstructLength Maximum length of regular expression in lookbehind (see {@link Util#finitize(String, int)}).
+	 * @param patternFlags flags used to compile all the patterns, 
+	 * 		see {@link Pattern#compile(String, int)}
 	 */
 	public RuleManager(SrxDocument document, List<LanguageRule> languageRuleList, 
-			int maxLookbehindConstructLength) {
+			int maxLookbehindConstructLength, int patternFlags) {
 		
 		this.document = document;
 		this.maxLookbehindConstructLength = maxLookbehindConstructLength;
+		this.patternFlags = patternFlags;
 		
 		this.breakRuleList = new ArrayList<Rule>();
+		this.breakFilterMap = new HashMap<Rule, PatternFilter>();
+		this.exceptionPatternStringList = new ArrayList<String>();
+		this.exceptionPatternList = new ArrayList<Pattern>();
+		this.exceptionBeforePatternStringList = new ArrayList<String>();
+		this.exceptionAfterPatternList = new ArrayList<Pattern>();
+		this.literalExceptionList = new ArrayList<Boolean>();
+		this.exceptionTrie = new ReverseTrie();
+		this.exceptionCountMap = new HashMap<Rule, Integer>();
 		this.exceptionPatternMap = new HashMap<Rule, Pattern>();
+		this.extentMap = new HashMap<Rule, RuleExtent>();
+		this.boundarySensitiveMap = new HashMap<Rule, Boolean>();
+		this.requiredMargin = 0;
 
-		StringBuilder exceptionPatternBuilder = new StringBuilder();
-		
 		for (LanguageRule languageRule : languageRuleList) {
 			for (Rule rule : languageRule.getRuleList()) {
+				
+				RuleExtent extent = createExtent(rule);
+				extentMap.put(rule, extent);
+				requiredMargin = 
+					Math.max(requiredMargin, extent.getMaxAfterReadLength());
 
 				if (rule.isBreak()) {
 				
 					breakRuleList.add(rule);
-					
-					Pattern exceptionPattern;
-					
-					if (exceptionPatternBuilder.length() > 0) {
-						String exceptionPatternString = 
-							exceptionPatternBuilder.toString();
-						exceptionPattern = 
-							Util.compile(document, exceptionPatternString);
-					} else {
-						exceptionPattern = null;
-					}
-
-					exceptionPatternMap.put(rule, exceptionPattern);
+					breakFilterMap.put(rule, 
+							createFilter(rule.getBeforePattern()));
+					boundarySensitiveMap.put(rule, 
+							isBoundarySensitive(rule.getBeforePattern()));
+					exceptionCountMap.put(rule, exceptionPatternList.size());
 				
 				} else {
 				
-					if (exceptionPatternBuilder.length() > 0) {
-						exceptionPatternBuilder.append('|');
-					}
-
 					String patternString = createExceptionPatternString(rule);
+					exceptionPatternStringList.add(patternString);
+					exceptionPatternList.add(
+							Util.compile(document, patternString, 
+									patternFlags));
+					exceptionBeforePatternStringList.add(
+							rule.getBeforePattern());
 					
-					exceptionPatternBuilder.append(patternString);
+					String afterPattern = rule.getAfterPattern();
+					if (afterPattern.length() > 0) {
+						exceptionAfterPatternList.add(
+								Util.compile(document, afterPattern, 
+										patternFlags));
+					} else {
+						exceptionAfterPatternList.add(null);
+					}
+
+					List<String> literalList = 
+						getLiterals(rule.getBeforePattern());
+					if (literalList != null) {
+						for (String literal : literalList) {
+							exceptionTrie.add(literal, 
+									exceptionPatternList.size() - 1);
+						}
+					}
+					literalExceptionList.add(literalList != null);
 			
 				}
 			
@@ -92,11 +182,375 @@ public class RuleManager {
 	}
 	
 	/**
+	 * @return flags used to compile all the patterns
+	 */
+	public int getPatternFlags() {
+		return patternFlags;
+	}
+	
+	/**
+	 * Returns lengths of text matched by before and after patterns 
+	 * of given rule.
+	 * @param rule break or exception rule
+	 * @return rule extent or null if rule is not managed by this manager
+	 */
+	public RuleExtent getExtent(Rule rule) {
+		return extentMap.get(rule);
+	}
+	
+	/**
+	 * Returns maximum number of characters after break position examined
+	 * by after patterns of all the rules, see 
+	 * {@link RuleExtent#getMaxAfterReadLength()}. When text is read 
+	 * from a stream, break position found this many characters before 
+	 * the end of the buffer does not change after reading more text, 
+	 * so this is the smallest margin that can be safely used.
+	 * @return required margin or {@link Regex#INFINITY} if after patterns
+	 * 		are unbounded
+	 */
+	public int getRequiredMargin() {
+		return requiredMargin;
+	}
+	
+	/**
+	 * Returns filter of positions where before pattern of given break rule 
+	 * can start matching, see {@link RuleMatcher}.
+	 * @param breakRule break rule
+	 * @return filter or null if rule cannot be filtered
+	 */
+	public PatternFilter getBreakFilter(Rule breakRule) {
+		return breakFilterMap.get(breakRule);
+	}
+	
+	/**
+	 * Returns true if matching of before pattern of given break rule
+	 * depends on where the matcher region starts, for example because 
+	 * it contains lookbehind or "^", see {@link Regex#isBoundarySensitive()}.
+	 * @param breakRule break rule
+	 * @return true if rule is sensitive to region start or it cannot 
+	 * 		be analyzed
+	 */
+	public boolean isBoundarySensitive(Rule breakRule) {
+		Boolean boundarySensitive = boundarySensitiveMap.get(breakRule);
+		return boundarySensitive == null || boundarySensitive;
+	}
+	
+	/**
+	 * Returns list of all exception patterns, in the same order as exception 
+	 * rules in language rules. Each pattern can be matched in the place
+	 * where break rule was matched.
+	 * @return exception pattern list
+	 */
+	public List<Pattern> getExceptionPatternList() {
+		return exceptionPatternList;
+	}
+	
+	/**
+	 * Returns list of exception after patterns, in the same order as 
+	 * {@link #getExceptionPatternList()}. 
+	 * @return exception after pattern list, containing null if 
+	 * 		after pattern is empty
+	 */
+	public List<Pattern> getExceptionAfterPatternList() {
+		return exceptionAfterPatternList;
+	}
+
+	/**
+	 * Returns list of reversed exception before patterns, in the same 
+	 * order as {@link #getExceptionPatternList()}, see 
+	 * {@link Regex#getReversedPattern()}. They can be matched backwards 
+	 * from break position on reversed text, so unlike 
+	 * exception patterns they do not need to be finitized. 
+	 * Patterns are constructed on first access.
+	 * @return reversed exception before pattern list, containing null 
+	 * 		if before pattern cannot be reversed
+	 */
+	public synchronized List<Pattern> getExceptionReversedPatternList() {
+		if (exceptionReversedPatternList == null) {
+			exceptionReversedPatternList = new ArrayList<Pattern>();
+			for (String patternString : exceptionBeforePatternStringList) {
+				exceptionReversedPatternList.add(
+						createReversedPattern(patternString));
+			}
+		}
+		return exceptionReversedPatternList;
+	}
+
+	/**
+	 * @param index exception index
+	 * @return true if strings matched by exception before pattern are 
+	 * 		stored in {@link #getExceptionTrie()} 
+	 */
+	public boolean isLiteralException(int index) {
+		return literalExceptionList.get(index);
+	}
+
+	/**
+	 * Returns trie containing strings matched by literal before patterns 
+	 * of exception rules, identified by exception index. Literal exception rule matches 
+	 * if its before pattern is found in the trie and its after pattern matches.
+	 * @return exception trie
+	 */
+	public ReverseTrie getExceptionTrie() {
+		return exceptionTrie;
+	}
+	
+	/**
+	 * Returns number of exception rules preceding given break rule.
+	 * Only these exception rules can prevent the break rule from 
+	 * breaking the text, so if index of the first exception pattern matching 
+	 * at break position is smaller than this value, then text is not split.
+	 * @param breakRule break rule
+	 * @return number of exception patterns from the beginning of 
+	 * 		{@link #getExceptionPatternList()} applying to the break rule
+	 */
+	public int getExceptionCount(Rule breakRule) {
+		Integer exceptionCount = exceptionCountMap.get(breakRule);
+		if (exceptionCount != null) {
+			return exceptionCount;
+		} else {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Returns single pattern consisting of all exception patterns 
+	 * preceding given break rule. Pattern is constructed on first access.
 	 * @param breakRule
 	 * @return exception pattern corresponding to give break rule
+	 * @deprecated match patterns from {@link #getExceptionPatternList()} 
+	 * 		limited by {@link #getExceptionCount(Rule)} instead
+	 */
+	@Deprecated
+	public synchronized Pattern getExceptionPattern(Rule breakRule) {
+		if (exceptionPatternMap.containsKey(breakRule)) {
+			return exceptionPatternMap.get(breakRule);
+		}
+		
+		Pattern exceptionPattern;
+		int exceptionCount = getExceptionCount(breakRule);
+		
+		if (exceptionCount > 0) {
+			StringBuilder exceptionPatternBuilder = new StringBuilder();
+			for (int i = 0; i < exceptionCount; ++i) {
+				if (i > 0) {
+					exceptionPatternBuilder.append('|');
+				}
+				exceptionPatternBuilder.append(exceptionPatternStringList.get(i));
+			}
+			exceptionPattern = Util.compile(document, 
+					exceptionPatternBuilder.toString(), patternFlags);
+		} else {
+			exceptionPattern = null;
+		}
+		
+		exceptionPatternMap.put(breakRule, exceptionPattern);
+		return exceptionPattern;
+	}
+	
+	/**
+	 * Returns automaton matching before patterns of all regular break 
+	 * rules, see {@link Regex#isRegular()}. Each before pattern is 
+	 * identified by index of the rule in {@link #getBreakRuleList()}.
+	 * Rule is regular if both its before and after patterns are regular
+	 * and before pattern matches cannot overlap, see 
+	 * {@link Regex#isOverlapFree(int)}. Otherwise automaton could find 
+	 * matches skipped by {@link java.util.regex.Matcher#find()}, for 
+	 * example two matches of "[0-9]+" in "12".
+	 * Automata are constructed on first access.
+	 * @return unanchored automaton or null if there are no regular rules
+	 */
+	public synchronized Automaton getBreakAutomaton() {
+		if (breakAfterAutomatonList == null) {
+			initBreakAutomata();
+		}
+		return breakAutomaton;
+	}
+
+	/**
+	 * Returns automaton matching after pattern of given break rule.
+	 * @param index index of the rule in {@link #getBreakRuleList()}
+	 * @return anchored automaton or null if the rule is not regular and 
+	 * 		needs to be matched by {@link RuleMatcher}
+	 */
+	public synchronized Automaton getBreakAfterAutomaton(int index) {
+		if (breakAfterAutomatonList == null) {
+			initBreakAutomata();
+		}
+		return breakAfterAutomatonList.get(index);
+	}
+
+	/**
+	 * Creates {@link #breakAutomaton} and {@link #breakAfterAutomatonList}.
+	 */
+	private void initBreakAutomata() {
+		List<Regex> beforeRegexList = new ArrayList<Regex>();
+		breakAfterAutomatonList = new ArrayList<Automaton>();
+		boolean regular = false;
+		for (Rule rule : breakRuleList) {
+			Regex beforeRegex = createRegularRegex(rule.getBeforePattern());
+			Regex afterRegex = createRegularRegex(rule.getAfterPattern());
+			if (beforeRegex != null && afterRegex != null && 
+					beforeRegex.isOverlapFree(MAX_LITERAL_COUNT)) {
+				beforeRegexList.add(beforeRegex);
+				breakAfterAutomatonList.add(new Automaton(
+						Collections.singletonList(afterRegex), true));
+				regular = true;
+			} else {
+				beforeRegexList.add(null);
+				breakAfterAutomatonList.add(null);
+			}
+		}
+		if (regular) {
+			breakAutomaton = new Automaton(beforeRegexList, false);
+		}
+	}
+
+	/**
+	 * Parses given pattern if it is regular. Analysis uses the same flags 
+	 * as the compiled pattern.
+	 * @param patternString pattern
+	 * @return parsed pattern or null if it is not regular
+	 */
+	private Regex createRegularRegex(String patternString) {
+		Pattern pattern = Util.compile(document, patternString, patternFlags);
+		try {
+			Regex regex = new Regex(pattern.pattern(), pattern.flags());
+			if (regex.isRegular()) {
+				return regex;
+			} else {
+				return null;
+			}
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates reversed pattern. Reversed pattern is compiled with 
+	 * the same flags as the original one.
+	 * @param patternString pattern
+	 * @return reversed pattern or null if pattern cannot be reversed
+	 */
+	private Pattern createReversedPattern(String patternString) {
+		Pattern pattern = Util.compile(document, patternString, patternFlags);
+		try {
+			Regex regex = new Regex(pattern.pattern(), pattern.flags());
+			return Util.compile(document, regex.getReversedPattern(), 
+					patternFlags);
+		} catch (UnsupportedRegexException e) {
+			return null;
+		} catch (PatternSyntaxException e) {
+			// Lookahead of unbounded length cannot become lookbehind.
+			return null;
+		}
+	}
+
+	/**
+	 * Creates extent of given rule by analyzing its patterns with 
+	 * the same flags as compiled patterns.
+	 * @param rule rule
+	 * @return rule extent
+	 */
+	private RuleExtent createExtent(Rule rule) {
+		Regex beforeRegex = createRegex(rule.getBeforePattern());
+		Regex afterRegex = createRegex(rule.getAfterPattern());
+		int minBeforeLength = 0;
+		int maxBeforeLength = Regex.INFINITY;
+		int maxBeforeReadLength = Regex.INFINITY;
+		if (beforeRegex != null) {
+			minBeforeLength = beforeRegex.getMinLength();
+			maxBeforeLength = beforeRegex.getMaxLength();
+			maxBeforeReadLength = beforeRegex.getMaxReadLength();
+		}
+		int minAfterLength = 0;
+		int maxAfterLength = Regex.INFINITY;
+		int maxAfterReadLength = Regex.INFINITY;
+		if (afterRegex != null) {
+			minAfterLength = afterRegex.getMinLength();
+			maxAfterLength = afterRegex.getMaxLength();
+			maxAfterReadLength = afterRegex.getMaxReadLength();
+		}
+		return new RuleExtent(minBeforeLength, maxBeforeLength, 
+				maxBeforeReadLength, minAfterLength, maxAfterLength, maxAfterReadLength);
+	}
+
+	/**
+	 * Parses given pattern. Analysis uses the same flags as 
+	 * the compiled pattern.
+	 * @param patternString pattern
+	 * @return parsed pattern or null if it cannot be analyzed
+	 */
+	private Regex createRegex(String patternString) {
+		Pattern pattern = Util.compile(document, patternString, patternFlags);
+		try {
+			return new Regex(pattern.pattern(), pattern.flags());
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param patternString pattern
+	 * @return true if pattern is sensitive to region start or it cannot
+	 * 		be analyzed
+	 */
+	private boolean isBoundarySensitive(String patternString) {
+		Regex regex = createRegex(patternString);
+		return regex == null || regex.isBoundarySensitive();
+	}
+
+	/**
+	 * Creates lookbehind pattern matching text ending at the same 
+	 * positions as given pattern, see 
+	 * {@link Regex#getLookbehindPattern(int)}. Only leading repetitions
+	 * are reduced and only remaining unbounded repetitions are limited
+	 * to {@link #maxLookbehindConstructLength}. If pattern cannot be 
+	 * analyzed all its unbounded repetitions are limited by 
+	 * {@link Util#finitize(String, int)}.
+	 * @param patternString pattern
+	 * @return pattern with bounded length
 	 */
-	public Pattern getExceptionPattern(Rule breakRule) {
-		return exceptionPatternMap.get(breakRule);
+	private String createLookbehindPatternString(String patternString) {
+		Regex regex = createRegex(patternString);
+		if (regex != null) {
+			return regex.getLookbehindPattern(maxLookbehindConstructLength);
+		} else {
+			return Util.finitize(patternString, maxLookbehindConstructLength);
+		}
+	}
+
+	/**
+	 * Creates filter for given pattern. Analysis uses the same flags
+	 * as the compiled pattern.
+	 * @param patternString pattern
+	 * @return filter or null if pattern cannot be filtered
+	 */
+	private PatternFilter createFilter(String patternString) {
+		Pattern pattern = Util.compile(document, patternString, patternFlags);
+		try {
+			return PatternFilter.create(
+					new Regex(pattern.pattern(), pattern.flags()));
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns literal strings matched by given pattern, if there are
+	 * at most {@link #MAX_LITERAL_COUNT} of them. Analysis uses 
+	 * the same flags as the compiled pattern.
+	 * @param patternString pattern
+	 * @return literal list or null if pattern can match other strings
+	 */
+	private List<String> getLiterals(String patternString) {
+		Pattern pattern = Util.compile(document, patternString, patternFlags);
+		try {
+			Regex regex = new Regex(pattern.pattern(), pattern.flags());
+			return regex.getLiterals(MAX_LITERAL_COUNT);
+		} catch (UnsupportedRegexException e) {
+			return null;
+		}
 	}
 	
 	/**
@@ -105,7 +559,8 @@ public class RuleManager {
 	 * (beforePattern and afterPattern) are incorporated
 	 * into one pattern.
 	 * beforePattern is used in lookbehind, therefore it needs to be 
-	 * modified so it matches finite string (contains no *, + or {n,}). 
+	 * modified so it matches finite string (contains no *, + or {n,}),
+	 * see {@link #createLookbehindPatternString(String)}. 
 	 * @param rule exception rule
 	 * @return string containing exception pattern
 	 */
@@ -116,7 +571,7 @@ public class RuleManager {
 		// As Java does not allow infinite length patterns
 		// in lookbehind, before pattern need to be shortened.
 		String beforePattern = 
-			Util.finitize(rule.getBeforePattern(), maxLookbehindConstructLength);
+			createLookbehindPatternString(rule.getBeforePattern());
 		String afterPattern = rule.getAfterPattern();
 		
 		patternBuilder.append("(?:");
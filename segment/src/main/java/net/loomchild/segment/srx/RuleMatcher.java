@@ -3,6 +3,8 @@ package net.loomchild.segment.srx;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.loomchild.segment.regex.PatternFilter;
+import net.loomchild.segment.regex.Regex;
 import net.loomchild.segment.util.Util;
 
 
@@ -24,7 +26,21 @@ public class RuleMatcher {
 	
 	private Matcher afterMatcher;
 	
+	private PatternFilter beforeFilter;
+	
+	private int searchPosition;
+	
+	private int findPosition;
+	
 	boolean found;
+	
+	private int searchLength;
+	
+	private int maxReadLength;
+	
+	private int limit;
+	
+	private boolean pending;
 
 	
 	/**
@@ -33,23 +49,103 @@ public class RuleMatcher {
 	 * @param text
 	 */
 	public RuleMatcher(SrxDocument document, Rule rule, CharSequence text) {
+		this(document, rule, text, null);
+	}
+
+	/**
+	 * Creates matcher which uses filter to skip the text where before 
+	 * pattern cannot start matching, without running regular expression 
+	 * engine there.
+	 * @param rule rule which will be searched in the text
+	 * @param text
+	 * @param beforeFilter filter of before pattern, can be null
+	 */
+	public RuleMatcher(SrxDocument document, Rule rule, CharSequence text, 
+			PatternFilter beforeFilter) {
+		this(document, rule, text, beforeFilter, 0);
+	}
+
+	/**
+	 * Creates matcher compiling rule patterns with given flags.
+	 * @see #RuleMatcher(SrxDocument, Rule, CharSequence, PatternFilter)
+	 * @param rule rule which will be searched in the text
+	 * @param text
+	 * @param beforeFilter filter of before pattern, can be null
+	 * @param patternFlags pattern flags, see {@link RuleManager#getPatternFlags()}
+	 */
+	public RuleMatcher(SrxDocument document, Rule rule, CharSequence text, 
+			PatternFilter beforeFilter, int patternFlags) {
 		this.document = document;
 		this.rule = rule;
 		this.text = text;
-		Pattern beforePattern = Util.compile(document, rule.getBeforePattern());
-		Pattern afterPattern = Util.compile(document, rule.getAfterPattern());
+		Pattern beforePattern = Util.compile(document, 
+				rule.getBeforePattern(), patternFlags);
+		Pattern afterPattern = Util.compile(document, 
+				rule.getAfterPattern(), patternFlags);
 		this.beforeMatcher = beforePattern.matcher(text);
 		this.afterMatcher = afterPattern.matcher(text);	
+		this.beforeFilter = beforeFilter;
+		this.searchPosition = 0;
+		this.findPosition = 0;
 		this.found = true;
+		this.searchLength = Integer.MAX_VALUE;
+		this.maxReadLength = Regex.INFINITY;
+		this.limit = Integer.MAX_VALUE;
+		this.pending = false;
 	}
 	
 	/**
-	 * Finds next rule match after previously found.
+	 * Resets matcher so it searches given text from the beginning.
+	 * Underlying regular expression matchers are reused.
+	 * @param text text
+	 */
+	public void reset(CharSequence text) {
+		this.text = text;
+		this.beforeMatcher.reset(text);
+		this.afterMatcher.reset(text);
+		this.searchPosition = 0;
+		this.findPosition = 0;
+		this.found = true;
+		this.limit = Integer.MAX_VALUE;
+		this.pending = false;
+	}
+	
+	/**
+	 * Makes matcher search only given number of characters at once.
+	 * When match is not found there, {@link #isPending()} returns true
+	 * and the search continues on next call to {@link #find()}. 
+	 * This way rules that rarely match do not need to search the whole 
+	 * text at once. Must only be used for rules whose before pattern 
+	 * does not depend on region start, 
+	 * see {@link RuleManager#isBoundarySensitive(Rule)}. 
+	 * By default the text is searched until the match is found.
+	 * Takes effect when the search is restarted with {@link #find(int)}.
+	 * @param searchLength number of characters searched at once, positive
+	 * @param maxReadLength maximum number of characters examined by 
+	 * 		before pattern, see {@link RuleExtent#getMaxBeforeReadLength()}
+	 */
+	public void setSearchLength(int searchLength, int maxReadLength) {
+		this.searchLength = searchLength;
+		this.maxReadLength = maxReadLength;
+	}
+	
+	/**
+	 * Finds next rule match after previously found. If the search
+	 * has been suspended, see {@link #isPending()}, it is continued.
 	 * @return true if rule has been matched
 	 */
 	public boolean find() {
+		if (pending) {
+			limit = extend(limit);
+			if (beforeFilter == null) {
+				beforeMatcher.region(searchPosition, getLimit());
+			}
+		} else {
+			findPosition = searchPosition;
+		}
 		found = false;
-		while ((!found) && beforeMatcher.find()) {
+		pending = false;
+		while ((!found) && findBefore()) {
 			afterMatcher.region(beforeMatcher.end(), text.length());
 			found = afterMatcher.lookingAt();
 		}
@@ -62,29 +158,200 @@ public class RuleMatcher {
 	 * @return true if rule has been matched
 	 */
 	public boolean find(int start) {
-		beforeMatcher.region(start, text.length());
+		limit = extend(start);
+		pending = false;
+		beforeMatcher.region(start, getLimit());
+		searchPosition = start;
 		return find();
 	}
 	
+	/**
+	 * Repeats the last search, for example after more characters have 
+	 * been appended to the text. Previous matches are not changed, so 
+	 * the match is the same as if the text had been longer from 
+	 * the beginning.
+	 * @param keepRegionStart true if rule depends on region start, 
+	 * 		see {@link RuleManager#isBoundarySensitive(Rule)}; then 
+	 * 		the search is repeated from region start, otherwise from 
+	 * 		the position where the last search started
+	 * @return true if rule has been matched
+	 */
+	public boolean findAgain(boolean keepRegionStart) {
+		int position = findPosition;
+		if (keepRegionStart && beforeFilter == null) {
+			find(beforeMatcher.regionStart());
+			while (found && findPosition < position) {
+				find();
+			}
+			return found;
+		} else {
+			return find(position);
+		}
+	}
+
+	/**
+	 * Finds next before pattern match. If there is a filter, the pattern
+	 * is only matched at positions where a match can start. 
+	 * As filter is only created for patterns which do not depend on 
+	 * region start, this gives the same result as searching the whole text.
+	 * If the result could change after search limit is extended 
+	 * the search is suspended.
+	 * @return true if before pattern has been matched
+	 */
+	private boolean findBefore() {
+		int end = getLimit();
+		if (beforeFilter == null) {
+			boolean matched = beforeMatcher.find();
+			// Matches starting after search limit have not been searched.
+			if ((!matched && end < text.length()) || isIncomplete()) {
+				pending = true;
+				return false;
+			}
+			if (matched) {
+				searchPosition = beforeMatcher.end();
+				if (beforeMatcher.start() == searchPosition) {
+					++searchPosition;
+				}
+			}
+			return matched;
+		}
+		while (true) {
+			int start = beforeFilter.find(text, searchPosition, end);
+			if (start == -1) {
+				pending = end < text.length();
+				if (pending && maxReadLength != Regex.INFINITY) {
+					searchPosition = Math.max(searchPosition, 
+							end - maxReadLength);
+				}
+				return false;
+			}
+			beforeMatcher.region(start, end);
+			boolean matched = beforeMatcher.lookingAt();
+			if (isIncomplete()) {
+				searchPosition = start;
+				pending = true;
+				return false;
+			}
+			if (matched) {
+				searchPosition = beforeMatcher.end();
+				return true;
+			}
+			searchPosition = start + 1;
+		}
+	}
+	
+	/**
+	 * @return true if before matcher reached search limit before 
+	 * 		the end of text, so its result is not final
+	 */
+	private boolean isIncomplete() {
+		return beforeMatcher.regionEnd() < text.length() && 
+			beforeMatcher.hitEnd();
+	}
+	
+	/**
+	 * @return position where before pattern matching stops
+	 */
+	private int getLimit() {
+		return Math.min(limit, text.length());
+	}
+	
+	/**
+	 * Returns search limit after given position. Limits are aligned to
+	 * multiples of search length, so matchers started at different 
+	 * positions stop at the same places.
+	 * @param position position
+	 * @return search limit
+	 */
+	private int extend(int position) {
+		long limit = ((long)position / searchLength + 1) * searchLength;
+		return (int)Math.min(limit, Integer.MAX_VALUE);
+	}
+	
 	/**
 	 * @return true if end of text has been reached while searching
 	 */
 	public boolean hitEnd() {
-		return !found;
+		return !found && !pending;
+	}
+	
+	/**
+	 * @return true if the search has been suspended before match has been
+	 * 		found, see {@link #setSearchLength(int, int)}
+	 */
+	public boolean isPending() {
+		return pending;
 	}
 	
 	/**
-	 * @return position in text where the last matching starts
+	 * Returns position where the search continues. Rules whose before 
+	 * pattern does not depend on region start find the same matches 
+	 * after this position.
+	 * @return search position
+	 */
+	int getSearchPosition() {
+		return searchPosition;
+	}
+	
+	/**
+	 * Returns position where the search which found current match 
+	 * started, or the last search if it has not found any. Repeating 
+	 * the search from there finds the same match, see 
+	 * {@link #findAgain(boolean)}.
+	 * @return find position
+	 */
+	int getFindPosition() {
+		return findPosition;
+	}
+	
+	/**
+	 * Returns position before which next match cannot start when 
+	 * the search is pending. Matches starting far enough from search 
+	 * limit cannot be changed by extending it.
+	 * @return lower bound of next match start
+	 */
+	private int getLowerBound() {
+		if (maxReadLength == Regex.INFINITY) {
+			return searchPosition;
+		} else {
+			return Math.max(searchPosition, limit - maxReadLength);
+		}
+	}
+	
+	/**
+	 * Returns start of the region searched by before pattern matcher. 
+	 * Matching of before pattern can depend on it, see 
+	 * {@link RuleManager#isBoundarySensitive(Rule)}.
+	 * @return region start
+	 */
+	int getRegionStart() {
+		return beforeMatcher.regionStart();
+	}
+
+	/**
+	 * @return position in text where the last matching starts; 
+	 * 		when the search is pending, position before which the next 
+	 * 		match cannot start
 	 */
 	public int getStartPosition() {
-		return beforeMatcher.start();
+		if (pending) {
+			return getLowerBound();
+		} else {
+			return beforeMatcher.start();
+		}
 	}
 
 	/**
-	 * @return position in text where text should be splitted according to last matching
+	 * @return position in text where text should be splitted according 
+	 * 		to last matching; when the search is pending, position before
+	 * 		which the next match cannot be found
 	 */
 	public int getBreakPosition() {
-		return afterMatcher.start();
+		if (pending) {
+			return getLowerBound();
+		} else {
+			return afterMatcher.start();
+		}
 	}
 
 	/**
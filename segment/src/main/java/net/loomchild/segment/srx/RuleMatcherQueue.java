@@ -0,0 +1,221 @@
+package net.loomchild.segment.srx;
+
+import java.util.Arrays;
+
+/**
+ * Represents priority queue of rule matchers used by {@link SrxTextIterator}.
+ * Responsible for quickly finding the matcher with the smallest break 
+ * position and the matcher with the smallest start position, 
+ * so only the matchers that need to be moved are accessed.
+ * Each matcher is stored under its break rule index. When break positions
+ * are equal, matcher with smaller index comes first, the same as if matchers
+ * were searched in rule order.
+ * After a matcher position changes {@link #update(int)} must be called.
+ * 
+ * @author loomchild
+ */
+class RuleMatcherQueue {
+	
+	private RuleMatcher[] matchers;
+	
+	private Heap breakHeap;
+	
+	private Heap startHeap;
+	
+	/**
+	 * Creates empty queue.
+	 * @param capacity number of break rules; matcher indexes must be 
+	 * 		smaller than this value
+	 */
+	public RuleMatcherQueue(int capacity) {
+		this.matchers = new RuleMatcher[capacity];
+		this.breakHeap = new Heap(capacity) {
+			protected int getKey(int index) {
+				return matchers[index].getBreakPosition();
+			}
+		};
+		this.startHeap = new Heap(capacity) {
+			protected int getKey(int index) {
+				return matchers[index].getStartPosition();
+			}
+		};
+	}
+	
+	/**
+	 * @return maximum number of matchers in the queue
+	 */
+	public int getCapacity() {
+		return matchers.length;
+	}
+	
+	/**
+	 * Adds matcher to the queue.
+	 * @param index matcher index
+	 * @param matcher matcher, must have found a match
+	 */
+	public void add(int index, RuleMatcher matcher) {
+		if (matchers[index] != null) {
+			throw new IllegalStateException("Matcher " + index + 
+					" is already in the queue.");
+		}
+		matchers[index] = matcher;
+		breakHeap.add(index);
+		startHeap.add(index);
+	}
+	
+	/**
+	 * Restores queue order after matcher position has changed.
+	 * @param index matcher index
+	 */
+	public void update(int index) {
+		breakHeap.update(index);
+		startHeap.update(index);
+	}
+
+	/**
+	 * Removes matcher from the queue. Does nothing if it is not there.
+	 * @param index matcher index
+	 */
+	public void remove(int index) {
+		if (matchers[index] != null) {
+			breakHeap.remove(index);
+			startHeap.remove(index);
+			matchers[index] = null;
+		}
+	}
+	
+	/**
+	 * Removes all matchers from the queue.
+	 */
+	public void clear() {
+		Arrays.fill(matchers, null);
+		breakHeap.clear();
+		startHeap.clear();
+	}
+	
+	/**
+	 * @param index matcher index
+	 * @return matcher with given index or null if it is not in the queue
+	 */
+	public RuleMatcher get(int index) {
+		return matchers[index];
+	}
+	
+	/**
+	 * @return index of the matcher with the smallest break position or 
+	 * 		-1 if the queue is empty
+	 */
+	public int getMinBreakIndex() {
+		return breakHeap.peek();
+	}
+
+	/**
+	 * @return index of the matcher with the smallest start position or 
+	 * 		-1 if the queue is empty
+	 */
+	public int getMinStartIndex() {
+		return startHeap.peek();
+	}
+	
+	/**
+	 * Represents binary min-heap of matcher indexes which knows 
+	 * the position of each index, so it can be updated or removed 
+	 * in logarithmic time.
+	 */
+	private static abstract class Heap {
+		
+		private int[] heap;
+		
+		private int[] position;
+		
+		private int size;
+		
+		public Heap(int capacity) {
+			this.heap = new int[capacity];
+			this.position = new int[capacity];
+			this.size = 0;
+		}
+		
+		protected abstract int getKey(int index);
+		
+		public int peek() {
+			if (size > 0) {
+				return heap[0];
+			} else {
+				return -1;
+			}
+		}
+		
+		public void add(int index) {
+			heap[size] = index;
+			position[index] = size;
+			++size;
+			siftUp(size - 1);
+		}
+		
+		public void clear() {
+			size = 0;
+		}
+		
+		public void update(int index) {
+			int i = position[index];
+			siftUp(i);
+			siftDown(position[index]);
+		}
+
+		public void remove(int index) {
+			int i = position[index];
+			--size;
+			if (i < size) {
+				set(i, heap[size]);
+				siftUp(i);
+				siftDown(position[heap[i]]);
+			}
+		}
+		
+		private void siftUp(int i) {
+			int index = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!less(index, heap[parent])) {
+					break;
+				}
+				set(i, heap[parent]);
+				i = parent;
+			}
+			set(i, index);
+		}
+
+		private void siftDown(int i) {
+			int index = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && less(heap[child + 1], heap[child])) {
+					++child;
+				}
+				if (!less(heap[child], index)) {
+					break;
+				}
+				set(i, heap[child]);
+				i = child;
+			}
+			set(i, index);
+		}
+		
+		private void set(int i, int index) {
+			heap[i] = index;
+			position[index] = i;
+		}
+		
+		private boolean less(int index1, int index2) {
+			int key1 = getKey(index1);
+			int key2 = getKey(index2);
+			return key1 < key2 || (key1 == key2 && index1 < index2);
+		}
+		
+	}
+
+}
@@ -0,0 +1,176 @@
+package net.loomchild.segment.srx;
+
+import java.util.List;
+
+import net.loomchild.segment.regex.Automaton;
+import net.loomchild.segment.regex.AutomatonMatcher;
+
+/**
+ * Represents matcher finding subsequent break positions of all regular
+ * break rules at once, using automata from {@link RuleManager}.
+ * Text is read only once, so matching time does not depend
+ * on the number of rules.
+ *
+ * Rule matches at every position where its before pattern match ends
+ * and its after pattern match starts. Before patterns of regular rules 
+ * cannot have overlapping matches, so these are the same positions 
+ * as found by {@link RuleMatcher}. If more than one rule matches at
+ * the same position, the first one is reported.
+ *
+ * @author loomchild
+ */
+class RuleSetMatcher {
+
+	private CharSequence text;
+
+	private AutomatonMatcher beforeMatcher;
+
+	private Automaton[] afterAutomata;
+
+	private int breakPosition;
+
+	private int ruleIndex;
+
+	private boolean found;
+
+	private int searchLength;
+
+	private int limit;
+
+	private boolean pending;
+
+	/**
+	 * Creates matcher.
+	 * @param ruleManager rule manager, must contain regular rules
+	 * @param text text
+	 */
+	public RuleSetMatcher(RuleManager ruleManager, CharSequence text) {
+		this.text = text;
+		this.beforeMatcher = ruleManager.getBreakAutomaton().matcher(text);
+		List<Rule> breakRuleList = ruleManager.getBreakRuleList();
+		this.afterAutomata = new Automaton[breakRuleList.size()];
+		for (int i = 0; i < afterAutomata.length; ++i) {
+			afterAutomata[i] = ruleManager.getBreakAfterAutomaton(i);
+		}
+		this.found = true;
+		this.searchLength = Integer.MAX_VALUE;
+		this.limit = Integer.MAX_VALUE;
+		this.pending = false;
+	}
+
+	/**
+	 * Resets matcher so it searches given text from the beginning.
+	 * @param text text
+	 */
+	public void reset(CharSequence text) {
+		this.text = text;
+		this.beforeMatcher.reset(text);
+		this.found = true;
+		this.limit = Integer.MAX_VALUE;
+		this.pending = false;
+	}
+
+	/**
+	 * Makes matcher read only given number of characters at once.
+	 * When match is not found there, {@link #isPending()} returns true
+	 * and the search continues on next call to {@link #find()}. 
+	 * This way rules that rarely match do not need to read the whole 
+	 * text at once. By default the text is read until the match is found.
+	 * Takes effect when the search is restarted with {@link #find(int)}.
+	 * @param searchLength number of characters read at once, positive
+	 */
+	public void setSearchLength(int searchLength) {
+		this.searchLength = searchLength;
+	}
+
+	/**
+	 * Finds next break position after previously found. If the search
+	 * has been suspended, see {@link #isPending()}, it is continued.
+	 * @return true if any rule has been matched
+	 */
+	public boolean find() {
+		if (pending) {
+			limit = extend(limit);
+		}
+		found = false;
+		pending = false;
+		while (!found) {
+			if (!beforeMatcher.find(limit)) {
+				pending = !beforeMatcher.hitEnd();
+				break;
+			}
+			int position = beforeMatcher.end();
+			for (int index : beforeMatcher.getIds()) {
+				if (afterAutomata[index].lookingAt(text, position)) {
+					breakPosition = position;
+					ruleIndex = index;
+					found = true;
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds next break position after given start position.
+	 * Before patterns cannot start matching before it.
+	 * @param start start position
+	 * @return true if any rule has been matched
+	 */
+	public boolean find(int start) {
+		beforeMatcher.reset(start);
+		limit = extend(start);
+		pending = false;
+		return find();
+	}
+
+	/**
+	 * Returns search limit after given position. Limits are aligned to
+	 * multiples of search length, so matchers started at different 
+	 * positions stop at the same places.
+	 * @param position position
+	 * @return search limit
+	 */
+	private int extend(int position) {
+		long limit = ((long)position / searchLength + 1) * searchLength;
+		return (int)Math.min(limit, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return true if end of text has been reached while searching
+	 */
+	public boolean hitEnd() {
+		return !found && !pending;
+	}
+
+	/**
+	 * @return true if the search has been suspended before match 
+	 * 		has been found, see {@link #setSearchLength(int)}
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * @return position in text where text should be split according
+	 * 		to last matching; when the search is pending, position
+	 * 		before which the next match cannot be found
+	 */
+	public int getBreakPosition() {
+		if (pending) {
+			return beforeMatcher.end();
+		} else {
+			return breakPosition;
+		}
+	}
+
+	/**
+	 * @return index of last matched rule in
+	 * 		{@link RuleManager#getBreakRuleList()}
+	 */
+	public int getRuleIndex() {
+		return ruleIndex;
+	}
+
+}
@@ -0,0 +1,182 @@
+package net.loomchild.segment.srx;
+
+import static net.loomchild.segment.util.Util.getParameter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.loomchild.segment.util.Util;
+
+/**
+ * Represents segmenter of many short texts in the same language, for
+ * example paragraphs imported from translation memory.
+ *
+ * Rules are retrieved from the document and parameters are parsed once,
+ * when segmenter is created, instead of once per text as when
+ * {@link SrxTextIterator} is created for each text. Texts can be
+ * segmented concurrently; each task segments a group of consecutive
+ * texts (see {@link #TASK_SIZE_PARAMETER}), so the cost of submitting
+ * tasks is shared by many texts.
+ *
+ * Segmenter is thread safe.
+ *
+ * @author loomchild
+ */
+public class SrxBatchSegmenter {
+
+	/**
+	 * Number of texts segmented by a single task.
+	 */
+	public static final String TASK_SIZE_PARAMETER = "taskSize";
+
+	/**
+	 * Default task size.
+	 */
+	public static final int DEFAULT_TASK_SIZE = 256;
+
+	private SrxTextIterator iterator;
+
+	private int taskSize;
+
+	/**
+	 * Creates segmenter.
+	 * Supported parameters: {@link #TASK_SIZE_PARAMETER} and
+	 * parameters of
+	 * {@link SrxTextIterator#SrxTextIterator(SrxDocument, String, CharSequence, Map)}.
+	 *
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param parameterMap additional segmentation parameters
+	 */
+	public SrxBatchSegmenter(SrxDocument document, String languageCode,
+			Map<String, Object> parameterMap) {
+		int taskSize = getParameter(parameterMap.get(TASK_SIZE_PARAMETER),
+				DEFAULT_TASK_SIZE);
+		if (taskSize <= 0) {
+			throw new IllegalArgumentException("Task size: " + taskSize +
+					" must be positive.");
+		}
+		this.iterator = new SrxTextIterator(document, languageCode, "",
+				parameterMap);
+		this.taskSize = taskSize;
+	}
+
+	/**
+	 * Creates segmenter with no additional parameters.
+	 * @see #SrxBatchSegmenter(SrxDocument, String, Map)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 */
+	public SrxBatchSegmenter(SrxDocument document, String languageCode) {
+		this(document, languageCode, Util.getEmptyParameterMap());
+	}
+
+	/**
+	 * Splits given text into segments in current thread.
+	 * @param text text
+	 * @return list of segments
+	 */
+	public List<String> segment(CharSequence text) {
+		return getSegmentList(new SrxTextIterator(iterator, text));
+	}
+
+	/**
+	 * Splits given texts into segments concurrently. Waits until all the
+	 * texts are segmented.
+	 *
+	 * @param textCollection texts, must not be modified
+	 * @param executorService executor running segmentation tasks
+	 * @return list of segment lists, in the same order as texts
+	 * @throws IllegalStateException if segmentation task failed or
+	 * 		current thread was interrupted
+	 */
+	public List<List<String>> segment(
+			Collection<? extends CharSequence> textCollection,
+			ExecutorService executorService) {
+		List<Future<List<List<String>>>> futureList =
+			new ArrayList<Future<List<List<String>>>>();
+		List<CharSequence> textList = new ArrayList<CharSequence>(taskSize);
+		for (CharSequence text : textCollection) {
+			textList.add(text);
+			if (textList.size() == taskSize) {
+				futureList.add(executorService.submit(new SegmentTask(textList)));
+				textList = new ArrayList<CharSequence>(taskSize);
+			}
+		}
+		if (textList.size() > 0) {
+			futureList.add(executorService.submit(new SegmentTask(textList)));
+		}
+		List<List<String>> resultList =
+			new ArrayList<List<String>>(textCollection.size());
+		for (Future<List<List<String>>> future : futureList) {
+			resultList.addAll(getResult(future));
+		}
+		return resultList;
+	}
+
+	/**
+	 * @param textIterator text iterator
+	 * @return list of remaining segments
+	 */
+	private static List<String> getSegmentList(SrxTextIterator textIterator) {
+		List<String> segmentList = new ArrayList<String>();
+		while (textIterator.hasNext()) {
+			segmentList.add(textIterator.next());
+		}
+		return segmentList;
+	}
+
+	/**
+	 * Waits for segmentation task to finish.
+	 * @param future task result
+	 * @return segment lists
+	 */
+	private List<List<String>> getResult(Future<List<List<String>>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for segmentation task.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} else {
+				throw new IllegalStateException(
+						"Segmentation task failed.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Represents task segmenting a group of texts. Single iterator is 
+	 * reset for each text, see {@link SrxTextIterator#reset(CharSequence)}.
+	 */
+	private class SegmentTask implements Callable<List<List<String>>> {
+
+		private List<CharSequence> textList;
+
+		public SegmentTask(List<CharSequence> textList) {
+			this.textList = textList;
+		}
+
+		public List<List<String>> call() {
+			List<List<String>> resultList =
+				new ArrayList<List<String>>(textList.size());
+			SrxTextIterator textIterator = new SrxTextIterator(iterator, "");
+			for (CharSequence text : textList) {
+				textIterator.reset(text);
+				resultList.add(getSegmentList(textIterator));
+			}
+			return resultList;
+		}
+
+	}
+
+}
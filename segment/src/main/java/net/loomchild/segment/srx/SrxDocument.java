@@ -1,12 +1,19 @@
 package net.loomchild.segment.srx;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents SRX document. Responsible for storing and searching matching
  * language rules for given language code.
  * 
+ * Document can be frozen (see {@link #freeze()}) after it has been 
+ * created, to be safely shared by many threads.
+ * 
  * @author loomchild
  */
 public class SrxDocument {
@@ -16,21 +23,44 @@ public class SrxDocument {
 	 */
 	public static final boolean DEFAULT_CASCADE = true;
 
-	private boolean cascade;
+	/**
+	 * Maximum number of language codes for which matching language rules
+	 * are remembered. When it is exceeded all of them are forgotten.
+	 */
+	public static final int MAX_LANGUAGE_RULE_LIST_CACHE_SIZE = 1024;
+
+	private final boolean frozen;
 
-	private List<LanguageMap> languageMapList;
+	private volatile boolean cascade;
+
+	private final List<LanguageMap> languageMapList;
 	
-	private SrxDocumentCache cache;
+	private volatile SrxDocumentCache cache;
+
+	private volatile Map<String, List<LanguageRule>> languageRuleListCache;
 
 	/**
-	 * Creates empty document.
+	 * Creates empty document with given cache.
 	 * 
 	 * @param cascade true if document is cascading
+	 * @param cache cache storing compiled rules, can be bounded
 	 */
-	public SrxDocument(boolean cascade) {
+	public SrxDocument(boolean cascade, SrxDocumentCache cache) {
+		this.frozen = false;
 		this.cascade = cascade;
 		this.languageMapList = new ArrayList<LanguageMap>();
-		this.cache = new SrxDocumentCache();
+		this.cache = cache;
+		this.languageRuleListCache = 
+			new ConcurrentHashMap<String, List<LanguageRule>>();
+	}
+
+	/**
+	 * Creates empty document with unbounded cache.
+	 * 
+	 * @param cascade true if document is cascading
+	 */
+	public SrxDocument(boolean cascade) {
+		this(cascade, new SrxDocumentCache());
 	}
 
 	/**
@@ -40,13 +70,74 @@ public class SrxDocument {
 		this(DEFAULT_CASCADE);
 	}
 
+	/**
+	 * Creates frozen copy of given document.
+	 * @see #freeze()
+	 * @param document document
+	 */
+	private SrxDocument(SrxDocument document) {
+		this.frozen = true;
+		this.cascade = document.cascade;
+		List<LanguageMap> languageMapList = 
+			new ArrayList<LanguageMap>(document.languageMapList.size());
+		Map<LanguageRule, LanguageRule> languageRuleMap = 
+			new IdentityHashMap<LanguageRule, LanguageRule>();
+		for (LanguageMap languageMap : document.languageMapList) {
+			LanguageRule languageRule = 
+				languageRuleMap.get(languageMap.getLanguageRule());
+			if (languageRule == null) {
+				languageRule = languageMap.getLanguageRule().freeze();
+				languageRuleMap.put(languageMap.getLanguageRule(), 
+						languageRule);
+			}
+			languageMapList.add(new LanguageMap(
+					languageMap.getLanguagePattern(), languageRule));
+		}
+		this.languageMapList = Collections.unmodifiableList(languageMapList);
+		this.cache = new SrxDocumentCache(document.cache.getMaximumSize());
+		this.languageRuleListCache = 
+			new ConcurrentHashMap<String, List<LanguageRule>>();
+	}
+
+	/**
+	 * Returns frozen copy of this document, which cannot be modified.
+	 * Language rules are copied and frozen too (see 
+	 * {@link LanguageRule#freeze()}), so later changes of this document 
+	 * or its rules do not affect the copy. Copy has its own empty cache 
+	 * with the same maximum size.
+	 * 
+	 * All fields of frozen document are final or volatile, so it can 
+	 * be shared by many threads without additional synchronization, 
+	 * even if it is published via data race. Patterns are compiled 
+	 * on demand and stored in concurrent cache.
+	 * 
+	 * @return frozen document, this if document is already frozen
+	 */
+	public SrxDocument freeze() {
+		if (frozen) {
+			return this;
+		} else {
+			return new SrxDocument(this);
+		}
+	}
+
+	/**
+	 * @return true if document is frozen and cannot be modified
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	/**
 	 * Sets if document is cascading or not.
 	 * 
 	 * @param cascade true f document is cascading
+	 * @throws IllegalStateException if document is frozen
 	 */
 	public void setCascade(boolean cascade) {
+		checkNotFrozen();
 		this.cascade = cascade;
+		clearLanguageRuleListCache();
 	}
 
 	/**
@@ -61,12 +152,22 @@ public class SrxDocument {
 	 * 
 	 * @param pattern language code pattern
 	 * @param languageRule
+	 * @throws IllegalStateException if document is frozen
 	 */
 	public void addLanguageMap(String pattern, LanguageRule languageRule) {
+		checkNotFrozen();
 		LanguageMap languageMap = new LanguageMap(pattern, languageRule);
 		languageMapList.add(languageMap);
+		clearLanguageRuleListCache();
 	}
 
+	/**
+	 * Returns language maps of this document. When the list is modified
+	 * directly instead of using {@link #addLanguageMap(String, LanguageRule)}, 
+	 * {@link #clearLanguageRuleListCache()} must be called afterwards.
+	 * 
+	 * @return language map list, unmodifiable if document is frozen
+	 */
 	public List<LanguageMap> getLanguageMapList() {
 		return languageMapList;
 	}	
@@ -77,10 +178,46 @@ public class SrxDocument {
 	 * given language code. If no matching language rules are found returns
 	 * empty list.
 	 * 
+	 * Result is remembered, so subsequent calls with the same language 
+	 * code return the same list without matching the language maps again.
+	 * 
 	 * @param languageCode language code, for example en_US
-	 * @return matching language rules
+	 * @return matching language rules, unmodifiable
 	 */
 	public List<LanguageRule> getLanguageRuleList(String languageCode) {
+		// Read the cache once; if document is modified in the meantime
+		// the result is stored in the old cache which is discarded.
+		Map<String, List<LanguageRule>> languageRuleListCache = 
+			this.languageRuleListCache;
+		List<LanguageRule> languageRuleList = 
+			languageRuleListCache.get(languageCode);
+		if (languageRuleList == null) {
+			languageRuleList = findLanguageRuleList(languageCode);
+			if (languageRuleListCache.size() >= 
+					MAX_LANGUAGE_RULE_LIST_CACHE_SIZE) {
+				languageRuleListCache.clear();
+			}
+			languageRuleListCache.put(languageCode, languageRuleList);
+		}
+		return languageRuleList;
+	}
+
+	/**
+	 * Forgets language rules remembered by 
+	 * {@link #getLanguageRuleList(String)}. 
+	 */
+	public void clearLanguageRuleListCache() {
+		this.languageRuleListCache = 
+			new ConcurrentHashMap<String, List<LanguageRule>>();
+	}
+
+	/**
+	 * Matches all language maps against given language code.
+	 * @see #getLanguageRuleList(String)
+	 * @param languageCode language code
+	 * @return matching language rules, unmodifiable
+	 */
+	private List<LanguageRule> findLanguageRuleList(String languageCode) {
 		List<LanguageRule> matchingLanguageRuleList = new ArrayList<LanguageRule>();
 		for (LanguageMap languageMap : languageMapList) {
 			if (languageMap.matches(languageCode)) {
@@ -90,11 +227,33 @@ public class SrxDocument {
 				}
 			}
 		}
-		return matchingLanguageRuleList;
+		return Collections.unmodifiableList(matchingLanguageRuleList);
 	}
 
 	public SrxDocumentCache getCache() {
 		return cache;
 	}
+
+	/**
+	 * Replaces document cache, for example with a bounded one. 
+	 * Previously cached objects are discarded.
+	 * 
+	 * @param cache new cache
+	 * @throws IllegalStateException if document is frozen
+	 */
+	public void setCache(SrxDocumentCache cache) {
+		checkNotFrozen();
+		this.cache = cache;
+	}
+
+	/**
+	 * @throws IllegalStateException if document is frozen
+	 */
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException(
+					"Frozen document cannot be modified.");
+		}
+	}
 	
 }
@@ -1,39 +1,299 @@
 package net.loomchild.segment.srx;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents SRX document cache.
- * Responsible for managing cached data.
- * 
+ * Responsible for managing cached data, for example compiled patterns
+ * and rule managers.
+ *
+ * Cache can be bounded by maximum number of entries. When it is exceeded,
+ * least recently used entries are evicted. To keep lookups concurrent,
+ * recency is only approximate and eviction is performed in batches:
+ * a fraction of entries (see {@link #EVICTION_FRACTION}) is removed
+ * at once, so the cost of eviction is shared by many insertions.
+ * Evicted objects are simply created again when needed.
+ *
+ * Cache counts hits, misses, evictions and time spent creating the
+ * objects, which can be used to choose its size.
+ *
  * @author loomchild
  */
 public class SrxDocumentCache {
-	
-	private Map<String, Object> map;
-	
+
+	/**
+	 * Maximum size of unbounded cache.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * Part of the maximum size evicted at once when cache is full.
+	 */
+	public static final int EVICTION_FRACTION = 8;
+
+	private ConcurrentMap<Key<?>, Entry> map;
+
+	private int maximumSize;
+
+	private AtomicLong clock;
+
+	private AtomicLong hitCount;
+
+	private AtomicLong missCount;
+
+	private AtomicLong evictionCount;
+
+	private AtomicLong loadTime;
+
+	/**
+	 * Creates cache with given maximum number of entries.
+	 * @param maximumSize maximum number of entries, {@link #UNBOUNDED}
+	 * 		if cache is not bounded
+	 */
+	public SrxDocumentCache(int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size: " +
+					maximumSize + " must be positive.");
+		}
+		this.map = new ConcurrentHashMap<Key<?>, Entry>();
+		this.maximumSize = maximumSize;
+		this.clock = new AtomicLong();
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+		this.evictionCount = new AtomicLong();
+		this.loadTime = new AtomicLong();
+	}
+
+	/**
+	 * Creates unbounded cache.
+	 */
 	public SrxDocumentCache() {
-		this.map = new ConcurrentHashMap<String, Object>();
+		this(UNBOUNDED);
 	}
-	
+
 	/**
-	 * Retrieves object from cache. 
+	 * Retrieves object from cache.
+	 * @param key key
+	 * @return value object or null if it is not present in cache
+	 */
+	public <T> T get(Key<T> key) {
+		Entry entry = map.get(key);
+		if (entry != null) {
+			hitCount.incrementAndGet();
+			if (maximumSize != UNBOUNDED) {
+				entry.accessTime = clock.incrementAndGet();
+			}
+			return key.getType().cast(entry.value);
+		} else {
+			missCount.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Puts an object in cache. Evicts least recently used entries if
+	 * cache is full.
+	 * @param key key
+	 * @param value value object
+	 * @param loadTime time spent creating the object, in nanoseconds
+	 */
+	public <T> void put(Key<T> key, T value, long loadTime) {
+		this.loadTime.addAndGet(loadTime);
+		map.put(key, new Entry(value, clock.incrementAndGet()));
+		if (map.size() > maximumSize) {
+			evict();
+		}
+	}
+
+	/**
+	 * Puts an object in cache.
+	 * @see #put(Key, Object, long)
+	 * @param key key
+	 * @param value value object
+	 */
+	public <T> void put(Key<T> key, T value) {
+		put(key, value, 0);
+	}
+
+	/**
+	 * Retrieves object from cache.
 	 * @param key
 	 * @return value object
+	 * @deprecated use typed {@link #get(Key)}
 	 */
+	@Deprecated
 	public Object get(String key) {
-		Object value = map.get(key);
-		return value;
+		return get(new Key<Object>(Object.class, key));
 	}
 
 	/**
 	 * Puts an object in cache.
 	 * @param key
 	 * @param value value object
+	 * @deprecated use typed {@link #put(Key, Object)}
 	 */
+	@Deprecated
 	public void put(String key, Object value) {
-		map.put(key, value);
+		put(new Key<Object>(Object.class, key), value);
+	}
+
+	/**
+	 * Removes all entries from cache. Does not reset statistics.
+	 */
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * @return maximum number of entries
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return current number of entries
+	 */
+	public int getSize() {
+		return map.size();
+	}
+
+	/**
+	 * @return number of lookups which found the object
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return number of lookups which did not find the object
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return number of evicted entries
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return total time spent creating cached objects, in nanoseconds
+	 */
+	public long getLoadTime() {
+		return loadTime.get();
+	}
+
+	/**
+	 * Removes least recently used entries, so that cache has
+	 * {@link #EVICTION_FRACTION} free space left. Access times are copied
+	 * before sorting, as they can be updated concurrently.
+	 */
+	private synchronized void evict() {
+		List<Map.Entry<Key<?>, Entry>> entryList =
+			new ArrayList<Map.Entry<Key<?>, Entry>>(map.entrySet());
+		int count = entryList.size() - 
+			(maximumSize - maximumSize / EVICTION_FRACTION);
+		if (count <= 0 || entryList.size() <= maximumSize) {
+			return;
+		}
+		long[] accessTimes = new long[entryList.size()];
+		for (int i = 0; i < accessTimes.length; ++i) {
+			accessTimes[i] = entryList.get(i).getValue().accessTime;
+		}
+		long[] sortedAccessTimes = accessTimes.clone();
+		Arrays.sort(sortedAccessTimes);
+		long maxAccessTime = sortedAccessTimes[count - 1];
+		for (int i = 0; i < accessTimes.length && count > 0; ++i) {
+			if (accessTimes[i] <= maxAccessTime) {
+				Map.Entry<Key<?>, Entry> entry = entryList.get(i);
+				if (map.remove(entry.getKey(), entry.getValue())) {
+					evictionCount.incrementAndGet();
+				}
+				--count;
+			}
+		}
 	}
-	
+
+	/**
+	 * Represents cached object with its last access time.
+	 */
+	private static class Entry {
+
+		private final Object value;
+
+		private volatile long accessTime;
+
+		public Entry(Object value, long accessTime) {
+			this.value = value;
+			this.accessTime = accessTime;
+		}
+
+	}
+
+	/**
+	 * Represents cache key. Consists of the type of cached object
+	 * and a list of components identifying it, for example regular
+	 * expression and pattern flags. Keys are equal if they have
+	 * the same type and equal components.
+	 *
+	 * @param <T> type of cached object
+	 */
+	public static final class Key<T> {
+
+		private final Class<T> type;
+
+		private final Object[] components;
+
+		private final int hashCode;
+
+		/**
+		 * Creates key.
+		 * @param type type of cached object
+		 * @param components components identifying the object,
+		 * 		must not be modified
+		 */
+		public Key(Class<T> type, Object... components) {
+			this.type = type;
+			this.components = components;
+			this.hashCode = 31 * type.hashCode() + Arrays.hashCode(components);
+		}
+
+		/**
+		 * @return type of cached object
+		 */
+		public Class<T> getType() {
+			return type;
+		}
+
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			} else if (object instanceof Key) {
+				Key<?> key = (Key<?>)object;
+				return type == key.type && hashCode == key.hashCode &&
+					Arrays.equals(components, key.components);
+			} else {
+				return false;
+			}
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+
+		public String toString() {
+			return type.getSimpleName() + Arrays.toString(components);
+		}
+
+	}
+
 }
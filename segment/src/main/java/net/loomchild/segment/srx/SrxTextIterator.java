@@ -3,16 +3,18 @@ package net.loomchild.segment.srx;
 
 import static net.loomchild.segment.util.Util.getParameter;
 
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.loomchild.segment.AbstractTextIterator;
+import net.loomchild.segment.BoundaryIterator;
+import net.loomchild.segment.regex.Regex;
+import net.loomchild.segment.util.ChannelReader;
 import net.loomchild.segment.util.IORuntimeException;
 import net.loomchild.segment.util.Util;
 
@@ -22,11 +24,11 @@ import net.loomchild.segment.util.Util;
  * The algorithm idea is as follows:
  *
  * <pre>
- * 1. Rule matcher list is created based on SRX file and language. Each rule 
+ * 1. Rule matcher queue is created based on SRX file and language. Each rule 
  *    matcher is responsible for matching before break and after break regular 
  *    expressions of one break rule.
  * 2. Each rule matcher is matched to the text. If the rule was not found the 
- *    rule matcher is removed from the list. 
+ *    rule matcher is removed from the queue. 
  * 3. First rule matcher in terms of its break position in text is selected.
  * 4. List of exception rules corresponding to break rule is retrieved. 
  * 5. If none of exception rules is matching in break position then 
@@ -44,21 +46,39 @@ import net.loomchild.segment.util.Util;
  * the buffer is moved in the text until it starts after last found segment. 
  * If this happens rule matchers are reinitialized and the text is searched again.
  * Streaming version has a limitation that read buffer must be at least as long 
- * as any segment in the text.
+ * as any segment in the text. When a longer segment is encountered, 
+ * the iterator fails, grows the buffer or breaks the segment, depending on
+ * {@link #OVERFLOW_POLICY_PARAMETER}.
  * 
  * As this algorithm uses lookbehind extensively but Java does not permit
  * infinite regular expressions in lookbehind, so some patterns are finitized. 
  * For example a* pattern will be changed to something like a{0,100}.
+ * Leading repetitions do not need to be finitized, because only the end 
+ * of lookbehind match matters, for example \s+ is changed to \s.
+ * To avoid this exception before patterns can be reversed and matched 
+ * backwards instead (see {@link #REVERSE_EXCEPTION_PARAMETER}).
+ * 
+ * Rule matchers are kept in a priority queue ordered by break position 
+ * and by start position, so only the matchers which need to be moved 
+ * are accessed. This matters when there are hundreds of break rules.
+ * 
+ * Optionally (see {@link #AUTOMATON_PARAMETER}) regular break rules 
+ * are matched by a single rule set matcher, which reads the text only once
+ * without backtracking and reports break positions of all the rules.
  *
  * @author loomchild
  */
-public class SrxTextIterator extends AbstractTextIterator {
+public class SrxTextIterator extends AbstractTextIterator 
+		implements BoundaryIterator {
 	
 	/**
 	 * Margin size. Used in streaming splitter.
 	 * If rule is matched but its position is in the margin 
 	 * (position &gt; bufferLength - margin) then the matching is ignored, 
 	 * and more text is read and rule is matched again.
+	 * Margin should not be smaller than 
+	 * {@link RuleManager#getRequiredMargin()}, number of characters
+	 * examined by after patterns of the rules.
 	 */
 	public static final String MARGIN_PARAMETER = "margin";
 	
@@ -73,8 +93,73 @@ public class SrxTextIterator extends AbstractTextIterator {
 	public static final String MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER = 
 		"maxLookbehindConstructLength";
 
+	/**
+	 * Flags used to compile all the rule patterns, see 
+	 * {@link java.util.regex.Pattern#compile(String, int)}. 
+	 * Rules compiled with different flags are cached separately, 
+	 * so iterators with different flags can be created concurrently.
+	 */
 	public static final String DEFAULT_PATTERN_FLAGS_PARAMETER = "defaultPatternFlags";
 
+	/**
+	 * If true, regular break rules are matched all at once by deterministic 
+	 * finite automaton instead of {@link java.util.regex.Pattern}. 
+	 * Matching time is linear and does not depend on the number of rules. 
+	 * Rules using constructs that are not regular, for example lookaround,
+	 * backreferences or "^", are still matched by Pattern, as well as 
+	 * rules whose before pattern matches can overlap, for example "[0-9]+"
+	 * or "\.\.", see {@link net.loomchild.segment.regex.Regex#isOverlapFree(int)}.
+	 * The results are the same as when matching by Pattern, except that 
+	 * rules with empty before pattern, for example with after pattern 
+	 * "[^a]", can break inside a surrogate pair when matched by Pattern, 
+	 * while automaton reads whole characters and does not.
+	 */
+	public static final String AUTOMATON_PARAMETER = "automaton";
+
+	/**
+	 * If true, before patterns of exception rules are reversed and matched 
+	 * backwards from break position on reversed text, instead of 
+	 * being finitized and matched in lookbehind. 
+	 * This way they are not limited by 
+	 * {@link #MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER}. 
+	 * Patterns that cannot be reversed, for example containing 
+	 * backreferences or "^", still use lookbehind.
+	 */
+	public static final String REVERSE_EXCEPTION_PARAMETER = 
+		"reverseException";
+
+	/**
+	 * What to do when segment does not fit in the read buffer, 
+	 * see {@link OverflowPolicy}.
+	 */
+	public static final String OVERFLOW_POLICY_PARAMETER = "overflowPolicy";
+
+	/**
+	 * Maximum size the read buffer can grow to when using 
+	 * {@link OverflowPolicy#GROW}.
+	 */
+	public static final String MAX_BUFFER_LENGTH_PARAMETER = "maxBufferLength";
+
+	/**
+	 * Maximum segment length when using {@link OverflowPolicy#BREAK}.
+	 * In streaming version it must not be greater than buffer size minus
+	 * margin, which is also the default.
+	 */
+	public static final String MAX_SEGMENT_LENGTH_PARAMETER = "maxSegmentLength";
+
+	/**
+	 * If true, streaming version does not wait until the buffer is full, 
+	 * but searches the characters which are already available and returns 
+	 * a segment as soon as its break position is followed by margin 
+	 * characters, so reading more text cannot change it. Margin defaults 
+	 * to {@link RuleManager#getRequiredMargin()} in this mode, or to 
+	 * {@link #DEFAULT_MARGIN} if after patterns are unbounded, like 
+	 * \s+\p{Lu} in the default rules; then smaller margin can be given 
+	 * explicitly, at the cost of accuracy when the after pattern match 
+	 * is longer. Useful for interactive input, for example chat or subtitles.
+	 */
+	public static final String LOW_LATENCY_PARAMETER = "lowLatency";
+
 	/**
 	 * Default margin size. 
 	 */
@@ -90,6 +175,64 @@ public class SrxTextIterator extends AbstractTextIterator {
 	 * Default max lookbehind construct length parameter.
 	 */
 	public static final int DEFAULT_MAX_LOOKBEHIND_CONSTRUCT_LENGTH = 100;
+
+	/**
+	 * Default automaton parameter.
+	 */
+	public static final boolean DEFAULT_AUTOMATON = false;
+
+	/**
+	 * Default reverse exception parameter.
+	 */
+	public static final boolean DEFAULT_REVERSE_EXCEPTION = false;
+
+	/**
+	 * Default overflow policy.
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = 
+		OverflowPolicy.FAIL;
+
+	/**
+	 * Default maximum buffer size.
+	 */
+	public static final int DEFAULT_MAX_BUFFER_LENGTH = 64 * 1024 * 1024;
+	
+	/**
+	 * Default low latency parameter.
+	 */
+	public static final boolean DEFAULT_LOW_LATENCY = false;
+	
+	/**
+	 * Policy used when a segment does not fit in the read buffer.
+	 */
+	public enum OverflowPolicy {
+		
+		/**
+		 * Throw {@link IllegalStateException}.
+		 */
+		FAIL, 
+		
+		/**
+		 * Double the buffer until the segment fits, up to 
+		 * {@link SrxTextIterator#MAX_BUFFER_LENGTH_PARAMETER}. Throw
+		 * {@link IllegalStateException} when it is still too short.
+		 */
+		GROW, 
+		
+		/**
+		 * Break every segment longer than 
+		 * {@link SrxTextIterator#MAX_SEGMENT_LENGTH_PARAMETER}, ignoring
+		 * the rules. Applies to non-streaming version too.
+		 */
+		BREAK
+		
+	}
+	
+	/**
+	 * Number of characters searched at once by matchers of iterator 
+	 * started in the middle of the text.
+	 */
+	private static final int INCREMENTAL_SEARCH_LENGTH = 4096;
 	
 	private SrxDocument document;
 
@@ -101,16 +244,40 @@ public class SrxTextIterator extends AbstractTextIterator {
 	
 	private RuleManager ruleManager;
 	
-	private List<RuleMatcher> ruleMatcherList;
+	private boolean matchersInitialized;
+	
+	private boolean refilled;
+	
+	private RuleMatcherQueue ruleMatcherQueue;
+	
+	private RuleMatcher[] ruleMatchers;
+	
+	private RuleSetMatcher ruleSetMatcher;
+	
+	private ExceptionMatcher exceptionMatcher;
 	
 	private int margin;
 	
+	private boolean automaton;
+	
+	private boolean reverseException;
+	
+	private int searchLength;
+	
+	private OverflowPolicy overflowPolicy;
+	
+	private int maxBufferLength;
+	
+	private int maxSegmentLength;
+	
 	
 	/**
 	 * Creates text iterator that obtains language rules form given document
 	 * using given language code. This constructor version is not streaming 
 	 * because it receives whole text as a string. 
-	 * Supported parameters: {@link #MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER}.
+	 * Supported parameters: {@link #MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER},
+	 * {@link #AUTOMATON_PARAMETER}, {@link #REVERSE_EXCEPTION_PARAMETER}, 
+	 * {@link #OVERFLOW_POLICY_PARAMETER}, {@link #MAX_SEGMENT_LENGTH_PARAMETER}.
 	 * 
 	 * @param document SRX document
 	 * @param languageCode text language code of text used to retrieve the rules
@@ -124,6 +291,48 @@ public class SrxTextIterator extends AbstractTextIterator {
 		init(document, languageCode, new TextManager(text), newParameterMap);
 	}
 
+	/**
+	 * Creates text iterator starting at given position in the text, 
+	 * as if previous segment ended there. Boundaries are counted 
+	 * from the beginning of the text, and the text before start 
+	 * position is visible to lookbehind. Used by 
+	 * {@link ParallelSrxTextIterator} to segment parts of the text 
+	 * concurrently. 
+	 * Matchers search limited part of the text at once and continue 
+	 * only when their next match can be the next break, so rules which 
+	 * rarely match do not read the rest of the text from each start 
+	 * position.
+	 * 
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param text
+	 * @param parameterMap additional segmentation parameters
+	 * @param start start position
+	 */
+	SrxTextIterator(SrxDocument document, String languageCode, 
+			CharSequence text, Map<String, Object> parameterMap, int start) {
+		this(document, languageCode, text, parameterMap);
+		this.start = start;
+		this.searchLength = INCREMENTAL_SEARCH_LENGTH;
+	}
+
+	/**
+	 * Creates text iterator over given text, using the same rules and 
+	 * parameters as given non-streaming iterator. Rules are not retrieved 
+	 * from the document again, so it is cheaper than the public 
+	 * constructors when many short texts are segmented, 
+	 * see {@link SrxBatchSegmenter}.
+	 * 
+	 * @param iterator non-streaming iterator
+	 * @param text
+	 */
+	SrxTextIterator(SrxTextIterator iterator, CharSequence text) {
+		init(iterator.document, iterator.ruleManager, new TextManager(text), 
+				0, iterator.automaton, iterator.reverseException, 
+				iterator.overflowPolicy, iterator.maxBufferLength, 
+				iterator.maxSegmentLength);
+	}
+
 	/**
 	 * Creates text iterator with no additional parameters.
 	 * @see #SrxTextIterator(SrxDocument, String, CharSequence, Map)
@@ -148,7 +357,10 @@ public class SrxTextIterator extends AbstractTextIterator {
 	 * buffer and never matched. 
 	 * Supported parameters: {@link #BUFFER_LENGTH_PARAMETER}, 
 	 * {@link #MARGIN_PARAMETER}, 
-	 * {@link #MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER}.
+	 * {@link #MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER}, 
+	 * {@link #AUTOMATON_PARAMETER}, {@link #REVERSE_EXCEPTION_PARAMETER}, 
+	 * {@link #OVERFLOW_POLICY_PARAMETER}, {@link #MAX_BUFFER_LENGTH_PARAMETER}, 
+	 * {@link #MAX_SEGMENT_LENGTH_PARAMETER}, {@link #LOW_LATENCY_PARAMETER}.
 	 * 
 	 * @param document SRX document
 	 * @param languageCode text language code of text used to retrieve the rules
@@ -159,7 +371,10 @@ public class SrxTextIterator extends AbstractTextIterator {
 			Reader reader, Map<String, Object> parameterMap) {
 		int bufferLength = getParameter(parameterMap.get(BUFFER_LENGTH_PARAMETER), 
 				DEFAULT_BUFFER_LENGTH);
-		init(document, languageCode, new TextManager(reader, bufferLength), parameterMap);
+		boolean lowLatency = getParameter(parameterMap.get(LOW_LATENCY_PARAMETER), 
+				DEFAULT_LOW_LATENCY);
+		init(document, languageCode, 
+				new TextManager(reader, bufferLength, lowLatency), parameterMap);
 	}
 
 	/**
@@ -174,86 +389,318 @@ public class SrxTextIterator extends AbstractTextIterator {
 		this(document, languageCode, reader, new HashMap<String, Object>());
 	}
 
+	/**
+	 * Creates streaming text iterator reading bytes from given channel.
+	 * Bytes are decoded directly into the buffer, see {@link ChannelReader}.
+	 * @see SrxTextIterator#SrxTextIterator(SrxDocument, String, Reader, Map)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param channel channel in blocking mode from which read the text
+	 * @param charset text character set
+	 * @param parameterMap additional segmentation parameters
+	 */
+	public SrxTextIterator(SrxDocument document, String languageCode, 
+			ReadableByteChannel channel, Charset charset, 
+			Map<String, Object> parameterMap) {
+		this(document, languageCode, new ChannelReader(channel, charset), 
+				parameterMap);
+	}
+
+	/**
+	 * Creates streaming text iterator reading bytes from given input stream.
+	 * @see SrxTextIterator#SrxTextIterator(SrxDocument, String, ReadableByteChannel, Charset, Map)
+	 * @param document SRX document
+	 * @param languageCode text language code of text used to retrieve the rules
+	 * @param inputStream input stream from which read the text
+	 * @param charset text character set
+	 * @param parameterMap additional segmentation parameters
+	 */
+	public SrxTextIterator(SrxDocument document, String languageCode, 
+			InputStream inputStream, Charset charset, 
+			Map<String, Object> parameterMap) {
+		this(document, languageCode, new ChannelReader(inputStream, charset), 
+				parameterMap);
+	}
+
+	/**
+	 * Resets iterator so it splits given text from the beginning, 
+	 * like {@link java.util.regex.Matcher#reset(CharSequence)}. 
+	 * Rules and parameters stay the same and rule matchers are reused, 
+	 * so it is cheaper than creating new iterator for each text. 
+	 * After reset iterator is no longer streaming, so like 
+	 * non-streaming iterator it does not use the margin.
+	 * 
+	 * @param text
+	 */
+	public void reset(CharSequence text) {
+		this.textManager = new TextManager(text);
+		this.margin = 0;
+		this.segment = null;
+		this.matchersInitialized = false;
+		this.refilled = false;
+		this.start = 0;
+		this.end = 0;
+	}
+
 	/**
 	 * Finds the next segment in the text and returns it.
 	 * 
 	 * @return next segment or null if it doesn't exist
 	 * @throws IllegalStateException if buffer is too small to hold the segment
+	 * 		and overflow policy does not allow to continue
 	 * @throws IORuntimeException if IO error occurs when reading the text
 	 */
 	public String next() {
 		if (hasNext()) {
+			findNext();
+			segment = textManager.getText().subSequence(start, end).toString();
+			start = end;
+			return segment;
+		} else {
+			return null;
+		}
+	}
 
-			// Initialize matchers before first search.
-			if (segment == null) {
-				initMatchers();
-			}
+	/**
+	 * Finds the next segment in the text and returns its end position.
+	 * Does not create segment string.
+	 * 
+	 * @return position in the whole input where next segment ends or -1 
+	 * 		if it doesn't exist
+	 * @throws IllegalStateException if buffer is too small to hold the segment
+	 * 		and overflow policy does not allow to continue, or if the 
+	 * 		position exceeds integer range, see {@link #nextLongBoundary()}
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public int nextBoundary() {
+		long boundary = nextLongBoundary();
+		if (boundary > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Boundary position: " + boundary + 
+					" exceeds integer range; use nextLongBoundary()");
+		}
+		return (int)boundary;
+	}
+
+	/**
+	 * Finds the next segment in the text and returns its end position 
+	 * as long number, so it can be used with streams longer than 
+	 * {@link Integer#MAX_VALUE} characters. 
+	 * Does not create segment string.
+	 * 
+	 * @return position in the whole input where next segment ends or -1 
+	 * 		if it doesn't exist
+	 * @throws IllegalStateException if buffer is too small to hold the segment
+	 * 		and overflow policy does not allow to continue
+	 * @throws IORuntimeException if IO error occurs when reading the text
+	 */
+	public long nextLongBoundary() {
+		if (hasNext()) {
+			findNext();
+			start = end;
+			return getPosition();
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns position in the whole input where the last segment found by 
+	 * {@link #next()} or {@link #nextBoundary()} ends, which is also where
+	 * the next segment starts. Position is counted across buffer refills as 
+	 * long number, so it is correct for streams longer than 
+	 * {@link Integer#MAX_VALUE} characters.
+	 * 
+	 * @return end position of last segment or 0 if no segment has been 
+	 * 		found yet
+	 */
+	public long getPosition() {
+		return textManager.getOffset() + start;
+	}
+
+	/**
+	 * Finds the next segment in the text. After this method returns 
+	 * segment is located between {@link #start} and {@link #end} in 
+	 * current text. Can read more text into text manager.
+	 */
+	private void findNext() {
+
+		// Initialize matchers before first search.
+		if (!matchersInitialized) {
+			initMatchers();
+		}
+		
+		boolean found = false;
+		
+		while (!found) {
 			
-			boolean found = false;
+			int minIndex = getMinIndex();
 			
-			while (!found) {
+			boolean overflow = false;
+			
+			if (textManager.hasMoreText() && !isRefilled() && 
+					(minIndex == -1 || 
+					getBreakPosition(minIndex) > 
+					textManager.getText().length() - margin)) {
 				
-				RuleMatcher minMatcher = getMinMatcher();
+				if (start > 0 || textManager.getText().length() < 
+						textManager.getBufferLength()) {
+					readText();
+					// In low latency mode only part of the buffer may 
+					// have been read, so break position is checked again.
+					if (textManager.isLowLatency() && !isRefilled()) {
+						continue;
+					}
+					minIndex = getMinIndex();
+				} else if (overflowPolicy == OverflowPolicy.GROW && 
+						textManager.getBufferLength() < maxBufferLength) {
+					int[] matcherStarts = getTranslatedMatcherStarts(0);
+					int ruleSetPosition = getTranslatedRuleSetPosition(0);
+					textManager.growBuffer((int)Math.min(
+							2L * textManager.getBufferLength(), 
+							maxBufferLength));
+					initMatchers(matcherStarts, ruleSetPosition);
+					continue;
+				} else if (overflowPolicy == OverflowPolicy.BREAK) {
+					overflow = true;
+				} else {
+					throw new IllegalStateException("Buffer too short" +
+							" - it must be at least as long as the" +
+							" longest segment in the text; " +
+							"try using the bufferLength or " + 
+							"overflowPolicy option");
+				}
 				
-				if (minMatcher == null && !textManager.hasMoreText()) {
+			}
+			
+			refilled = false;
+			
+			int textLength = textManager.getText().length();
+			
+			if (overflow || (overflowPolicy == OverflowPolicy.BREAK && 
+					(minIndex == -1 ? textLength : getBreakPosition(minIndex)) 
+					- start > getMaxSegmentLength())) {
 
-					found = true;
-					end = textManager.getText().length();
+				found = true;
+				end = getForcedBreakPosition();
+				cutMatchers();
 				
-				} else {
-					
-					if (textManager.hasMoreText() && 
-							(minMatcher == null || 
-							minMatcher.getBreakPosition() > 
-							textManager.getBufferLength() - margin)) {
-						
-						if (start == 0) {
-							throw new IllegalStateException("Buffer too short" +
-									" - it must be at least as long as the" +
-									" longest segment in the text; " +
-									"try using the bufferLength option");
-						}
-						
-						textManager.readText(start);
-						start = 0;
-						initMatchers();
-						minMatcher = getMinMatcher();						
+			} else if (minIndex == -1) {
+				
+				// If there is more text the buffer has just been refilled 
+				// and it is too short, which is handled in the next iteration.
+				if (textManager.hasMoreText()) {
+					continue;
+				}
+				found = true;
+				end = textLength;
+				
+			} else {
+				
+				end = getBreakPosition(minIndex);
 
+				if (end > start) {
+					found = isException(minIndex);
+					if (found) {
+						cutMatchers();
 					}
-					
-					end = minMatcher.getBreakPosition();
-
-					if (end > start) {
-						found = isException(minMatcher);
-						if (found) {
-							cutMatchers();
-						}
-					}
-					
 				}
 				
-				moveMatchers();
 			}
 			
-			segment = textManager.getText().subSequence(start, end).toString();
-			start = end;
-			return segment;
-			
+			moveMatchers(end);
+		}
+		
+	}
+
+	/**
+	 * Returns true if the text has been refilled after deleting the text 
+	 * before current segment, see {@link #readText()}, and it is complete:
+	 * buffer is full or there is no more text. Then, like in default mode, 
+	 * next break position is checked even if it is inside the margin. 
+	 * In low latency mode refill can be completed by {@link #hasNext()} 
+	 * or by several reads.
+	 * @return true if text has been refilled
+	 */
+	private boolean isRefilled() {
+		return refilled && (!textManager.hasMoreText() || 
+				textManager.getText().length() >= 
+				textManager.getBufferLength());
+	}
+
+	/**
+	 * @return maximum segment length when using {@link OverflowPolicy#BREAK}
+	 */
+	private int getMaxSegmentLength() {
+		if (maxSegmentLength > 0) {
+			return maxSegmentLength;
 		} else {
-			
-			return null;
-			
+			return textManager.getBufferLength() - margin;
 		}
 	}
+	
+	/**
+	 * Returns position where segment longer than maximum segment length
+	 * is broken. Surrogate pairs are not broken, unless segment consists 
+	 * of a single one.
+	 * @return forced break position
+	 */
+	private int getForcedBreakPosition() {
+		CharSequence text = textManager.getText();
+		int position = start + getMaxSegmentLength();
+		if (position - 1 > start && position < text.length() && 
+				Character.isHighSurrogate(text.charAt(position - 1)) && 
+				Character.isLowSurrogate(text.charAt(position))) {
+			--position;
+		}
+		return position;
+	}
 
 	/**
 	 * @return true if there are more segments
 	 */
 	public boolean hasNext() {
+		// In low latency mode it is not known if there is more text 
+		// until it is read or the end of input is reached.
+		while (textManager.isLowLatency() && textManager.hasMoreText() && 
+				start == textManager.getText().length()) {
+			readText();
+		}
 		return (textManager.hasMoreText() || 
 				start < textManager.getText().length());
 	}
 	
+	/**
+	 * Reads more text. While current text is shorter than the buffer, 
+	 * which happens only in low latency mode, it is kept and rule 
+	 * matchers repeat their last search, see {@link #findMatchersAgain(int)}, 
+	 * so segments are the same as in default mode. Otherwise, like in 
+	 * default mode, text before current segment is deleted and 
+	 * rule matchers continue the search where possible, see 
+	 * {@link #getTranslatedMatcherStarts(int)} and 
+	 * {@link #getTranslatedRuleSetPosition(int)}. Then, until next break 
+	 * position is checked, {@link #refilled} is true.
+	 */
+	private void readText() {
+		if (textManager.getText().length() < textManager.getBufferLength()) {
+			int ruleSetPosition = getTranslatedRuleSetPosition(0);
+			textManager.readMore();
+			if (matchersInitialized) {
+				findMatchersAgain(ruleSetPosition);
+			}
+		} else if (matchersInitialized) {
+			int[] matcherStarts = getTranslatedMatcherStarts(start);
+			int ruleSetPosition = getTranslatedRuleSetPosition(start);
+			textManager.readText(start);
+			start = 0;
+			initMatchers(matcherStarts, ruleSetPosition);
+			refilled = true;
+		} else {
+			textManager.readText(start);
+			start = 0;
+			refilled = true;
+		}
+	}
+	
 	/**
 	 * Initializes splitter.
 	 *  
@@ -265,14 +712,49 @@ public class SrxTextIterator extends AbstractTextIterator {
 	private void init(SrxDocument document, String languageCode, 
 			TextManager textManager, Map<String, Object> parameterMap) {
 		
-		int margin = getParameter(parameterMap.get(MARGIN_PARAMETER), 
-				DEFAULT_MARGIN);
 		int maxLookbehindConstructLength = getParameter(parameterMap.get(
 				MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER), 
 					DEFAULT_MAX_LOOKBEHIND_CONSTRUCT_LENGTH);
 		int defaultPatternFlags = getParameter(parameterMap.get(DEFAULT_PATTERN_FLAGS_PARAMETER), 0);
+		boolean automaton = getParameter(parameterMap.get(AUTOMATON_PARAMETER), 
+				DEFAULT_AUTOMATON);
+		boolean reverseException = getParameter(parameterMap.get(
+				REVERSE_EXCEPTION_PARAMETER), DEFAULT_REVERSE_EXCEPTION);
+		OverflowPolicy overflowPolicy = getParameter(parameterMap.get(
+				OVERFLOW_POLICY_PARAMETER), DEFAULT_OVERFLOW_POLICY);
+		int maxBufferLength = Math.max(textManager.getBufferLength(), 
+				getParameter(parameterMap.get(MAX_BUFFER_LENGTH_PARAMETER), 
+						DEFAULT_MAX_BUFFER_LENGTH));
+		int maxSegmentLength = getParameter(parameterMap.get(
+				MAX_SEGMENT_LENGTH_PARAMETER), 0);
+
+		List<LanguageRule> languageRuleList = 
+			document.getLanguageRuleList(languageCode);
+		
+		SrxDocumentCache.Key<RuleManager> key = 
+			new SrxDocumentCache.Key<RuleManager>(RuleManager.class, 
+					languageRuleList, maxLookbehindConstructLength, 
+					defaultPatternFlags);
+		
+		RuleManager ruleManager = document.getCache().get(key);
+		
+		if (ruleManager == null) {
+			long startTime = System.nanoTime();
+			ruleManager = new RuleManager(document, languageRuleList, 
+					maxLookbehindConstructLength, defaultPatternFlags);
+			document.getCache().put(key, ruleManager, 
+					System.nanoTime() - startTime);
+		}
 
-		Util.setDefaultPatternFlags(defaultPatternFlags);
+		// In low latency mode margin delays every segment, so it is 
+		// as small as the rules allow.
+		int defaultMargin = DEFAULT_MARGIN;
+		if (textManager.isLowLatency() && 
+				ruleManager.getRequiredMargin() != Regex.INFINITY) {
+			defaultMargin = Math.max(1, ruleManager.getRequiredMargin());
+		}
+		int margin = getParameter(parameterMap.get(MARGIN_PARAMETER), 
+				defaultMargin);
 
 		if (textManager.getBufferLength() > 0 &&
 				textManager.getBufferLength() <= margin) {
@@ -281,113 +763,430 @@ public class SrxTextIterator extends AbstractTextIterator {
 					textManager.getBufferLength() + ".");
 		}
 		
+		if (parameterMap.get(MAX_SEGMENT_LENGTH_PARAMETER) != null && 
+				(maxSegmentLength <= 0 || (textManager.isStreaming() && 
+				maxSegmentLength > textManager.getBufferLength() - margin))) {
+			throw new IllegalArgumentException("Max segment length: " + 
+					maxSegmentLength + " must be positive and not greater " + 
+					"than buffer size minus margin: " + 
+					(textManager.getBufferLength() - margin) + ".");
+		}
+		
+		init(document, ruleManager, textManager, margin, automaton, 
+				reverseException, overflowPolicy, maxBufferLength, 
+				maxSegmentLength);
+	}
+
+	/**
+	 * Initializes splitter with rules already retrieved from the document.
+	 *  
+	 * @param document SRX document
+	 * @param ruleManager rule manager
+	 * @param textManager text manager containing the text
+	 * @param margin margin size
+	 * @param automaton true if automaton should be used
+	 * @param reverseException true if exception rules should be reversed
+	 * @param overflowPolicy overflow policy
+	 * @param maxBufferLength maximum buffer size
+	 * @param maxSegmentLength maximum segment length or 0 if it is equal
+	 * 		to buffer size minus margin 
+	 */
+	private void init(SrxDocument document, RuleManager ruleManager, 
+			TextManager textManager, int margin, boolean automaton, 
+			boolean reverseException, OverflowPolicy overflowPolicy, 
+			int maxBufferLength, int maxSegmentLength) {
 		this.document = document;
 		this.segment = null;
+		this.matchersInitialized = false;
+		this.refilled = false;
+		this.ruleMatcherQueue = null;
 		this.start = 0;
 		this.end = 0;
 		this.textManager = textManager;
 		this.margin = margin;
+		this.automaton = automaton;
+		this.reverseException = reverseException;
+		this.searchLength = 0;
+		this.overflowPolicy = overflowPolicy;
+		this.maxBufferLength = maxBufferLength;
+		this.maxSegmentLength = maxSegmentLength;
+		this.ruleManager = ruleManager;
 
-		List<LanguageRule> languageRuleList = 
-			document.getLanguageRuleList(languageCode);
-		
-		String key = "RULE_MANAGER_" + toString(languageRuleList) 
-				+ "_" + maxLookbehindConstructLength;
-		
-		this.ruleManager = (RuleManager)document.getCache().get(key);
+	}
 		
-		if (ruleManager == null) {
-			this.ruleManager = new RuleManager(document, languageRuleList, 
-					maxLookbehindConstructLength);
-			document.getCache().put(key, ruleManager);
+	/**
+	 * Returns state of the matchers after last found segment. Iterators 
+	 * over the same text which have the same state after finding 
+	 * the same boundary will find the same boundaries afterwards.
+	 * Matcher region start is only a part of the state for rules sensitive
+	 * to it, see {@link RuleManager#isBoundarySensitive(Rule)}.
+	 * Matchers which have not found their next match yet are represented 
+	 * by the position where their search continues.
+	 * @return state array
+	 */
+	int[] getState() {
+		List<Rule> breakRuleList = ruleManager.getBreakRuleList();
+		int[] state = new int[breakRuleList.size() * 3 + 3];
+		int position = 0;
+		state[position++] = start;
+		for (int i = 0; i < breakRuleList.size(); ++i) {
+			RuleMatcher matcher = null;
+			if (matchersInitialized) {
+				matcher = ruleMatcherQueue.get(i);
+			}
+			if (matcher != null && matcher.isPending()) {
+				state[position++] = matcher.getSearchPosition();
+				state[position++] = -2;
+				state[position++] = -2;
+			} else if (matcher != null) {
+				state[position++] = matcher.getStartPosition();
+				state[position++] = matcher.getBreakPosition();
+				if (ruleManager.isBoundarySensitive(breakRuleList.get(i))) {
+					state[position++] = matcher.getRegionStart();
+				} else {
+					state[position++] = -1;
+				}
+			} else {
+				state[position++] = -1;
+				state[position++] = -1;
+				state[position++] = -1;
+			}
 		}
-
+		if (ruleSetMatcher != null && ruleSetMatcher.isPending()) {
+			state[position++] = ruleSetMatcher.getBreakPosition();
+			state[position++] = -2;
+		} else if (ruleSetMatcher != null && !ruleSetMatcher.hitEnd()) {
+			state[position++] = ruleSetMatcher.getBreakPosition();
+			state[position++] = ruleSetMatcher.getRuleIndex();
+		} else {
+			state[position++] = -1;
+			state[position++] = -1;
+		}
+		return state;
 	}
-		
+	
+	/**
+	 * Returns positions where rule matchers should continue the search 
+	 * after given number of characters is deleted from the beginning 
+	 * of the buffer and more text is read. 
+	 * Only rules which do not depend on region start are considered, 
+	 * so they find the same matches wherever the search starts.
+	 * Current match of a rule matcher is kept if it is located before 
+	 * the margin, as reading more text cannot change it; 
+	 * the search starts at the match, so it is found again. 
+	 * Otherwise the search which found the match, or did not find any, 
+	 * is repeated, so overlapping matches skipped before are not found. 
+	 * If it started in deleted text, new match must break after 
+	 * the margin, so if the length of before pattern match is limited, 
+	 * the search starts that far before the margin. Other matchers 
+	 * search the text again from the start of current segment. 
+	 * @param amount number of characters to be deleted
+	 * @return start position of each matcher in the new buffer or -1 
+	 * 		if it has to search from the start of current segment
+	 */
+	private int[] getTranslatedMatcherStarts(int amount) {
+		List<Rule> breakRuleList = ruleManager.getBreakRuleList();
+		int[] matcherStarts = new int[breakRuleList.size()];
+		int reliableLength = textManager.getText().length() - margin;
+		for (int i = 0; i < matcherStarts.length; ++i) {
+			Rule rule = breakRuleList.get(i);
+			RuleMatcher matcher = ruleMatcherQueue.get(i);
+			int maxBeforeLength = 
+				ruleManager.getExtent(rule).getMaxBeforeLength();
+			matcherStarts[i] = -1;
+			if (ruleMatchers[i] == null || 
+					ruleManager.isBoundarySensitive(rule)) {
+				continue;
+			} else if (matcher != null && !matcher.isPending() && 
+					matcher.getBreakPosition() <= reliableLength) {
+				if (matcher.getStartPosition() >= amount) {
+					matcherStarts[i] = matcher.getStartPosition() - amount;
+				}
+			} else if (ruleMatchers[i].getFindPosition() >= amount) {
+				matcherStarts[i] = ruleMatchers[i].getFindPosition() - amount;
+			} else if (maxBeforeLength != Regex.INFINITY) {
+				matcherStarts[i] = Math.max(0, 
+						reliableLength - maxBeforeLength - amount);
+			}
+		}
+		return matcherStarts;
+	}
+	
+	/**
+	 * Returns position up to which break positions found by rule set 
+	 * matcher have already been checked, after given number of characters 
+	 * is deleted from the beginning of the buffer and more text is read. 
+	 * Rule set matcher is restarted at the start of current segment, 
+	 * and like rule matchers it must not return these break positions 
+	 * again, as exception rules could no longer see deleted text before 
+	 * them. Break positions inside the margin are returned again, 
+	 * as reading more text can change them.
+	 * @param amount number of characters to be deleted
+	 * @return position in the new buffer, at least 0
+	 */
+	private int getTranslatedRuleSetPosition(int amount) {
+		int position = textManager.getText().length() - margin;
+		if (ruleSetMatcher != null && !ruleSetMatcher.hitEnd()) {
+			position = Math.min(position, 
+					ruleSetMatcher.getBreakPosition() - 1);
+		}
+		return Math.max(0, position - amount);
+	}
+	
 	/**
-	 * Initializes matcher list according to rules from ruleManager and 
-	 * text from textManager.
+	 * Initializes matcher queue according to rules from ruleManager and 
+	 * text from textManager. If automaton is used, regular rules are
+	 * matched by rule set matcher instead. Matchers start searching 
+	 * at the start of current segment. Matchers are created once and 
+	 * reset when the text changes.
 	 */
 	private void initMatchers() {
-		this.ruleMatcherList = new LinkedList<RuleMatcher>();
-		for (Rule rule : ruleManager.getBreakRuleList()) {
-			RuleMatcher matcher = 
-				new RuleMatcher(document, rule, textManager.getText());
-			matcher.find();
+		initMatchers(null, start);
+	}
+	
+	/**
+	 * Initializes matcher queue. Matchers start searching at given 
+	 * positions.
+	 * @see #initMatchers()
+	 * @param matcherStarts start position of each rule matcher or -1 
+	 * 		if it starts at the start of current segment, can be null 
+	 * @param ruleSetPosition position up to which break positions of rule 
+	 * 		set matcher are skipped, see 
+	 * 		{@link #getTranslatedRuleSetPosition(int)}
+	 */
+	private void initMatchers(int[] matcherStarts, int ruleSetPosition) {
+		List<Rule> breakRuleList = ruleManager.getBreakRuleList();
+		CharSequence text = textManager.getText();
+		if (ruleMatcherQueue == null) {
+			this.ruleMatcherQueue = new RuleMatcherQueue(breakRuleList.size());
+			this.ruleMatchers = new RuleMatcher[breakRuleList.size()];
+			this.exceptionMatcher = new ExceptionMatcher(ruleManager, text, 
+					reverseException);
+			this.ruleSetMatcher = null;
+			if (automaton && ruleManager.getBreakAutomaton() != null) {
+				this.ruleSetMatcher = new RuleSetMatcher(ruleManager, text);
+				if (searchLength > 0) {
+					ruleSetMatcher.setSearchLength(searchLength);
+				}
+			}
+		} else {
+			ruleMatcherQueue.clear();
+			exceptionMatcher.reset(text);
+			if (ruleSetMatcher != null) {
+				ruleSetMatcher.reset(text);
+			}
+		}
+		if (ruleSetMatcher != null) {
+			ruleSetMatcher.find(start);
+		}
+		for (int i = 0; i < breakRuleList.size(); ++i) {
+			if (ruleSetMatcher != null && 
+					ruleManager.getBreakAfterAutomaton(i) != null) {
+				continue;
+			}
+			RuleMatcher matcher = ruleMatchers[i];
+			if (matcher == null) {
+				Rule rule = breakRuleList.get(i);
+				matcher = new RuleMatcher(document, rule, text, 
+						ruleManager.getBreakFilter(rule), 
+						ruleManager.getPatternFlags());
+				if (searchLength > 0 && 
+						!ruleManager.isBoundarySensitive(rule)) {
+					matcher.setSearchLength(searchLength, ruleManager.
+							getExtent(rule).getMaxBeforeReadLength());
+				}
+				ruleMatchers[i] = matcher;
+			} else {
+				matcher.reset(text);
+			}
+			if (matcherStarts != null && matcherStarts[i] != -1) {
+				matcher.find(matcherStarts[i]);
+			} else {
+				matcher.find(start);
+			}
 			if (!matcher.hitEnd()) {
-				ruleMatcherList.add(matcher);
+				ruleMatcherQueue.add(i, matcher);
 			}
 		}
+		// Break at the start of current segment has already been used.
+		moveMatchers(start);
+		moveRuleSetMatcher(ruleSetPosition);
+		this.matchersInitialized = true;
+	}
+
+	/**
+	 * Makes rule matchers repeat their last search after more text 
+	 * has been appended to current text, see 
+	 * {@link RuleMatcher#findAgain(boolean)}. Rule set matcher is 
+	 * restarted at the start of current segment, like after each segment,
+	 * and skips break positions that have already been checked.
+	 * @param ruleSetPosition position up to which break positions of rule 
+	 * 		set matcher are skipped, see 
+	 * 		{@link #getTranslatedRuleSetPosition(int)}
+	 */
+	private void findMatchersAgain(int ruleSetPosition) {
+		List<Rule> breakRuleList = ruleManager.getBreakRuleList();
+		CharSequence text = textManager.getText();
+		ruleMatcherQueue.clear();
+		exceptionMatcher.reset(text);
+		if (ruleSetMatcher != null) {
+			ruleSetMatcher.reset(text);
+			ruleSetMatcher.find(start);
+		}
+		for (int i = 0; i < breakRuleList.size(); ++i) {
+			RuleMatcher matcher = ruleMatchers[i];
+			if (matcher == null) {
+				continue;
+			}
+			matcher.findAgain(
+					ruleManager.isBoundarySensitive(breakRuleList.get(i)));
+			if (!matcher.hitEnd()) {
+				ruleMatcherQueue.add(i, matcher);
+			}
+		}
+		moveMatchers(start);
+		moveRuleSetMatcher(ruleSetPosition);
 	}
 
 	/**
 	 * Moves all matchers to the next position if their break position 
-	 * is smaller than last segment end position.
+	 * is not greater than given position, usually last segment end 
+	 * position.
+	 * @param position position
 	 */
-	private void moveMatchers() {
-		for (Iterator<RuleMatcher> i = ruleMatcherList.iterator(); i.hasNext();) {
-			RuleMatcher matcher = i.next();
-			while (matcher.getBreakPosition() <= end) {
+	private void moveMatchers(int position) {
+		int index;
+		while ((index = ruleMatcherQueue.getMinBreakIndex()) != -1) {
+			RuleMatcher matcher = ruleMatcherQueue.get(index);
+			if (matcher.getBreakPosition() > position) {
+				break;
+			}
+			while (matcher.getBreakPosition() <= position) {
 				matcher.find();
 				if (matcher.hitEnd()) {
-					i.remove();
 					break;
 				}
 			}
+			updateMatcher(index, matcher);
+		}
+		moveRuleSetMatcher(position);
+	}
+
+	/**
+	 * Moves rule set matcher to the next position if its break position 
+	 * is not greater than given position.
+	 * @param position position
+	 */
+	private void moveRuleSetMatcher(int position) {
+		if (ruleSetMatcher != null) {
+			while (!ruleSetMatcher.hitEnd() && 
+					ruleSetMatcher.getBreakPosition() <= position) {
+				ruleSetMatcher.find();
+			}
 		}
 	}
 
 	/**
 	 * Move matchers that start before previous segment end.
+	 * Pending matchers continue the search first, as their next match
+	 * may start after segment end.
+	 * Rule set matcher does not know where its matches start, 
+	 * so it is always restarted at segment end.
 	 */
 	private void cutMatchers() {
-		for (Iterator<RuleMatcher> i = ruleMatcherList.iterator(); i.hasNext();) {
-			RuleMatcher matcher = i.next();
-			if (matcher.getStartPosition() < end) {
+		int index;
+		while ((index = ruleMatcherQueue.getMinStartIndex()) != -1) {
+			RuleMatcher matcher = ruleMatcherQueue.get(index);
+			if (matcher.getStartPosition() >= end) {
+				break;
+			}
+			if (matcher.isPending()) {
+				matcher.find();
+			} else {
 				matcher.find(end);
-				if (matcher.hitEnd()) {
-					i.remove();
-				}
 			}
+			updateMatcher(index, matcher);
+		}
+		if (ruleSetMatcher != null && !ruleSetMatcher.hitEnd()) {
+			ruleSetMatcher.find(end);
+		}
+	}
+	
+	/**
+	 * Restores matcher queue order after matcher was moved, removes the 
+	 * matcher if it reached end of text.
+	 * @param index matcher index
+	 * @param matcher matcher
+	 */
+	private void updateMatcher(int index, RuleMatcher matcher) {
+		if (matcher.hitEnd()) {
+			ruleMatcherQueue.remove(index);
+		} else {
+			ruleMatcherQueue.update(index);
 		}
 	}
 
 	/**
-	 * @return first matcher in the text or null if there are no matchers
+	 * Returns index of the first rule matched in the text, either by
+	 * a rule matcher or by rule set matcher. If more rules match at the 
+	 * same position the first one in the rule list is returned.
+	 * Pending matchers continue the search until the first match is known.
+	 * @return break rule index or -1 if there are no matches
 	 */
-	private RuleMatcher getMinMatcher() {
-		int minPosition = Integer.MAX_VALUE;
-		RuleMatcher minMatcher = null;
-		for (RuleMatcher matcher : ruleMatcherList) {
-			if (matcher.getBreakPosition() < minPosition) {
-				minPosition = matcher.getBreakPosition();
-				minMatcher = matcher;
+	private int getMinIndex() {
+		int index;
+		while (true) {
+			index = ruleMatcherQueue.getMinBreakIndex();
+			if (index != -1 && ruleMatcherQueue.get(index).isPending()) {
+				RuleMatcher matcher = ruleMatcherQueue.get(index);
+				matcher.find();
+				updateMatcher(index, matcher);
+			} else if (ruleSetMatcher != null && ruleSetMatcher.isPending() &&
+					(index == -1 || ruleSetMatcher.getBreakPosition() <= 
+					getBreakPosition(index))) {
+				ruleSetMatcher.find();
+			} else {
+				break;
+			}
+		}
+		if (ruleSetMatcher != null && !ruleSetMatcher.hitEnd()) {
+			int setIndex = ruleSetMatcher.getRuleIndex();
+			int setPosition = ruleSetMatcher.getBreakPosition();
+			if (index == -1 || 
+					setPosition < getBreakPosition(index) ||
+					(setPosition == getBreakPosition(index) && 
+					setIndex < index)) {
+				index = setIndex;
 			}
 		}
-		return minMatcher;
+		return index;
 	}
 	
 	/**
-	 * Returns true if there are no exception rules preventing given
-	 * rule matcher from breaking the text.
-	 * @param ruleMatcher rule matcher
-	 * @return true if rule matcher breaks the text
+	 * @param index break rule index
+	 * @return break position of last match of given rule
 	 */
-	private boolean isException(RuleMatcher ruleMatcher) {
-		
-		Pattern pattern = 
-			ruleManager.getExceptionPattern(ruleMatcher.getRule());
-		
-		if (pattern != null) {
-			Matcher matcher = pattern.matcher(textManager.getText());
-			matcher.useTransparentBounds(true);
-			matcher.region(ruleMatcher.getBreakPosition(), 
-					textManager.getText().length());
-			return !matcher.lookingAt();
+	private int getBreakPosition(int index) {
+		RuleMatcher matcher = ruleMatcherQueue.get(index);
+		if (matcher != null) {
+			return matcher.getBreakPosition();
 		} else {
-			return true;
+			return ruleSetMatcher.getBreakPosition();
 		}
-
+	}
+	
+	/**
+	 * Returns true if there are no exception rules preventing given
+	 * rule from breaking the text at its last match.
+	 * @param index break rule index
+	 * @return true if rule breaks the text
+	 */
+	private boolean isException(int index) {
+		Rule rule = ruleManager.getBreakRuleList().get(index);
+		int exceptionCount = ruleManager.getExceptionCount(rule);
+		int exceptionIndex = exceptionMatcher.find(
+				getBreakPosition(index), exceptionCount);
+		return exceptionIndex == -1;
 	}
 	
 }
@@ -2,6 +2,7 @@ package net.loomchild.segment.srx;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
 import net.loomchild.segment.util.IORuntimeException;
 
@@ -9,18 +10,47 @@ import net.loomchild.segment.util.IORuntimeException;
  * Represents text manager.
  * Responsible for managing current text, reading more text from the reader
  * and checking if there is more text left.
+ * 
+ * When reading from the reader, current text is a window over a single
+ * character array, which is reused when more text is read: remaining 
+ * characters are moved to the beginning of the array and new characters 
+ * are read directly after them. The array starts small and grows while 
+ * initial text is read, up to the buffer length, so short inputs do not
+ * allocate the whole buffer.
+ * 
+ * By default text is read until the buffer is full or the end of input 
+ * is reached. In low latency mode reading stops as soon as the reader 
+ * returns some characters, so current text can be shorter than the buffer 
+ * even if there is more input, and more text can be read without deleting 
+ * current text, see {@link #readMore()}.
+ * 
  * @author loomchild
  */
 public class TextManager {
 	
-	private CharSequence text;
+	/**
+	 * Initial capacity of character array when reading from the reader.
+	 */
+	public static final int INITIAL_CAPACITY = 4096;
 	
-	int nextCharacter;
+	private CharSequence text;
 	
 	private Reader reader;
 	
 	private int bufferLength;
 	
+	private long offset;
+	
+	private char[] buffer;
+	
+	private int count;
+	
+	private int length;
+	
+	private boolean lowLatency;
+	
+	private boolean endOfInput;
+	
 	/** 
 	 * Creates text manager containing given text. Reading more text is not 
 	 * possible when using this constructor.
@@ -28,9 +58,14 @@ public class TextManager {
 	 */
 	public TextManager(CharSequence text) {
 		this.text = text;
-		this.nextCharacter = -1;
 		this.reader = null;
 		this.bufferLength = text.length();
+		this.offset = 0;
+		this.buffer = null;
+		this.count = text.length();
+		this.length = text.length();
+		this.lowLatency = false;
+		this.endOfInput = true;
 	}
 
 	/**
@@ -40,8 +75,10 @@ public class TextManager {
 	 * Text is not actually read until required (lazy initialization). 
 	 * @param reader
 	 * @param bufferLength read buffer size
+	 * @param lowLatency true if reading should stop as soon as some 
+	 * 		characters are available
 	 */
-	public TextManager(Reader reader, int bufferLength) {
+	public TextManager(Reader reader, int bufferLength, boolean lowLatency) {
 		if (bufferLength <= 0) {
 			throw new IllegalArgumentException("Buffer size: " + bufferLength + 
 					" must be positive.");
@@ -50,6 +87,23 @@ public class TextManager {
 		this.text = null;
 		this.reader = reader;
 		this.bufferLength = bufferLength;
+		this.offset = 0;
+		this.buffer = null;
+		this.count = 0;
+		this.length = 0;
+		this.lowLatency = lowLatency;
+		this.endOfInput = false;
+	}
+
+	/**
+	 * Creates text manager reading text from given reader until the buffer 
+	 * is full.
+	 * @see #TextManager(Reader, int, boolean)
+	 * @param reader
+	 * @param bufferLength read buffer size
+	 */
+	public TextManager(Reader reader, int bufferLength) {
+		this(reader, bufferLength, false);
 	}
 
 	public int getBufferLength() {
@@ -57,6 +111,16 @@ public class TextManager {
 	}
 	
 	/**
+	 * @return true if text is read from the reader
+	 */
+	public boolean isStreaming() {
+		return reader != null;
+	}
+	
+	/**
+	 * Returns current text. When reading from the reader, returned 
+	 * character sequence changes after {@link #readText(int)}; 
+	 * its subsequences are copies and do not change.
 	 * @return current text
 	 */
 	public CharSequence getText() {
@@ -65,11 +129,29 @@ public class TextManager {
 	}
 	
 	/**
+	 * @return position of current text in the whole input, equal to 
+	 * 		the number of characters deleted so far by {@link #readText(int)};
+	 * 		can exceed integer range when reading long streams
+	 */
+	public long getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * @return true if text is read in low latency mode
+	 */
+	public boolean isLowLatency() {
+		return lowLatency;
+	}
+	
+	/**
+	 * In low latency mode, more text can be read until the end of input 
+	 * is reached, even if no more characters have been read yet.
 	 * @return true if more text can be read
 	 */
 	public boolean hasMoreText() {
 		initText();
-		return nextCharacter != -1;
+		return count > length || (lowLatency && !endOfInput);
 	}
 	
 	/**
@@ -93,18 +175,61 @@ public class TextManager {
 			throw new IllegalStateException("No more text to read.");
 		}
 		
-		StringBuilder builder = new StringBuilder();
+		// Buffer is full here, so it also contains next character, 
+		// unless in low latency mode.
+		System.arraycopy(buffer, amount, buffer, 0, count - amount);
+		count -= amount;
+		read();
+		offset += amount;
+
+	}
+	
+	/**
+	 * Reads more text without deleting current text. Can be used only
+	 * when current text is shorter than the buffer, which happens in low 
+	 * latency mode.
+	 * @throws IllegalStateException if {@link #hasMoreText()} returns false 
+	 * 		or current text is as long as the buffer
+	 */
+	public void readMore() {
 		
-		// Text length is equal to buffer size so it is safe.
-		builder.append(text.subSequence(amount, text.length()));
+		initText();
 		
-		// Next character cannot be null here, so it is safe.
-		builder.append((char)nextCharacter);
+		if (!hasMoreText()) {
+			throw new IllegalStateException("No more text to read.");
+		}
+		if (length >= bufferLength) {
+			throw new IllegalStateException("Buffer is full.");
+		}
+		
+		read();
 		
-		builder.append(read(amount));
+	}
+	
+	/**
+	 * Increases buffer size and reads more text, so that current text 
+	 * becomes longer. Current text is not deleted.
+	 * @param bufferLength new buffer size
+	 * @throws IllegalArgumentException if new buffer size is not greater 
+	 * 		than current buffer size
+	 * @throws IllegalStateException if {@link #hasMoreText()} returns false
+	 */
+	public void growBuffer(int bufferLength) {
 		
-		text = builder.toString();
+		initText();
 
+		if (bufferLength <= this.bufferLength) {
+			throw new IllegalArgumentException("New buffer size: " + 
+					bufferLength + " must be greater than current buffer size: " + 
+					this.bufferLength + ".");
+		}
+		if (!hasMoreText()) {
+			throw new IllegalStateException("No more text to read.");
+		}
+		
+		this.bufferLength = bufferLength;
+		read();
+		
 	}
 	
 	/**
@@ -112,55 +237,76 @@ public class TextManager {
 	 */
 	private void initText() {
 		if (text == null) {
-			text = read(bufferLength + 1);
+			buffer = new char[Math.min(INITIAL_CAPACITY, bufferLength + 1)];
+			text = new BufferCharSequence();
+			read();
 		}
 	}
 	
 	/**
-	 * Reads the given amount of characters and returns them as a string. 
-	 * Updates {@link #nextCharacter} by reading one additional character.
-	 * @param amount amount to be read
-	 * @return read characters as a string
+	 * Reads characters until the buffer contains buffer length 
+	 * characters and one additional character, used to check if there is 
+	 * more text, or until the end of input. In low latency mode stops 
+	 * after the first read which returns some characters, unless it fills 
+	 * the buffer exactly. 
+	 * Grows the buffer if needed.
 	 */
-	private String read(int amount) {
-		char[] charBuffer = new char[amount];
-		int count = read(reader, charBuffer);
-		
-		String result;
-		if (count == amount) {
-			result = new String(charBuffer, 0, count - 1);
-			nextCharacter = charBuffer[count - 1];
-		} else if (count > 0 && count < amount) {
-			result = new String(charBuffer, 0, count);
-			nextCharacter = -1;
-		} else {
-			result = "";
-			nextCharacter = -1;
+	private void read() {
+		try {
+			while (count < bufferLength + 1 && !endOfInput) {
+				if (count == buffer.length) {
+					buffer = Arrays.copyOf(buffer, (int)Math.min(
+							2L * buffer.length, bufferLength + 1L));
+				}
+				// Reading from console returns after first end of line, 
+				// so reader is called until the buffer is full.
+				int result = reader.read(buffer, count, buffer.length - count);
+				if (result == -1) {
+					endOfInput = true;
+				} else if (result > 0) {
+					count += result;
+					// When the buffer is just full the additional character 
+					// is still read, so it is known if there is more text.
+					if (lowLatency && count != bufferLength) {
+						break;
+					}
+				}
+			}
+			length = Math.min(count, bufferLength);
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
 		}
-
-		return result;
 	}
 	
 	/**
-	 * Reads specified amount of characters. It is needed because when
-	 * reading from console {@link Reader#read(char[])} it returns 
-	 * after first end of line (probably it checks if characters are available).
-	 * @param reader input
-	 * @param buffer buffer where read characters will be stored
-	 * @return number of read characters
+	 * Represents current text stored in the buffer.
 	 */
-	private int read(Reader reader, char[] buffer) {
-		try {
-			int start = 0;
-			int count;
-			while (((count = reader.read(buffer, start, buffer.length - start)) != -1)
-					&& start < buffer.length) {
-				start += count;
+	private class BufferCharSequence implements CharSequence {
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index: " + index + 
+						", length: " + length + ".");
 			}
-			return start;
-		} catch (IOException e) {
-			throw new IORuntimeException(e);
+			return buffer[index];
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length || start > end) {
+				throw new IndexOutOfBoundsException("Start: " + start + 
+						", end: " + end + ", length: " + length + ".");
+			}
+			return new String(buffer, start, end - start);
+		}
+
+		public String toString() {
+			return new String(buffer, 0, length);
 		}
+
 	}
 	
 }
@@ -1,28 +1,41 @@
 package net.loomchild.segment.srx.legacy;
 
+import net.loomchild.segment.util.CompactCharSequence;
+
 /**
  * Represents character buffer with fixed capacity. 
  * Implements {@link CharSequence} methods and in addition queue methods.
+ * 
+ * Characters are stored on one byte each, like in 
+ * {@link net.loomchild.segment.util.CompactCharSequence}, until first 
+ * character outside Latin-1 range is enqueued. Then the buffer switches 
+ * to UTF-16 storage for the rest of its life.
+ * 
  * @author loomchild
  */
 public class Buffer implements CharSequence {
 
+	private byte[] bytes;
 	private char[] buffer;
+	private int capacity;
 	private int head;
 	private int size;
 
-	private Buffer(char[] buffer, int head, int size) {
+	private Buffer(byte[] bytes, char[] buffer, int capacity, int head, 
+			int size) {
+		this.bytes = bytes;
 		this.buffer = buffer;
+		this.capacity = capacity;
 		this.head = head;
 		this.size = size;
 	}
 
 	public Buffer(int capacity) {
-		this(new char[capacity], 0, 0);
+		this(new byte[capacity], null, capacity, 0, 0);
 	}
 
 	public int getCapacity() {
-		return buffer.length;
+		return capacity;
 	}
 
 	public void enqueue(char character) {
@@ -30,7 +43,7 @@ public class Buffer implements CharSequence {
 			throw new IllegalStateException(
 					"Not enough capacity to enqueue element");
 		} else {
-			buffer[(head + length()) % getCapacity()] = character;
+			put((head + length()) % getCapacity(), character);
 			++size;
 		}
 	}
@@ -52,7 +65,7 @@ public class Buffer implements CharSequence {
 	 * @param character
 	 */
 	public void forceEnqueue(char character) {
-		buffer[(head + length()) % getCapacity()] = character;
+		put((head + length()) % getCapacity(), character);
 		if (isFull()) {
 			head = (head + 1) % getCapacity();
 		} else {
@@ -69,8 +82,7 @@ public class Buffer implements CharSequence {
 			throw new IndexOutOfBoundsException("Buffer index " + index
 					+ " not in <0, " + length() + ").");
 		} else {
-			char character = buffer[(head + index) % getCapacity()];
-			return character;
+			return get((head + index) % getCapacity());
 		}
 	}
 
@@ -82,7 +94,7 @@ public class Buffer implements CharSequence {
 		} else {
 			int subHead = (head + start) % getCapacity();
 			int subSize = end - start;
-			return new Buffer(buffer, subHead, subSize);
+			return new Buffer(bytes, buffer, capacity, subHead, subSize);
 		}
 	}
 
@@ -90,12 +102,35 @@ public class Buffer implements CharSequence {
 		StringBuilder stringBuilder = new StringBuilder(size);
 		int position = head;
 		for (int i = 0; i < size; ++i) {
-			stringBuilder.append(buffer[position]);
+			stringBuilder.append(get(position));
 			position = (position + 1) % getCapacity();
 		}
 		return stringBuilder.toString();
 	}
 
+	private char get(int position) {
+		if (buffer == null) {
+			return (char)(bytes[position] & 0xff);
+		} else {
+			return buffer[position];
+		}
+	}
+
+	private void put(int position, char character) {
+		if (buffer == null && character > CompactCharSequence.MAX_LATIN1_CHAR) {
+			buffer = new char[capacity];
+			for (int i = 0; i < capacity; ++i) {
+				buffer[i] = (char)(bytes[i] & 0xff);
+			}
+			bytes = null;
+		}
+		if (buffer == null) {
+			bytes[position] = (byte)character;
+		} else {
+			buffer[position] = character;
+		}
+	}
+
 	private boolean isEmpty() {
 		return length() == 0;
 	}
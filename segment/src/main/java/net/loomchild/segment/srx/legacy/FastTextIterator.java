@@ -10,6 +10,7 @@ import java.util.regex.Pattern;
 
 import net.loomchild.segment.srx.LanguageRule;
 import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxDocumentCache;
 import net.loomchild.segment.srx.SrxTextIterator;
 import net.loomchild.segment.AbstractTextIterator;
 
@@ -59,14 +60,17 @@ public class FastTextIterator extends AbstractTextIterator {
 		List<LanguageRule> languageRuleList = document
 				.getLanguageRuleList(languageCode);
 		
-		String key = "MERGED_PATTERN_" + toString(languageRuleList) 
-				+ "_" + maxLookbehindConstructLength;
+		SrxDocumentCache.Key<MergedPattern> key = 
+			new SrxDocumentCache.Key<MergedPattern>(MergedPattern.class, 
+					languageRuleList, maxLookbehindConstructLength);
 
-		this.mergedPattern = (MergedPattern)document.getCache().get(key);
+		this.mergedPattern = document.getCache().get(key);
 		if (mergedPattern == null) {
+			long startTime = System.nanoTime();
 			mergedPattern = new MergedPattern(languageRuleList,
 					maxLookbehindConstructLength);
-			document.getCache().put(key, mergedPattern);
+			document.getCache().put(key, mergedPattern, 
+					System.nanoTime() - startTime);
 		}
 
 		if (mergedPattern.getBreakingPattern() != null) {
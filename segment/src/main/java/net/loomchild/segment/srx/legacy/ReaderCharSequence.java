@@ -9,6 +9,12 @@ import net.loomchild.segment.util.IORuntimeException;
  * Adapter of reader class to CharSequence interface. Due to behavior
  * differences CharSequence is not implemented perfectly.
  * 
+ * As CharSequence is indexed by integers, stream cannot be longer than 
+ * {@link #INFINITE_LENGTH}; if it is, an exception is thrown when the 
+ * limit is reached instead of silently ignoring the rest of the stream.
+ * Use {@link net.loomchild.segment.srx.SrxTextIterator} to segment
+ * longer streams.
+ * 
  * @author loomchild
  */
 public class ReaderCharSequence implements CharSequence {
@@ -170,18 +176,28 @@ public class ReaderCharSequence implements CharSequence {
 	}
 
 	private void readCharacter() {
-		int readResult;
-		try {
-			readResult = reader.read();
-		} catch (IOException e) {
-			throw new IORuntimeException(e);
-		}			
+		int readResult = read();
 		if (readResult == -1) {
 			length = position;
 		} else {
 			char character = (char)readResult;
 			buffer.forceEnqueue(character);
 			++position;
+			if (position == INFINITE_LENGTH && length == INFINITE_LENGTH) {
+				if (read() != -1) {
+					throw new IllegalStateException("Stream is longer than " + 
+							INFINITE_LENGTH + " characters.");
+				}
+				length = position;
+			}
+		}
+	}
+	
+	private int read() {
+		try {
+			return reader.read();
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
 		}
 	}
 
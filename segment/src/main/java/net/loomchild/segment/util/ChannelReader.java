@@ -0,0 +1,185 @@
+package net.loomchild.segment.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Represents reader decoding bytes read from a channel. Characters are
+ * decoded directly into the array passed to {@link #read(char[], int, int)},
+ * so when it is the buffer of streaming
+ * {@link net.loomchild.segment.srx.SrxTextIterator} no intermediate
+ * character buffers or strings are created. Only the bytes are buffered.
+ *
+ * Like {@link java.io.InputStreamReader}, reader returns as soon as some
+ * characters have been decoded, and replaces malformed input.
+ * Channel must be in blocking mode.
+ *
+ * @author loomchild
+ */
+public class ChannelReader extends Reader {
+
+	/**
+	 * Default length of the byte buffer.
+	 */
+	public static final int DEFAULT_BUFFER_LENGTH = 64 * 1024;
+
+	/**
+	 * Minimum length of the byte buffer. Must be enough to hold any
+	 * encoded character.
+	 */
+	public static final int MIN_BUFFER_LENGTH = 16;
+
+	private ReadableByteChannel channel;
+
+	private ByteBuffer buffer;
+
+	private CharsetDecoder decoder;
+
+	private boolean endOfInput;
+
+	private boolean finished;
+
+	private char leftover;
+
+	private boolean hasLeftover;
+
+	/**
+	 * Creates reader.
+	 * @param channel channel in blocking mode
+	 * @param charset input character set
+	 * @param bufferLength length of the byte buffer,
+	 * 		at least {@link #MIN_BUFFER_LENGTH}
+	 */
+	public ChannelReader(ReadableByteChannel channel, Charset charset,
+			int bufferLength) {
+		if (bufferLength < MIN_BUFFER_LENGTH) {
+			throw new IllegalArgumentException("Buffer length: " +
+					bufferLength + " must be at least " + MIN_BUFFER_LENGTH + ".");
+		}
+		this.channel = channel;
+		// Heap buffer, so the decoder can work on the arrays directly.
+		this.buffer = ByteBuffer.allocate(bufferLength);
+		this.buffer.flip();
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.endOfInput = false;
+		this.finished = false;
+		this.hasLeftover = false;
+	}
+
+	/**
+	 * Creates reader with default buffer length.
+	 * @see #ChannelReader(ReadableByteChannel, Charset, int)
+	 * @param channel channel in blocking mode
+	 * @param charset input character set
+	 */
+	public ChannelReader(ReadableByteChannel channel, Charset charset) {
+		this(channel, charset, DEFAULT_BUFFER_LENGTH);
+	}
+
+	/**
+	 * Creates reader reading from input stream.
+	 * @see #ChannelReader(ReadableByteChannel, Charset, int)
+	 * @param inputStream input stream
+	 * @param charset input character set
+	 */
+	public ChannelReader(InputStream inputStream, Charset charset) {
+		this(Channels.newChannel(inputStream), charset);
+	}
+
+	/**
+	 * Decodes available characters into given array part. Reads from
+	 * the channel only if no characters can be decoded from the bytes
+	 * already read.
+	 * @return number of read characters or -1 if end of input has been
+	 * 		reached
+	 */
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (channel == null) {
+			throw new IOException("Reader is closed.");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		CharBuffer charBuffer = CharBuffer.wrap(cbuf, off, len);
+		if (hasLeftover) {
+			charBuffer.put(leftover);
+			hasLeftover = false;
+		}
+		while (charBuffer.position() == off && !finished) {
+			CoderResult result = decoder.decode(buffer, charBuffer, endOfInput);
+			if (result.isOverflow() && charBuffer.position() == off) {
+				// Array is too short for a surrogate pair,
+				// second character is returned by the next call.
+				decodeSurrogatePair(charBuffer);
+			} else if (result.isUnderflow() && endOfInput) {
+				finished = decoder.flush(charBuffer).isUnderflow();
+			} else if (result.isUnderflow() && charBuffer.position() == off) {
+				fill();
+			} else if (result.isError()) {
+				result.throwException();
+			}
+		}
+		int count = charBuffer.position() - off;
+		if (count == 0) {
+			return -1;
+		} else {
+			return count;
+		}
+	}
+
+	/**
+	 * Closes the channel.
+	 */
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Reads bytes from the channel, preserving the undecoded ones.
+	 * Sets end of input flag if channel has been exhausted.
+	 */
+	private void fill() throws IOException {
+		buffer.compact();
+		try {
+			if (channel.read(buffer) == -1) {
+				endOfInput = true;
+			}
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Decodes surrogate pair, puts its first character in given buffer
+	 * and keeps the second one for later.
+	 * @param charBuffer buffer with space for a single character
+	 */
+	private void decodeSurrogatePair(CharBuffer charBuffer) throws IOException {
+		CharBuffer pair = CharBuffer.allocate(2);
+		CoderResult result = decoder.decode(buffer, pair, endOfInput);
+		if (result.isError()) {
+			result.throwException();
+		}
+		pair.flip();
+		charBuffer.put(pair.get());
+		if (pair.hasRemaining()) {
+			leftover = pair.get();
+			hasLeftover = true;
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package net.loomchild.segment.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Represents immutable character sequence occupying one byte per character
+ * if all the characters are in Latin-1 range (below 256), which is true
+ * for most of European texts. Otherwise characters are stored in UTF-16,
+ * like in a string.
+ *
+ * Subsequences share the characters with the original sequence.
+ * Sequence can be passed directly to any text iterator instead of
+ * a string, for example to keep whole preloaded text in memory.
+ *
+ * @author loomchild
+ */
+public final class CompactCharSequence implements CharSequence {
+
+	/**
+	 * Largest character stored on a single byte.
+	 */
+	public static final char MAX_LATIN1_CHAR = '\u00ff';
+
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private static final int READ_LENGTH = 8192;
+
+	private final byte[] bytes;
+
+	private final char[] chars;
+
+	private final int offset;
+
+	private final int length;
+
+	private CompactCharSequence(byte[] bytes, char[] chars, int offset,
+			int length) {
+		this.bytes = bytes;
+		this.chars = chars;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Creates compact copy of given character sequence.
+	 * @param sequence character sequence
+	 * @return compact character sequence
+	 */
+	public static CompactCharSequence valueOf(CharSequence sequence) {
+		if (sequence instanceof CompactCharSequence) {
+			return (CompactCharSequence)sequence;
+		}
+		int length = sequence.length();
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; ++i) {
+			char character = sequence.charAt(i);
+			if (character > MAX_LATIN1_CHAR) {
+				char[] chars = sequence.toString().toCharArray();
+				return new CompactCharSequence(null, chars, 0, length);
+			}
+			bytes[i] = (byte)character;
+		}
+		return new CompactCharSequence(bytes, null, 0, length);
+	}
+
+	/**
+	 * Reads all characters from given reader into compact character
+	 * sequence. As long as the characters are in Latin-1 range, they are
+	 * not kept in UTF-16 form, so reading takes about half of the memory
+	 * needed to read a string.
+	 * @param reader reader
+	 * @return compact character sequence
+	 * @throws IORuntimeException if IO error occurs
+	 */
+	public static CompactCharSequence read(Reader reader) {
+		try {
+			char[] buffer = new char[READ_LENGTH];
+			byte[] bytes = new byte[READ_LENGTH];
+			char[] chars = null;
+			int length = 0;
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				if (chars == null) {
+					if (length + count > bytes.length) {
+						bytes = Arrays.copyOf(bytes,
+								Math.max(bytes.length * 2, length + count));
+					}
+					for (int i = 0; i < count; ++i) {
+						char character = buffer[i];
+						if (character > MAX_LATIN1_CHAR) {
+							chars = inflate(bytes, length,
+									Math.max(bytes.length, length + count));
+							bytes = null;
+							break;
+						}
+						bytes[length + i] = (byte)character;
+					}
+				}
+				if (chars != null) {
+					if (length + count > chars.length) {
+						chars = Arrays.copyOf(chars,
+								Math.max(chars.length * 2, length + count));
+					}
+					System.arraycopy(buffer, 0, chars, length, count);
+				}
+				length += count;
+			}
+			if (bytes != null && bytes.length > length) {
+				bytes = Arrays.copyOf(bytes, length);
+			} else if (chars != null && chars.length > length) {
+				chars = Arrays.copyOf(chars, length);
+			}
+			return new CompactCharSequence(bytes, chars, 0, length);
+		} catch (IOException e) {
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return true if characters are stored on one byte each
+	 */
+	public boolean isLatin1() {
+		return bytes != null;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index
+					+ " not in <0, " + length + ").");
+		}
+		if (bytes != null) {
+			return (char)(bytes[offset + index] & 0xff);
+		} else {
+			return chars[offset + index];
+		}
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > length) {
+			throw new IndexOutOfBoundsException("Subsequence <" + start
+					+ ", " + end + ") not in <0, " + length + ").");
+		}
+		return new CompactCharSequence(bytes, chars, offset + start,
+				end - start);
+	}
+
+	public String toString() {
+		if (bytes != null) {
+			return new String(bytes, offset, length, LATIN1);
+		} else {
+			return new String(chars, offset, length);
+		}
+	}
+
+	/**
+	 * Converts bytes to characters.
+	 * @param bytes bytes
+	 * @param length number of bytes to convert
+	 * @param capacity length of the resulting array
+	 * @return character array
+	 */
+	private static char[] inflate(byte[] bytes, int length, int capacity) {
+		char[] chars = new char[capacity];
+		for (int i = 0; i < length; ++i) {
+			chars[i] = (char)(bytes[i] & 0xff);
+		}
+		return chars;
+	}
+
+}
@@ -0,0 +1,208 @@
+package net.loomchild.segment.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Represents reader decoding memory-mapped file. File is mapped in parts
+ * of limited length, so it can be longer than the largest possible
+ * mapping. Characters are decoded directly from the mapping into
+ * the array passed to {@link #read(char[], int, int)}, without
+ * intermediate buffers.
+ *
+ * Malformed input is reported as an exception instead of being replaced,
+ * so the number of bytes occupied by the decoded characters is known.
+ *
+ * @author loomchild
+ */
+public class MappedFileReader extends Reader {
+
+	/**
+	 * Default length of a single mapped part of the file.
+	 */
+	public static final int DEFAULT_MAP_LENGTH = 64 * 1024 * 1024;
+
+	/**
+	 * Minimum length of a single mapped part of the file. Must be enough
+	 * to hold any encoded character.
+	 */
+	public static final int MIN_MAP_LENGTH = 16;
+
+	private RandomAccessFile file;
+
+	private FileChannel channel;
+
+	private long size;
+
+	private int mapLength;
+
+	private long position;
+
+	private ByteBuffer buffer;
+
+	private CharsetDecoder decoder;
+
+	private boolean finished;
+
+	private char leftover;
+
+	private boolean hasLeftover;
+
+	/**
+	 * Creates reader.
+	 * @param file file
+	 * @param charset file character set
+	 * @param mapLength length of a single mapped part of the file, 
+	 * 		at least {@link #MIN_MAP_LENGTH}
+	 * @throws IOException if file cannot be opened
+	 */
+	public MappedFileReader(File file, Charset charset, int mapLength)
+			throws IOException {
+		if (mapLength < MIN_MAP_LENGTH) {
+			throw new IllegalArgumentException("Map length: " + mapLength +
+					" must be at least " + MIN_MAP_LENGTH + ".");
+		}
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		this.size = channel.size();
+		this.mapLength = mapLength;
+		this.position = 0;
+		this.buffer = null;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPORT)
+			.onUnmappableCharacter(CodingErrorAction.REPORT);
+		this.finished = false;
+		this.hasLeftover = false;
+	}
+
+	/**
+	 * Creates reader with default map length.
+	 * @see #MappedFileReader(File, Charset, int)
+	 * @param file file
+	 * @param charset file character set
+	 * @throws IOException if file cannot be opened
+	 */
+	public MappedFileReader(File file, Charset charset) throws IOException {
+		this(file, charset, DEFAULT_MAP_LENGTH);
+	}
+
+	/**
+	 * Decodes characters until given array part is full or the end
+	 * of file is reached.
+	 * @return number of read characters or -1 if end of file has been
+	 * 		reached
+	 * @throws java.nio.charset.CharacterCodingException if input is
+	 * 		malformed
+	 */
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (channel == null) {
+			throw new IOException("Reader is closed.");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		CharBuffer charBuffer = CharBuffer.wrap(cbuf, off, len);
+		if (hasLeftover) {
+			charBuffer.put(leftover);
+			hasLeftover = false;
+		}
+		while (charBuffer.hasRemaining() && !finished) {
+			if (buffer == null ||
+					(!buffer.hasRemaining() && !isLastPart())) {
+				map();
+			}
+			CoderResult result =
+				decoder.decode(buffer, charBuffer, isLastPart());
+			if (result.isOverflow() && charBuffer.hasRemaining()) {
+				// Remaining space is too short for a surrogate pair,
+				// second character is returned by the next call.
+				decodeSurrogatePair(charBuffer);
+			} else if (result.isUnderflow() && isLastPart()) {
+				result = decoder.flush(charBuffer);
+				finished = result.isUnderflow();
+			} else if (result.isUnderflow()) {
+				// Incomplete character at the end of the part is decoded
+				// from the next part, which starts at the first undecoded byte.
+				map();
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+		}
+		int count = charBuffer.position() - off;
+		if (count == 0) {
+			return -1;
+		} else {
+			return count;
+		}
+	}
+
+	/**
+	 * Closes the file. Mapped parts are released when they are
+	 * garbage collected.
+	 */
+	public void close() throws IOException {
+		if (channel != null) {
+			channel = null;
+			buffer = null;
+			file.close();
+		}
+	}
+
+	/**
+	 * @return number of bytes decoded so far, including the bytes of 
+	 * 		a surrogate pair whose second character has not been read yet
+	 */
+	public long getBytePosition() {
+		if (buffer == null) {
+			return 0;
+		} else {
+			return position + buffer.position();
+		}
+	}
+
+	/**
+	 * Decodes surrogate pair, puts its first character in given buffer
+	 * and keeps the second one for later.
+	 * @param charBuffer buffer with space for a single character
+	 */
+	private void decodeSurrogatePair(CharBuffer charBuffer) throws IOException {
+		CharBuffer pair = CharBuffer.allocate(2);
+		CoderResult result = decoder.decode(buffer, pair, isLastPart());
+		if (result.isError()) {
+			result.throwException();
+		}
+		pair.flip();
+		charBuffer.put(pair.get());
+		if (pair.hasRemaining()) {
+			leftover = pair.get();
+			hasLeftover = true;
+		}
+	}
+
+	/**
+	 * @return true if current part ends at the end of file
+	 */
+	private boolean isLastPart() {
+		return position + buffer.limit() == size;
+	}
+
+	/**
+	 * Maps next part of the file, starting at the first undecoded byte.
+	 */
+	private void map() throws IOException {
+		position = getBytePosition();
+		long length = Math.min(mapLength, size - position);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+	}
+
+}
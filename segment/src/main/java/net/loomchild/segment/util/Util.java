@@ -39,6 +39,7 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
 import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxDocumentCache;
 
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -491,12 +492,35 @@ public class Util {
 		return "(?<=" + Util.finitize(pattern, maxLenght) + ")";
 	}
 
+	/**
+	 * Compiles pattern with default flags.
+	 * @see #compile(SrxDocument, String, int)
+	 * @deprecated default flags are shared by all threads, 
+	 * 		use {@link #compile(SrxDocument, String, int)}
+	 */
+	@Deprecated
 	public static Pattern compile(SrxDocument document, String regex) {
-		String key = "PATTERN_" + regex;
-		Pattern pattern = (Pattern)document.getCache().get(key);
+		return compile(document, regex, Util.defaultPatternFlags);
+	}
+
+	/**
+	 * Compiles pattern or retrieves it from document cache. 
+	 * Patterns compiled with different flags are cached separately.
+	 * @param document SRX document
+	 * @param regex regular expression
+	 * @param flags pattern flags, see {@link Pattern#compile(String, int)}
+	 * @return compiled pattern
+	 */
+	public static Pattern compile(SrxDocument document, String regex, 
+			int flags) {
+		SrxDocumentCache.Key<Pattern> key = 
+			new SrxDocumentCache.Key<Pattern>(Pattern.class, regex, flags);
+		Pattern pattern = document.getCache().get(key);
 		if (pattern == null) {
-			pattern = Pattern.compile(regex, Util.defaultPatternFlags);
-			document.getCache().put(key, pattern);
+			long startTime = System.nanoTime();
+			pattern = Pattern.compile(regex, flags);
+			document.getCache().put(key, pattern, 
+					System.nanoTime() - startTime);
 		}
 		return pattern;
 	}
@@ -505,7 +529,12 @@ public class Util {
 	 * Set default compilation pattern flags.
 	 *
 	 * @param patternFlags
+	 * @deprecated default flags are shared by all threads and only used 
+	 * 		by {@link #compile(SrxDocument, String)}; pass flags to 
+	 * 		{@link #compile(SrxDocument, String, int)} or use 
+	 * 		{@link net.loomchild.segment.srx.SrxTextIterator#DEFAULT_PATTERN_FLAGS_PARAMETER}
 	 */
+	@Deprecated
 	public static void setDefaultPatternFlags(int defaultPatternFlags) {
 		Util.defaultPatternFlags = defaultPatternFlags;
 	}
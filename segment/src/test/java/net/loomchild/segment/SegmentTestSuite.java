@@ -1,12 +1,30 @@
 package net.loomchild.segment;
 
+import net.loomchild.segment.regex.AutomatonTest;
+import net.loomchild.segment.regex.PatternFilterTest;
+import net.loomchild.segment.regex.RegexTest;
+import net.loomchild.segment.regex.ReverseTrieTest;
+import net.loomchild.segment.regex.ReversedCharSequenceTest;
+import net.loomchild.segment.srx.FileSrxTextIteratorTest;
+import net.loomchild.segment.srx.ParallelSrxStreamTextIteratorTest;
+import net.loomchild.segment.srx.ParallelSrxTextIteratorTest;
+import net.loomchild.segment.srx.RuleManagerTest;
+import net.loomchild.segment.srx.RuleMatcherQueueTest;
 import net.loomchild.segment.srx.RuleMatcherTest;
+import net.loomchild.segment.srx.SrxBatchSegmenterTest;
+import net.loomchild.segment.srx.SrxDocumentCacheTest;
 import net.loomchild.segment.srx.SrxDocumentTest;
+import net.loomchild.segment.srx.SrxTextIteratorAutomatonReaderTest;
+import net.loomchild.segment.srx.SrxTextIteratorAutomatonStringTest;
 import net.loomchild.segment.srx.SrxTextIteratorReaderTest;
+import net.loomchild.segment.srx.SrxTextIteratorResetTest;
+import net.loomchild.segment.srx.SrxTextIteratorReverseExceptionTest;
 import net.loomchild.segment.srx.SrxTextIteratorStringTest;
 import net.loomchild.segment.srx.io.SrxVersionTest;
 import net.loomchild.segment.srx.legacy.BufferTest;
 import net.loomchild.segment.srx.legacy.ReaderMatcherTest;
+import net.loomchild.segment.util.ChannelReaderTest;
+import net.loomchild.segment.util.CompactCharSequenceTest;
 import net.loomchild.segment.util.UtilTest;
 import net.loomchild.segment.srx.LanguageMapTest;
 import net.loomchild.segment.srx.TextManagerTest;
@@ -25,15 +43,33 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	LanguageMapTest.class, 
 	SrxDocumentTest.class,
+	SrxDocumentCacheTest.class,
 	TextManagerTest.class,
 	SrxVersionTest.class,
 	SrxParsersTest.class, 
 	SrxTransformersTest.class,
 	UtilTest.class,
+	ChannelReaderTest.class,
+	CompactCharSequenceTest.class,
 	SrxTextIteratorStringTest.class,
 	SrxTextIteratorReaderTest.class,
+	SrxTextIteratorAutomatonStringTest.class,
+	SrxTextIteratorAutomatonReaderTest.class,
+	SrxTextIteratorReverseExceptionTest.class,
+	SrxTextIteratorResetTest.class,
+	ParallelSrxTextIteratorTest.class,
+	ParallelSrxStreamTextIteratorTest.class,
+	FileSrxTextIteratorTest.class,
+	SrxBatchSegmenterTest.class,
 
 	RuleMatcherTest.class,
+	RuleMatcherQueueTest.class,
+	RuleManagerTest.class,
+	RegexTest.class,
+	PatternFilterTest.class,
+	ReverseTrieTest.class,
+	AutomatonTest.class,
+	ReversedCharSequenceTest.class,
 	BufferTest.class,
 	ReaderCharSequenceTest.class,
 	ReaderMatcherTest.class,
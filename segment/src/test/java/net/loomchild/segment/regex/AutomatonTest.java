@@ -0,0 +1,177 @@
+package net.loomchild.segment.regex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class AutomatonTest {
+
+	@Test
+	public void testRegular() {
+		assertTrue(new Regex("(?:Mr|Dr)\\.", 0).isRegular());
+		assertTrue(new Regex("[\\.\\?!]+", 0).isRegular());
+		assertTrue(new Regex("a{2,5}?b*", 0).isRegular());
+		assertTrue(new Regex("(?i)abc", 0).isRegular());
+		assertTrue(new Regex("", 0).isRegular());
+		assertFalse(new Regex("^a", 0).isRegular());
+		assertFalse(new Regex("\\ba", 0).isRegular());
+		assertFalse(new Regex("(?<=a)b", 0).isRegular());
+		assertFalse(new Regex("(a)\\1", 0).isRegular());
+		assertFalse(new Regex("(?>a|ab)", 0).isRegular());
+		assertFalse(new Regex("a++", 0).isRegular());
+		assertFalse(new Regex("(?:a|bc){1000}x{9000}", 0).isRegular());
+	}
+
+	@Test
+	public void testFind() {
+		Automaton automaton = createAutomaton(false, "(?:Mr|Dr)\\.", 
+				"\\.", "x*");
+		String text = "Mr. Dr.x";
+		AutomatonMatcher matcher = automaton.matcher(text);
+		assertFind(new int[] {2}, 0, matcher);
+		assertFind(new int[] {2}, 1, matcher);
+		assertFind(new int[] {2}, 2, matcher);
+		assertFind(new int[] {0, 1, 2}, 3, matcher);
+		assertFind(new int[] {2}, 4, matcher);
+		assertFind(new int[] {2}, 5, matcher);
+		assertFind(new int[] {2}, 6, matcher);
+		assertFind(new int[] {0, 1, 2}, 7, matcher);
+		assertFind(new int[] {2}, 8, matcher);
+		assertFalse(matcher.find());
+		
+		matcher.reset(5);
+		assertFind(new int[] {2}, 5, matcher);
+		assertFind(new int[] {2}, 6, matcher);
+		assertFind(new int[] {1, 2}, 7, matcher);
+	}
+
+	@Test
+	public void testFindAllMatches() {
+		Automaton automaton = createAutomaton(false, "\\.\\.", "a+?");
+		String text = "....aa";
+		AutomatonMatcher matcher = automaton.matcher(text);
+		assertFind(new int[] {0}, 2, matcher);
+		assertFind(new int[] {0}, 3, matcher);
+		assertFind(new int[] {0}, 4, matcher);
+		assertFind(new int[] {1}, 5, matcher);
+		assertFind(new int[] {1}, 6, matcher);
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindWithLimit() {
+		Automaton automaton = createAutomaton(false, "\\.\\.", "a+?");
+		String text = "....aa";
+		AutomatonMatcher matcher = automaton.matcher(text);
+		assertFalse(matcher.find(1));
+		assertFalse(matcher.hitEnd());
+		assertEquals(1, matcher.end());
+		assertTrue(matcher.find(4));
+		assertEquals(2, matcher.end());
+		assertTrue(matcher.find(4));
+		assertTrue(matcher.find(4));
+		assertEquals(4, matcher.end());
+		assertFalse(matcher.find(4));
+		assertFalse(matcher.hitEnd());
+		assertTrue(matcher.find(6));
+		assertEquals(5, matcher.end());
+		assertTrue(matcher.find(6));
+		assertFalse(matcher.find(6));
+		assertTrue(matcher.hitEnd());
+	}
+
+	@Test
+	public void testSupplementary() {
+		String text = "a\uD835\uDC00b";
+		AutomatonMatcher matcher = 
+			createAutomaton(false, "a.b").matcher(text);
+		assertFind(new int[] {0}, 4, matcher);
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testLookingAt() {
+		Automaton automaton = createAutomaton(true, "\\s+\\p{Lu}", "(?i)x");
+		String text = "a  Bx";
+		assertFalse(automaton.lookingAt(text, 0));
+		assertTrue(automaton.lookingAt(text, 1));
+		assertFalse(automaton.lookingAt(text, 3));
+		assertTrue(automaton.lookingAt(text, 4));
+		assertFalse(automaton.lookingAt(text, 5));
+		assertTrue(createAutomaton(true, "").lookingAt(text, 5));
+	}
+
+	@Test
+	public void testStateLimit() {
+		Automaton automaton = createAutomaton(false, "a[ab]{12}");
+		Pattern pattern = Pattern.compile("(?<=a[ab]{12})");
+		StringBuilder text = new StringBuilder();
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; ++i) {
+			text.append(random.nextBoolean() ? 'a' : 'b');
+		}
+		AutomatonMatcher matcher = automaton.matcher(text);
+		Matcher expectedMatcher = pattern.matcher(text);
+		while (expectedMatcher.find()) {
+			assertTrue(matcher.find());
+			assertEquals(expectedMatcher.start(), matcher.end());
+		}
+		assertFalse(matcher.find());
+		assertTrue(getReachableStateCount(automaton) <= 
+				Automaton.MAX_STATE_COUNT);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testLookingAtUnanchored() {
+		createAutomaton(false, "a").lookingAt("a", 0);
+	}
+
+	private Automaton createAutomaton(boolean anchored, String... patterns) {
+		List<Regex> regexList = new ArrayList<Regex>();
+		for (String pattern : patterns) {
+			regexList.add(new Regex(pattern, 0));
+		}
+		return new Automaton(regexList, anchored);
+	}
+
+	private int getReachableStateCount(Automaton automaton) {
+		Set<Automaton.State> stateSet = 
+			Collections.newSetFromMap(new IdentityHashMap<Automaton.State, Boolean>());
+		List<Automaton.State> stateList = new ArrayList<Automaton.State>();
+		stateList.add(automaton.getInitialState());
+		while (!stateList.isEmpty()) {
+			Automaton.State state = stateList.remove(stateList.size() - 1);
+			if (stateSet.add(state)) {
+				for (Automaton.State[] page : state.pages) {
+					if (page != null) {
+						for (Automaton.State nextState : page) {
+							if (nextState != null) {
+								stateList.add(nextState);
+							}
+						}
+					}
+				}
+			}
+		}
+		return stateSet.size();
+	}
+
+	private void assertFind(int[] ids, int end, AutomatonMatcher matcher) {
+		assertTrue(matcher.find());
+		assertEquals(end, matcher.end());
+		assertArrayEquals(ids, matcher.getIds());
+	}
+
+}
@@ -0,0 +1,59 @@
+package net.loomchild.segment.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class PatternFilterTest {
+
+	@Test
+	public void testCreate() {
+		assertNotNull(createFilter("(?:Mr|Dr|Prof)\\."));
+		assertNotNull(createFilter("\\n"));
+		assertNull(createFilter("\\w+"));
+		assertNull(createFilter("[\\.\\?!]+"));
+		assertNull(createFilter("\\bMr\\."));
+		assertNull(createFilter("a?"));
+	}
+
+	@Test
+	public void testFind() {
+		PatternFilter filter = createFilter("(?:Mr|Dr|Prof)\\.");
+		String text = "Mr. Smith met Prof. Brown.";
+		assertEquals(0, filter.find(text, 0, text.length()));
+		assertEquals(14, filter.find(text, 1, text.length()));
+		assertEquals(-1, filter.find(text, 15, text.length()));
+		assertEquals(-1, filter.find(text, 1, 18));
+	}
+
+	@Test
+	public void testNoMatchSkipped() {
+		String[] patterns = new String[] {"(?:Mr|Dr|Prof)\\.", "[a-z]{2}[\\.!]", 
+				"(?i)e\\.g\\.", "x(?:y|\\.)"};
+		String text = "Mr. Smith, Dr.Prof. x.e.g. E.G.! ab.Mrs. xy. MR.";
+		for (String patternString : patterns) {
+			Pattern pattern = Pattern.compile(patternString);
+			PatternFilter filter = 
+				PatternFilter.create(new Regex(patternString, 0));
+			assertNotNull(filter);
+			Matcher matcher = pattern.matcher(text);
+			int position = 0;
+			while (matcher.find()) {
+				int start = filter.find(text, position, text.length());
+				assertTrue(start != -1 && start <= matcher.start());
+				position = matcher.end();
+			}
+		}
+	}
+	
+	private PatternFilter createFilter(String pattern) {
+		return PatternFilter.create(new Regex(pattern, 0));
+	}
+
+}
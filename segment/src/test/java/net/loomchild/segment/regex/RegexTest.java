@@ -0,0 +1,204 @@
+package net.loomchild.segment.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class RegexTest {
+
+	@Test
+	public void testLength() {
+		assertLength(1, Regex.INFINITY, "[\\.\\?!]+");
+		assertLength(3, 3, "Mr\\.");
+		assertLength(2, 3, "(?:x|yy?)\\.");
+		assertLength(0, 1, "a?");
+		assertLength(2, 10, "(ab){1,5}");
+		assertLength(1, 1, "x(?=yyy)");
+		assertLength(0, 0, "\\b");
+		assertLength(1, 2, ".");
+		assertLength(2, Regex.INFINITY, "(a)\\1\\.");
+		assertLength(3, 3, "\\Qa.b\\E");
+		assertLength(2, 2, "\\Qa*\\E");
+		assertLength(3, 3, "\\Qab?\\E");
+		assertLength(1, 2, "\\Qab\\E?");
+		assertLength(2, 2, "[]a][a-c&&[b]]");
+	}
+	
+	@Test
+	public void testBoundarySensitive() {
+		assertFalse(new Regex("[\\.\\?!]+", 0).isBoundarySensitive());
+		assertFalse(new Regex("a$", 0).isBoundarySensitive());
+		assertFalse(new Regex("a(?=b)", 0).isBoundarySensitive());
+		assertTrue(new Regex("^a", 0).isBoundarySensitive());
+		assertTrue(new Regex("\\bMr\\.", 0).isBoundarySensitive());
+		assertTrue(new Regex("(?<=a)b", 0).isBoundarySensitive());
+		assertTrue(new Regex("a(?=(?<!b)c)", 0).isBoundarySensitive());
+	}
+
+	@Test
+	public void testCharacterSets() {
+		Regex regex = new Regex("(?:Mr|dr)?[\\.!]", 0);
+		assertTrue(regex.getFirstSet().contains('M'));
+		assertTrue(regex.getFirstSet().contains('d'));
+		assertTrue(regex.getFirstSet().contains('.'));
+		assertFalse(regex.getFirstSet().contains('r'));
+		assertTrue(regex.getLastSet().contains('!'));
+		assertFalse(regex.getLastSet().contains('r'));
+		
+		regex = new Regex("(?i)m(?-i:r)", 0);
+		assertTrue(regex.getFirstSet().contains('m'));
+		assertTrue(regex.getFirstSet().contains('M'));
+		assertTrue(regex.getLastSet().contains('r'));
+		assertFalse(regex.getLastSet().contains('R'));
+		
+		regex = new Regex("m", Pattern.CASE_INSENSITIVE);
+		assertTrue(regex.getFirstSet().contains('M'));
+	}
+
+	@Test
+	public void testLiterals() {
+		assertLiterals(new String[] {"Mr."}, "Mr\\.");
+		assertLiterals(new String[] {"Mr.", "Dr.", "Prof."}, 
+				"(?:Mr|Dr|Prof)\\.");
+		assertLiterals(new String[] {"e.g."}, "\\Qe.g.\\E");
+		assertLiterals(new String[] {"a*"}, "\\Qa*\\E");
+		assertLiterals(new String[] {"ab?", "ab{2}"}, "\\Qab?\\E|\\Qab{2}\\E");
+		assertLiterals(new String[] {"z.B.", "z. B."}, "z\\. ?B\\.");
+		assertLiterals(new String[] {"."}, "(?i)\\.");
+		assertLiterals(new String[] {""}, "");
+		assertLiterals(null, "[A-Z]\\.");
+		assertLiterals(null, "(?i)mr\\.");
+		assertLiterals(null, "a+");
+		assertLiterals(null, "a?+");
+		assertLiterals(null, "(?>a|ab)");
+		assertLiterals(null, "[ab]{1,10}");
+	}
+
+	@Test
+	public void testReverse() {
+		assertReverse("\\.rM", "Mr\\.");
+		assertReverse("\\.(?:rM|rD|forP)", "(?:Mr|Dr|Prof)\\.");
+		assertReverse("(?i)cb+a", "(?i)ab+c");
+		assertReverse("(?i:\\.[a-z]{1,3}\\b)\\s", "\\s(?i:\\b[a-z]{1,3}\\.)");
+		assertReverse("b(?<=a)", "(?=a)b");
+		assertReverse("(?!a)b", "b(?<!a)");
+		assertReverse("ba\\z", "\\Aab");
+		assertReverse("\\.cb\\.a", "\\Qa.bc.\\E");
+		assertReverse("\\*a", "\\Qa*\\E");
+		assertReverse("\\+\\?ba", "\\Qab?+\\E");
+		assertReverse("b?a", "\\Qab\\E?");
+		assertReverse("", "");
+		assertNotReversible("(a)\\1");
+		assertNotReversible("(?>ab|a)");
+		assertNotReversible("a++");
+		assertNotReversible("^a");
+		assertNotReversible("a(?i)b");
+	}
+
+	@Test
+	public void testMaxReadLength() {
+		assertEquals(1, new Regex("\\s", 0).getMaxReadLength());
+		assertEquals(4, new Regex("x(?=yyy)", 0).getMaxReadLength());
+		assertEquals(5, new Regex("(?:ab){1,2}(?=c)", 0).getMaxReadLength());
+		assertEquals(2, new Regex("a$", 0).getMaxReadLength());
+		assertEquals(1, new Regex("(?i)a", 0).getMaxReadLength());
+		assertEquals(Regex.INFINITY, 
+				new Regex("(?=\\s+)", 0).getMaxReadLength());
+	}
+
+	@Test
+	public void testLookbehindPattern() {
+		assertLookbehind("\\s", "\\s+");
+		assertLookbehind("", "\\s*");
+		assertLookbehind("a{2}b", "a{2,}b");
+		assertLookbehind("(?:b)(?:a?b){2}", "(?:a?b){3,}");
+		assertLookbehind("a\\s{1,10}b", "a\\s+b");
+		assertLookbehind("(?i)x", "(?i)\\s*x");
+		assertLookbehind("(?:ab|b)a{0,10}", "(?:ab|b)+a*");
+		assertLookbehind("\\ba{1,10}", "\\ba+");
+		assertLookbehind("(?<=x{0,10})a", "[ab]*(?<=x*)a");
+		assertLookbehind("(a)\\1{1,10}", "(a)\\1+");
+		assertLookbehind("a{1,10}+", "a++");
+		assertLookbehind("x{20}", "x{20,}");
+		assertLookbehind("a\\*", "\\Qa*\\E");
+		assertLookbehind("ab\\?", "\\Qab?\\E");
+		assertLookbehind("a", "\\Qa\\E+");
+	}
+
+	@Test
+	public void testOverlapFree() {
+		assertTrue(new Regex("", 0).isOverlapFree(100));
+		assertTrue(new Regex("(?:)", 0).isOverlapFree(100));
+		assertTrue(new Regex("\\s", 0).isOverlapFree(100));
+		assertTrue(new Regex("[\\.?!]", 0).isOverlapFree(100));
+		assertTrue(new Regex("(?:Mr|Dr|Prof)\\.", 0).isOverlapFree(100));
+		assertTrue(new Regex("ab|cd", 0).isOverlapFree(100));
+		assertFalse(new Regex("[0-9]+", 0).isOverlapFree(100));
+		assertFalse(new Regex("ab|a", 0).isOverlapFree(100));
+		assertFalse(new Regex("a?", 0).isOverlapFree(100));
+		assertFalse(new Regex("aa", 0).isOverlapFree(100));
+		assertFalse(new Regex("abc|cd", 0).isOverlapFree(100));
+		assertFalse(new Regex("abc|b", 0).isOverlapFree(100));
+		assertFalse(new Regex(".", Pattern.DOTALL).isOverlapFree(100));
+		assertFalse(new Regex("[A-Z]\\.", 0).isOverlapFree(100));
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertUnsupported("a\\Rb", 0);
+		assertUnsupported("a b", Pattern.COMMENTS);
+		assertUnsupported("(?x)a b", 0);
+		assertUnsupported("a{2}{3}", 0);
+	}
+	
+	private void assertLength(int minLength, int maxLength, String pattern) {
+		Regex regex = new Regex(pattern, 0);
+		assertEquals(minLength, regex.getMinLength());
+		assertEquals(maxLength, regex.getMaxLength());
+	}
+	
+	private void assertLiterals(String[] literals, String pattern) {
+		List<String> literalList = new Regex(pattern, 0).getLiterals(100);
+		if (literals == null) {
+			assertNull(literalList);
+		} else {
+			assertEquals(Arrays.asList(literals), literalList);
+		}
+	}
+	
+	private void assertReverse(String reversed, String pattern) {
+		assertEquals(reversed, new Regex(pattern, 0).getReversedPattern());
+	}
+
+	private void assertLookbehind(String lookbehind, String pattern) {
+		assertEquals(lookbehind, 
+				new Regex(pattern, 0).getLookbehindPattern(10));
+	}
+
+	private void assertNotReversible(String pattern) {
+		try {
+			new Regex(pattern, 0).getReversedPattern();
+			fail("Pattern should not be reversible: " + pattern);
+		} catch (UnsupportedRegexException e) {
+			// OK
+		}
+	}
+
+	private void assertUnsupported(String pattern, int flags) {
+		try {
+			new Regex(pattern, flags);
+			fail("Pattern should not be supported: " + pattern);
+		} catch (UnsupportedRegexException e) {
+			// OK
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package net.loomchild.segment.regex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ReverseTrieTest {
+
+	@Test
+	public void testFind() {
+		ReverseTrie trie = new ReverseTrie();
+		trie.add("Mr.", 0);
+		trie.add("Mrs.", 1);
+		trie.add("rs.", 2);
+		trie.add("Dr.", 3);
+		trie.add("Mr.", 4);
+		trie.add("", 5);
+		trie.add("Mr.", 0);
+		assertEquals(6, trie.getSize());
+		
+		String text = "Mrs. Smith and Mr. Who.";
+		int[] ids = new int[trie.getSize()];
+		
+		assertArrayEquals(new int[] {1, 2, 5}, find(trie, text, 4, ids));
+		assertArrayEquals(new int[] {0, 4, 5}, find(trie, text, 18, ids));
+		assertArrayEquals(new int[] {5}, find(trie, text, 23, ids));
+		assertArrayEquals(new int[] {5}, find(trie, text, 0, ids));
+	}
+	
+	private int[] find(ReverseTrie trie, String text, int end, int[] ids) {
+		int count = trie.find(text, end, ids);
+		int[] result = Arrays.copyOf(ids, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+}
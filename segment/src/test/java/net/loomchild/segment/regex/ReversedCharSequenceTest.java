@@ -0,0 +1,52 @@
+package net.loomchild.segment.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class ReversedCharSequenceTest {
+
+	@Test
+	public void testReverse() {
+		ReversedCharSequence text = new ReversedCharSequence("abc");
+		assertEquals(3, text.length());
+		assertEquals('c', text.charAt(0));
+		assertEquals('a', text.charAt(2));
+		assertEquals("cba", text.toString());
+		assertEquals("ba", text.subSequence(1, 3).toString());
+		assertEquals("b", text.subSequence(1, 3).subSequence(0, 1).toString());
+	}
+
+	@Test
+	public void testSupplementary() {
+		String string = "a\uD835\uDC00b";
+		ReversedCharSequence text = new ReversedCharSequence(string);
+		assertEquals("b\uD835\uDC00a", text.toString());
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < text.length(); ++i) {
+			builder.append(text.charAt(i));
+		}
+		assertEquals("b\uD835\uDC00a", builder.toString());
+		assertEquals("\uD835\uDC00a", 
+				new ReversedCharSequence(string, 0, 3).toString());
+	}
+	
+	@Test
+	public void testMatch() {
+		String string = "Mr. Smith and Mrs. Brown.";
+		Pattern pattern = 
+			Pattern.compile(new Regex("M[a-z]+\\.", 0).getReversedPattern());
+		ReversedCharSequence text = new ReversedCharSequence(string);
+		Matcher matcher = pattern.matcher(text);
+		matcher.region(text.length() - 3, text.length());
+		assertTrue(matcher.lookingAt());
+		matcher.region(text.length() - 18, text.length());
+		assertTrue(matcher.lookingAt());
+		assertEquals(text.length() - 14, matcher.end());
+	}
+	
+}
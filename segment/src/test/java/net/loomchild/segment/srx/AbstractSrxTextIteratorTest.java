@@ -1,11 +1,13 @@
 package net.loomchild.segment.srx;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.loomchild.segment.BoundaryIterator;
 import net.loomchild.segment.TextIterator;
 
 import org.junit.Test;
@@ -621,6 +623,39 @@ public abstract class AbstractSrxTextIteratorTest {
 	}
 	
 	
+	public static final String[] LITERAL_EXCEPTION_RULES_RESULT = new String[] {
+		"Mr. Smith met Dr.", " Who!", " Hey! A.", " B."
+	};
+
+	public static final SrxDocument LITERAL_EXCEPTION_RULES_DOCUMENT =
+		createLiteralExceptionRulesDocument();
+
+	public static SrxDocument createLiteralExceptionRulesDocument() {
+		LanguageRule languageRule = new LanguageRule("");
+
+		languageRule.addRule(new Rule(false, "Mr\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		languageRule.addRule(new Rule(false, "(?:Dr|Prof)\\.", "\\s"));
+		languageRule.addRule(new Rule(false, "Hey!", ""));
+		languageRule.addRule(new Rule(false, "[A-Z]\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "!", ""));
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+
+		return document;
+	}
+
+	/**
+	 * Checks if literal and non-literal exception rules are applied
+	 * only to the break rules that follow them.
+	 */
+	@Test
+	public void testLiteralExceptionRules() {
+		performTest(LITERAL_EXCEPTION_RULES_RESULT, 
+				LITERAL_EXCEPTION_RULES_DOCUMENT);
+	}
+	
+	
 	/**
 	 * Create text iterator. This method needs to be implemented by inheriting.
 	 * @param document SRX document
@@ -648,6 +683,34 @@ public abstract class AbstractSrxTextIteratorTest {
 		
 		String[] segmentArray = segmentList.toArray(new String[segmentList.size()]); 
 		assertEquals(expectedResult, segmentArray);
+
+		textIterator = getTextIterator(document, languageCode, text);
+		if (textIterator instanceof BoundaryIterator) {
+			int[] boundaryArray = getBoundaries((BoundaryIterator)textIterator);
+			assertArrayEquals(getBoundaries(expectedResult), boundaryArray);
+		}
+	}
+
+	protected int[] getBoundaries(BoundaryIterator boundaryIterator) {
+		List<Integer> boundaryList = new ArrayList<Integer>();
+		while (boundaryIterator.hasNext()) {
+			boundaryList.add(boundaryIterator.nextBoundary());
+		}
+		int[] boundaryArray = new int[boundaryList.size()];
+		for (int i = 0; i < boundaryArray.length; ++i) {
+			boundaryArray[i] = boundaryList.get(i);
+		}
+		return boundaryArray;
+	}
+
+	protected int[] getBoundaries(String[] segmentArray) {
+		int[] boundaryArray = new int[segmentArray.length];
+		int position = 0;
+		for (int i = 0; i < segmentArray.length; ++i) {
+			position += segmentArray[i].length();
+			boundaryArray[i] = position;
+		}
+		return boundaryArray;
 	}
 
 	protected List<String> segment(TextIterator textIterator) {
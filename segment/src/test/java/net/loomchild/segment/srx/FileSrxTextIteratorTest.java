@@ -0,0 +1,134 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+import net.loomchild.segment.util.IORuntimeException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileSrxTextIteratorTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+	private static final String TEXT = "Zdanie pierwsze. " +
+		"\u0179d\u017ab\u0142o \u017c\u00f3\u0142te. " +
+		"\u0414\u0432\u0430 \u043f\u0440\u0435\u0434\u043b\u043e" +
+		"\u0436\u0435\u043d\u0438\u044f. \ud834\udd1e Muzyka. " +
+		"\u6f22\u5b57\u3067\u3059. Ostatnie zdanie";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("segment", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Tests if segments are the same as when segmenting a string and
+	 * if byte positions are correct, also when encoded characters
+	 * cross mapped part boundaries.
+	 */
+	@Test
+	public void testUtf8() throws IOException {
+		performTest(UTF_8);
+	}
+
+	/**
+	 * Tests if byte order mark is counted only once.
+	 */
+	@Test
+	public void testUtf16() throws IOException {
+		performTest(UTF_16);
+	}
+
+	@Test(expected=IORuntimeException.class)
+	public void testMalformedInput() throws IOException {
+		write(new byte[] {'a', '.', ' ', (byte)0xff, 'b', '.'});
+		FileSrxTextIterator iterator = new FileSrxTextIterator(
+				createDocument(), "", file, UTF_8, createParameterMap());
+		try {
+			while (iterator.hasNext()) {
+				iterator.next();
+			}
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private void performTest(Charset charset) throws IOException {
+		write(TEXT.getBytes(charset.name()));
+		SrxDocument document = createDocument();
+		List<String> expectedSegmentList = new ArrayList<String>();
+		TextIterator stringIterator = new SrxTextIterator(document, "", TEXT);
+		while (stringIterator.hasNext()) {
+			expectedSegmentList.add(stringIterator.next());
+		}
+
+		FileSrxTextIterator iterator = new FileSrxTextIterator(document, "",
+				file, charset, createParameterMap());
+		try {
+			List<String> segmentList = new ArrayList<String>();
+			StringBuilder text = new StringBuilder();
+			while (iterator.hasNext()) {
+				String segment = iterator.next();
+				segmentList.add(segment);
+				text.append(segment);
+				assertEquals(text.length(), iterator.getCharPosition());
+				assertEquals(text.toString().getBytes(charset.name()).length,
+						iterator.getBytePosition());
+			}
+			assertFalse(iterator.hasNext());
+			assertEquals(expectedSegmentList, segmentList);
+			assertEquals(file.length(), iterator.getBytePosition());
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private SrxDocument createDocument() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+
+	private Map<String, Object> createParameterMap() {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.BUFFER_LENGTH_PARAMETER, 40);
+		parameterMap.put(SrxTextIterator.MARGIN_PARAMETER, 10);
+		parameterMap.put(FileSrxTextIterator.MAP_LENGTH_PARAMETER, 16);
+		return parameterMap;
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(bytes);
+		} finally {
+			stream.close();
+		}
+	}
+
+}
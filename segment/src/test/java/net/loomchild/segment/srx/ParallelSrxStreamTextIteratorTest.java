@@ -0,0 +1,96 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelSrxStreamTextIteratorTest extends AbstractSrxTextIteratorTest {
+	
+	private static ExecutorService executorService;
+	
+	@BeforeClass
+	public static void setUpExecutor() {
+		executorService = Executors.newFixedThreadPool(4);
+	}
+	
+	@AfterClass
+	public static void tearDownExecutor() {
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Hard boundary does not occur in test texts, so each text is a single
+	 * unit.
+	 */
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(ParallelSrxStreamTextIterator.HARD_BOUNDARY_PARAMETER, 
+				"\\f");
+		return new ParallelSrxStreamTextIterator(document, languageCode, 
+				new StringReader(text), parameterMap, executorService);
+	}
+	
+	/**
+	 * Tests if text is split at hard boundaries and each unit is segmented
+	 * as a separate text. Text is longer than the amount read at once.
+	 */
+	@Test
+	public void testHardBoundary() {
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "\\bMr\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "[\\.!?]+", "\\s+"));
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		
+		List<String> expectedList = new ArrayList<String>();
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 2000; ++i) {
+			String unit = "Mr. Smith said " + i + "! Then he left \n \n\n";
+			builder.append(unit);
+			expectedList.addAll(toList(
+					new SrxTextIterator(document, "", unit)));
+		}
+		builder.append("End.");
+		expectedList.add("End.");
+		String text = builder.toString();
+		
+		for (int queueLength : new int[] {1, 3, 64}) {
+			Map<String, Object> parameterMap = new HashMap<String, Object>();
+			parameterMap.put(ParallelSrxStreamTextIterator.QUEUE_LENGTH_PARAMETER, 
+					queueLength);
+			assertEquals(expectedList, toList(new ParallelSrxStreamTextIterator(
+					document, "", new StringReader(text), parameterMap, 
+					executorService)));
+		}
+		
+		ParallelSrxStreamTextIterator textIterator = 
+			new ParallelSrxStreamTextIterator(document, "", 
+					new StringReader(text), executorService);
+		String[] expectedArray = expectedList.toArray(new String[0]);
+		assertArrayEquals(getBoundaries(expectedArray), 
+				getBoundaries(textIterator));
+	}
+	
+	private List<String> toList(TextIterator textIterator) {
+		List<String> list = new ArrayList<String>();
+		while (textIterator.hasNext()) {
+			list.add(textIterator.next());
+		}
+		return list;
+	}
+	
+}
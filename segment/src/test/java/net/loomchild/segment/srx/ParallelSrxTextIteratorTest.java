@@ -0,0 +1,81 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelSrxTextIteratorTest extends AbstractSrxTextIteratorTest {
+	
+	private static ExecutorService executorService;
+	
+	@BeforeClass
+	public static void setUpExecutor() {
+		executorService = Executors.newFixedThreadPool(4);
+	}
+	
+	@AfterClass
+	public static void tearDownExecutor() {
+		executorService.shutdown();
+	}
+	
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(ParallelSrxTextIterator.CHUNK_LENGTH_PARAMETER, 3);
+		return new ParallelSrxTextIterator(document, languageCode, text, 
+				parameterMap, executorService);
+	}
+	
+	/**
+	 * Tests if segments are the same as found by sequential iterator 
+	 * for different chunk lengths, also when chunk boundaries are 
+	 * inside segments, exceptions or rules with lookbehind.
+	 */
+	@Test
+	public void testSameAsSequential() {
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "\\b(?:Mr|Dr|Prof)\\.", "\\s"));
+		languageRule.addRule(new Rule(false, "\\.\\.", "\\s[a-z]"));
+		languageRule.addRule(new Rule(true, "(?<![A-Z])[\\.!?]+", "\\s+"));
+		languageRule.addRule(new Rule(true, "^\\s*", "\\n"));
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50; ++i) {
+			builder.append("Mr. Smith met Dr. Who.. and A. B. left!?  " + 
+					"Prof. X said: no.\n\nNext line " + i + ". ");
+		}
+		String text = builder.toString();
+		
+		List<String> expectedList = toList(
+				new SrxTextIterator(document, "", text));
+		for (int chunkLength : new int[] {1, 2, 5, 17, 100, 1000, 10000}) {
+			Map<String, Object> parameterMap = new HashMap<String, Object>();
+			parameterMap.put(ParallelSrxTextIterator.CHUNK_LENGTH_PARAMETER, 
+					chunkLength);
+			assertEquals(expectedList, toList(new ParallelSrxTextIterator(
+					document, "", text, parameterMap, executorService)));
+		}
+	}
+	
+	private List<String> toList(TextIterator textIterator) {
+		List<String> list = new ArrayList<String>();
+		while (textIterator.hasNext()) {
+			list.add(textIterator.next());
+		}
+		return list;
+	}
+	
+}
@@ -0,0 +1,141 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.loomchild.segment.regex.Regex;
+
+import org.junit.Test;
+
+public class RuleManagerTest {
+
+	@Test
+	public void testExceptionCount() {
+		SrxDocument document = new SrxDocument();
+		
+		LanguageRule languageRule1 = new LanguageRule("");
+		Rule breakRule1 = new Rule(true, "\\.", " ");
+		Rule breakRule2 = new Rule(true, "!", " ");
+		languageRule1.addRule(breakRule1);
+		languageRule1.addRule(new Rule(false, "Mr\\.", " "));
+		languageRule1.addRule(new Rule(false, "Dr\\.", " "));
+		languageRule1.addRule(breakRule2);
+
+		LanguageRule languageRule2 = new LanguageRule("");
+		Rule breakRule3 = new Rule(true, "\\?", "");
+		languageRule2.addRule(new Rule(false, "Hey!", ""));
+		languageRule2.addRule(breakRule3);
+
+		List<LanguageRule> languageRuleList = new ArrayList<LanguageRule>();
+		languageRuleList.add(languageRule1);
+		languageRuleList.add(languageRule2);
+		
+		RuleManager ruleManager = 
+			new RuleManager(document, languageRuleList, 100);
+		
+		assertEquals(3, ruleManager.getBreakRuleList().size());
+		assertEquals(3, ruleManager.getExceptionPatternList().size());
+		assertEquals(0, ruleManager.getExceptionCount(breakRule1));
+		assertEquals(2, ruleManager.getExceptionCount(breakRule2));
+		assertEquals(3, ruleManager.getExceptionCount(breakRule3));
+		
+		String text = "Dr. Who";
+		Pattern pattern = ruleManager.getExceptionPatternList().get(1);
+		assertTrue(pattern.matcher(text).region(3, text.length()).
+				useTransparentBounds(true).lookingAt());
+		pattern = ruleManager.getExceptionPatternList().get(0);
+		assertFalse(pattern.matcher(text).region(3, text.length()).
+				useTransparentBounds(true).lookingAt());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testExceptionPattern() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		Rule breakRule1 = new Rule(true, "\\.", " ");
+		Rule breakRule2 = new Rule(true, "!", " ");
+		languageRule.addRule(breakRule1);
+		languageRule.addRule(new Rule(false, "Mr\\.", " "));
+		languageRule.addRule(new Rule(false, "Dr\\.", " "));
+		languageRule.addRule(breakRule2);
+		List<LanguageRule> languageRuleList = new ArrayList<LanguageRule>();
+		languageRuleList.add(languageRule);
+		
+		RuleManager ruleManager = 
+			new RuleManager(document, languageRuleList, 100);
+		
+		assertNull(ruleManager.getExceptionPattern(breakRule1));
+		Pattern pattern = ruleManager.getExceptionPattern(breakRule2);
+		String text = "Mr. Dr. X";
+		assertTrue(pattern.matcher(text).region(3, text.length()).
+				useTransparentBounds(true).lookingAt());
+		assertTrue(pattern.matcher(text).region(7, text.length()).
+				useTransparentBounds(true).lookingAt());
+		assertFalse(pattern.matcher(text).region(8, text.length()).
+				useTransparentBounds(true).lookingAt());
+	}
+	
+	@Test
+	public void testExtent() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		Rule breakRule = new Rule(true, "[\\.!]+", "\\s");
+		Rule exceptionRule = new Rule(false, "Mr\\.", "(?=\\s[A-Z])");
+		languageRule.addRule(exceptionRule);
+		languageRule.addRule(breakRule);
+		List<LanguageRule> languageRuleList = new ArrayList<LanguageRule>();
+		languageRuleList.add(languageRule);
+		
+		RuleManager ruleManager = 
+			new RuleManager(document, languageRuleList, 100);
+		
+		RuleExtent extent = ruleManager.getExtent(breakRule);
+		assertEquals(1, extent.getMinBeforeLength());
+		assertEquals(Regex.INFINITY, extent.getMaxBeforeLength());
+		assertEquals(Regex.INFINITY, extent.getMaxBeforeReadLength());
+		assertEquals(1, extent.getMinAfterLength());
+		assertEquals(1, extent.getMaxAfterLength());
+		assertEquals(1, extent.getMaxAfterReadLength());
+		
+		extent = ruleManager.getExtent(exceptionRule);
+		assertEquals(3, extent.getMinBeforeLength());
+		assertEquals(3, extent.getMaxBeforeLength());
+		assertEquals(3, extent.getMaxBeforeReadLength());
+		assertEquals(0, extent.getMaxAfterLength());
+		assertEquals(2, extent.getMaxAfterReadLength());
+		
+		assertEquals(2, ruleManager.getRequiredMargin());
+	}
+	
+	@Test
+	public void testBreakAutomaton() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "[0-9]+", "[0-9]"));
+		languageRule.addRule(new Rule(true, "ab|a", "b"));
+		languageRule.addRule(new Rule(true, "(?:Mr|Dr)\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "\\b\\.", "\\s"));
+		List<LanguageRule> languageRuleList = new ArrayList<LanguageRule>();
+		languageRuleList.add(languageRule);
+		
+		RuleManager ruleManager = 
+			new RuleManager(document, languageRuleList, 100);
+		
+		assertNotNull(ruleManager.getBreakAutomaton());
+		// Before pattern matches can overlap.
+		assertNull(ruleManager.getBreakAfterAutomaton(0));
+		assertNull(ruleManager.getBreakAfterAutomaton(1));
+		assertNotNull(ruleManager.getBreakAfterAutomaton(2));
+		// Before pattern is not regular.
+		assertNull(ruleManager.getBreakAfterAutomaton(3));
+	}
+	
+}
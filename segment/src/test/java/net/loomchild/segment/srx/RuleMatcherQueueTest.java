@@ -0,0 +1,53 @@
+package net.loomchild.segment.srx;
+
+import junit.framework.TestCase;
+
+public class RuleMatcherQueueTest extends TestCase {
+
+	public void testOrder() {
+		SrxDocument document = new SrxDocument();
+		String text = "a.b!c?d.";
+		RuleMatcherQueue queue = new RuleMatcherQueue(3);
+		RuleMatcher dot = createMatcher(document, "\\.", text);
+		RuleMatcher exclamation = createMatcher(document, "!", text);
+		RuleMatcher any = createMatcher(document, "[\\.!\\?]", text);
+		queue.add(0, dot);
+		queue.add(1, exclamation);
+		queue.add(2, any);
+		
+		// Equal break positions - first rule wins.
+		assertEquals(0, queue.getMinBreakIndex());
+		assertEquals(0, queue.getMinStartIndex());
+		
+		dot.find();
+		queue.update(0);
+		assertEquals(2, queue.getMinBreakIndex());
+
+		any.find();
+		queue.update(2);
+		assertEquals(1, queue.getMinBreakIndex());
+		assertEquals(4, queue.get(1).getBreakPosition());
+
+		queue.remove(1);
+		assertNull(queue.get(1));
+		assertEquals(2, queue.getMinBreakIndex());
+		assertEquals(2, queue.getMinStartIndex());
+		
+		queue.remove(2);
+		queue.remove(2);
+		assertEquals(0, queue.getMinBreakIndex());
+		
+		queue.remove(0);
+		assertEquals(-1, queue.getMinBreakIndex());
+		assertEquals(-1, queue.getMinStartIndex());
+	}
+
+	private RuleMatcher createMatcher(SrxDocument document, String before, 
+			String text) {
+		RuleMatcher matcher = new RuleMatcher(document, 
+				new Rule(true, before, ""), text);
+		assertTrue(matcher.find());
+		return matcher;
+	}
+	
+}
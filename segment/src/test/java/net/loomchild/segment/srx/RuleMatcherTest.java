@@ -1,6 +1,7 @@
 package net.loomchild.segment.srx;
 
 import junit.framework.TestCase;
+import net.loomchild.segment.regex.Regex;
 
 public class RuleMatcherTest extends TestCase {
 
@@ -34,4 +35,38 @@ public class RuleMatcherTest extends TestCase {
 
 	}
 	
+	public void testFindIncrementally() {
+		SrxDocument document = new SrxDocument();
+		Rule rule = new Rule(true, "ab+", "ca+");
+		String text = "abaabbcabcabcaa";
+		RuleMatcher matcher = new RuleMatcher(document, rule, text);
+		matcher.setSearchLength(4, Regex.INFINITY);
+		assertFalse(matcher.find(0));
+		assertTrue(matcher.isPending());
+		assertFalse(matcher.hitEnd());
+		assertEquals(2, matcher.getStartPosition());
+		assertEquals(2, matcher.getBreakPosition());
+		assertTrue(findIncrementally(matcher));
+		assertEquals(3, matcher.getStartPosition());
+		assertEquals(6, matcher.getBreakPosition());
+		assertEquals(8, matcher.getEndPosition());
+		assertTrue(findIncrementally(matcher));
+		assertEquals(7, matcher.getStartPosition());
+		assertEquals(9, matcher.getBreakPosition());
+		assertTrue(findIncrementally(matcher));
+		assertEquals(10, matcher.getStartPosition());
+		assertEquals(12, matcher.getBreakPosition());
+		assertEquals(15, matcher.getEndPosition());
+		assertFalse(findIncrementally(matcher));
+		assertTrue(matcher.hitEnd());
+	}
+	
+	private boolean findIncrementally(RuleMatcher matcher) {
+		boolean found = matcher.find();
+		while (matcher.isPending()) {
+			found = matcher.find();
+		}
+		return found;
+	}
+
 }
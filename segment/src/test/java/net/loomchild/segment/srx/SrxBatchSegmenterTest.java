@@ -0,0 +1,95 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SrxBatchSegmenterTest {
+
+	private static ExecutorService executorService;
+	
+	@BeforeClass
+	public static void setUpExecutor() {
+		executorService = Executors.newFixedThreadPool(4);
+	}
+	
+	@AfterClass
+	public static void tearDownExecutor() {
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Tests if texts are segmented in the same way as by separate 
+	 * iterators and results are returned in order, for different task 
+	 * sizes and with automaton.
+	 */
+	@Test
+	public void testSegment() {
+		SrxDocument document = createDocument();
+		List<String> textList = new ArrayList<String>();
+		for (int i = 0; i < 100; ++i) {
+			textList.add("Text " + i + ". Mr. Smith left!" + 
+					(i % 3 == 0 ? "" : " Bye."));
+		}
+		textList.add("");
+		
+		for (boolean automaton : new boolean[] {false, true}) {
+			Map<String, Object> parameterMap = new HashMap<String, Object>();
+			parameterMap.put(SrxTextIterator.AUTOMATON_PARAMETER, automaton);
+			List<List<String>> expectedList = new ArrayList<List<String>>();
+			for (String text : textList) {
+				expectedList.add(toList(new SrxTextIterator(
+						document, "en", text, parameterMap)));
+			}
+			for (int taskSize : new int[] {1, 7, 1000}) {
+				parameterMap.put(SrxBatchSegmenter.TASK_SIZE_PARAMETER, 
+						taskSize);
+				SrxBatchSegmenter segmenter = 
+					new SrxBatchSegmenter(document, "en", parameterMap);
+				assertEquals(expectedList, 
+						segmenter.segment(textList, executorService));
+				assertEquals(expectedList.get(1), 
+						segmenter.segment(textList.get(1)));
+			}
+		}
+	}
+	
+	@Test
+	public void testSegmentEmpty() {
+		SrxBatchSegmenter segmenter = 
+			new SrxBatchSegmenter(createDocument(), "en");
+		assertTrue(segmenter.segment(Collections.<String>emptyList(), 
+				executorService).isEmpty());
+	}
+	
+	private SrxDocument createDocument() {
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "\\bMr\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "[\\.!?]+", "\\s"));
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+	
+	private List<String> toList(TextIterator textIterator) {
+		List<String> list = new ArrayList<String>();
+		while (textIterator.hasNext()) {
+			list.add(textIterator.next());
+		}
+		return list;
+	}
+	
+}
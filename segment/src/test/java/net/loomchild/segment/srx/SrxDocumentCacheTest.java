@@ -0,0 +1,68 @@
+package net.loomchild.segment.srx;
+
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+import net.loomchild.segment.util.Util;
+
+public class SrxDocumentCacheTest extends TestCase {
+
+	public void testKey() {
+		SrxDocumentCache cache = new SrxDocumentCache();
+		SrxDocumentCache.Key<String> key1 = 
+			new SrxDocumentCache.Key<String>(String.class, "ab", "c");
+		SrxDocumentCache.Key<String> key2 = 
+			new SrxDocumentCache.Key<String>(String.class, "a", "bc");
+		SrxDocumentCache.Key<Object> key3 = 
+			new SrxDocumentCache.Key<Object>(Object.class, "ab", "c");
+		cache.put(key1, "value");
+		assertEquals("value", cache.get(
+				new SrxDocumentCache.Key<String>(String.class, "ab", "c")));
+		assertNull(cache.get(key2));
+		assertNull(cache.get(key3));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	public void testEviction() {
+		SrxDocumentCache cache = new SrxDocumentCache(16);
+		SrxDocumentCache.Key<Integer> firstKey = 
+			new SrxDocumentCache.Key<Integer>(Integer.class, 0);
+		cache.put(firstKey, 0);
+		for (int i = 1; i < 100; ++i) {
+			cache.put(new SrxDocumentCache.Key<Integer>(Integer.class, i), i);
+			// Keep first entry recently used.
+			assertEquals(Integer.valueOf(0), cache.get(firstKey));
+			assertTrue(cache.getSize() <= 16);
+		}
+		assertEquals(100 - cache.getSize(), cache.getEvictionCount());
+		assertNull(cache.get(new SrxDocumentCache.Key<Integer>(Integer.class, 1)));
+		assertEquals(Integer.valueOf(99), cache.get(
+				new SrxDocumentCache.Key<Integer>(Integer.class, 99)));
+	}
+
+	public void testSegmentationStatistics() {
+		SrxDocument document = new SrxDocument(true, new SrxDocumentCache(4));
+		LanguageRule languageRule = new LanguageRule("");
+		for (int i = 0; i < 10; ++i) {
+			languageRule.addRule(new Rule(true, "" + i, " "));
+		}
+		document.addLanguageMap(".*", languageRule);
+		for (int i = 0; i < 3; ++i) {
+			SrxTextIterator iterator = new SrxTextIterator(document, "", "1 2");
+			assertEquals("1", iterator.next());
+			assertEquals(" 2", iterator.next());
+		}
+		SrxDocumentCache cache = document.getCache();
+		assertTrue(cache.getSize() <= 4);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getMissCount() > 0);
+		assertTrue(cache.getLoadTime() > 0);
+		
+		Pattern pattern = Util.compile(document, "a", 0);
+		assertSame(pattern, Util.compile(document, "a", 0));
+		assertFalse(pattern == Util.compile(document, "a", 
+				Pattern.CASE_INSENSITIVE));
+	}
+
+}
@@ -1,6 +1,9 @@
 package net.loomchild.segment.srx;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
@@ -35,4 +38,109 @@ public class SrxDocumentTest extends TestCase {
 		assertEquals(languageRule1, languageRuleList.get(0));
 	}
 
+	public void testLanguageRuleListCache() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule1 = new LanguageRule("1");
+		LanguageRule languageRule2 = new LanguageRule("2");
+		document.addLanguageMap("a.*", languageRule1);
+
+		List<LanguageRule> languageRuleList = document.getLanguageRuleList("ab");
+		assertSame(languageRuleList, document.getLanguageRuleList("ab"));
+		assertEquals(1, languageRuleList.size());
+		try {
+			languageRuleList.add(languageRule2);
+			fail("Language rule list must be unmodifiable.");
+		} catch (UnsupportedOperationException e) {
+			// OK
+		}
+
+		document.addLanguageMap(".*", languageRule2);
+		languageRuleList = document.getLanguageRuleList("ab");
+		assertEquals(2, languageRuleList.size());
+		assertEquals(languageRule2, languageRuleList.get(1));
+
+		document.setCascade(false);
+		languageRuleList = document.getLanguageRuleList("ab");
+		assertEquals(1, languageRuleList.size());
+		assertEquals(languageRule1, languageRuleList.get(0));
+	}
+
+	/**
+	 * Checks that rules compiled with different pattern flags are not
+	 * shared in document cache.
+	 */
+	public void testPatternFlags() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "a", " "));
+		document.addLanguageMap(".*", languageRule);
+
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.DEFAULT_PATTERN_FLAGS_PARAMETER,
+				Pattern.CASE_INSENSITIVE);
+		SrxTextIterator insensitiveIterator = 
+			new SrxTextIterator(document, "", "A B", parameterMap);
+		SrxTextIterator sensitiveIterator = 
+			new SrxTextIterator(document, "", "A B");
+
+		assertEquals("A", insensitiveIterator.next());
+		assertEquals(" B", insensitiveIterator.next());
+		assertFalse(insensitiveIterator.hasNext());
+
+		assertEquals("A B", sensitiveIterator.next());
+		assertFalse(sensitiveIterator.hasNext());
+	}
+
+	public void testFreeze() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("1");
+		languageRule.addRule(new Rule(true, "\\.", " "));
+		document.addLanguageMap("a.*", languageRule);
+		document.addLanguageMap("b.*", languageRule);
+
+		SrxDocument frozenDocument = document.freeze();
+		assertTrue(frozenDocument.isFrozen());
+		assertFalse(document.isFrozen());
+		assertSame(frozenDocument, frozenDocument.freeze());
+
+		// Original document remains modifiable and does not affect the copy.
+		languageRule.addRule(new Rule(true, "!", " "));
+		document.setCascade(false);
+		assertTrue(frozenDocument.getCascade());
+
+		List<LanguageRule> languageRuleList = 
+			frozenDocument.getLanguageRuleList("ab");
+		assertEquals(1, languageRuleList.size());
+		LanguageRule frozenLanguageRule = languageRuleList.get(0);
+		assertTrue(frozenLanguageRule.isFrozen());
+		assertEquals(1, frozenLanguageRule.getRuleList().size());
+		assertSame(frozenLanguageRule, 
+				frozenDocument.getLanguageRuleList("ba").get(0));
+
+		SrxTextIterator iterator = 
+			new SrxTextIterator(frozenDocument, "ab", "A. B! C");
+		assertEquals("A.", iterator.next());
+		assertEquals(" B! C", iterator.next());
+		assertFalse(iterator.hasNext());
+
+		try {
+			frozenDocument.addLanguageMap(".*", languageRule);
+			fail("Frozen document must not be modifiable.");
+		} catch (IllegalStateException e) {
+			// OK
+		}
+		try {
+			frozenDocument.setCascade(false);
+			fail("Frozen document must not be modifiable.");
+		} catch (IllegalStateException e) {
+			// OK
+		}
+		try {
+			frozenLanguageRule.addRule(new Rule(true, "\\?", " "));
+			fail("Frozen language rule must not be modifiable.");
+		} catch (IllegalStateException e) {
+			// OK
+		}
+	}
+
 }
@@ -0,0 +1,95 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.Test;
+
+public class SrxTextIteratorAutomatonReaderTest extends AbstractSrxTextIteratorTest {
+
+	private static final int BUFFER_SIZE = 60;
+	
+	private static final int MARGIN = 10;
+	
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		return getTextIterator(document, languageCode, text, true);
+	}
+
+	/**
+	 * Tests if break at the start of current segment is not returned 
+	 * again after refill, so the first break inside the margin is 
+	 * accepted like when using {@link java.util.regex.Pattern}.
+	 */
+	@Test
+	public void testRefillWithBreakAtSegmentStart() {
+		SrxDocument document = createDocument(
+				new Rule(true, "", "[0-9]"));
+		String[] expectedResult = new String[] {"a.", 
+				"1" + letters(BUFFER_SIZE - MARGIN), "2" + letters(20)};
+		assertSameAsPattern(expectedResult, document);
+	}
+
+	/**
+	 * Tests if break positions rejected by exception rules before refill 
+	 * are not checked again after the text before current segment 
+	 * has been deleted, like when using {@link java.util.regex.Pattern}.
+	 */
+	@Test
+	public void testRefillWithCheckedBreak() {
+		SrxDocument document = createDocument(
+				new Rule(false, "[A-Z]{2}", ""),
+				new Rule(true, "", "[A-Z]"));
+		String[] expectedResult = new String[] {
+				letters(BUFFER_SIZE - MARGIN - 3), "D", 
+				"BB" + letters(10), "C" + letters(30)};
+		assertSameAsPattern(expectedResult, document);
+	}
+
+	private void assertSameAsPattern(String[] expectedResult, 
+			SrxDocument document) {
+		String text = merge(expectedResult);
+		List<String> segmentList = 
+			segment(getTextIterator(document, "", text, true));
+		assertEquals(Arrays.asList(expectedResult), segmentList);
+		assertEquals(segment(getTextIterator(document, "", text, false)), 
+				segmentList);
+	}
+
+	private TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text, boolean automaton) {
+		StringReader reader = new StringReader(text);
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.BUFFER_LENGTH_PARAMETER, BUFFER_SIZE);
+		parameterMap.put(SrxTextIterator.MARGIN_PARAMETER, MARGIN);
+		parameterMap.put(SrxTextIterator.AUTOMATON_PARAMETER, automaton);
+		return new SrxTextIterator(document, languageCode, reader, parameterMap);
+	}
+
+	private SrxDocument createDocument(Rule... rules) {
+		LanguageRule languageRule = new LanguageRule("");
+		for (Rule rule : rules) {
+			languageRule.addRule(rule);
+		}
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+
+	private String letters(int length) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < length; ++i) {
+			builder.append('a');
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,51 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.Test;
+
+public class SrxTextIteratorAutomatonStringTest extends AbstractSrxTextIteratorTest {
+	
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.AUTOMATON_PARAMETER, true);
+		return new SrxTextIterator(document, languageCode, text, parameterMap);
+	}
+
+	/**
+	 * Tests if rules whose before pattern matches can overlap are 
+	 * matched like by {@link RuleMatcher}, which skips matches overlapping
+	 * previous one, and not at every position where a match ends.
+	 */
+	@Test
+	public void testOverlappingMatches() {
+		assertSameAsRuleMatcher(new String[] {"12"}, 
+				new Rule(true, "[0-9]+", "[0-9]"), "12");
+		assertSameAsRuleMatcher(new String[] {"abx"}, 
+				new Rule(true, "ab|a", "b"), "abx");
+		assertSameAsRuleMatcher(new String[] {"a.", "a.", "a"}, 
+				new Rule(true, "a\\.", "a"), "a.a.a");
+	}
+
+	private void assertSameAsRuleMatcher(String[] expectedResult, 
+			Rule rule, String text) {
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(rule);
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		
+		List<String> segmentList = segment(getTextIterator(document, "", text));
+		assertEquals(Arrays.asList(expectedResult), segmentList);
+		TextIterator textIterator = new SrxTextIterator(document, "", text);
+		assertEquals(segment(textIterator), segmentList);
+	}
+	
+}
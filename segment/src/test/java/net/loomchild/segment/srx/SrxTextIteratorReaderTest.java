@@ -1,11 +1,22 @@
 package net.loomchild.segment.srx;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.loomchild.segment.TextIterator;
 
+import org.junit.Test;
+
 public class SrxTextIteratorReaderTest extends AbstractSrxTextIteratorTest {
 
 	private static final int BUFFER_SIZE = 60;
@@ -15,10 +26,346 @@ public class SrxTextIteratorReaderTest extends AbstractSrxTextIteratorTest {
 	protected TextIterator getTextIterator(SrxDocument document,
 			String languageCode, String text) {
 		StringReader reader = new StringReader(text);
+		return new SrxTextIterator(document, languageCode, reader, 
+				createParameterMap());
+	}
+
+	/**
+	 * Tests if boundaries are counted from the beginning of the stream 
+	 * when reading segments and boundaries alternately.
+	 */
+	@Test
+	public void testMixedSegmentsAndBoundaries() {
+		String text = merge(TEXT_LONGER_THAN_BUFFER_RESULT);
+		SrxTextIterator textIterator = (SrxTextIterator)getTextIterator(
+				TEXT_LONGER_THAN_BUFFER_DOCUMENT, "", text);
+		int position = 0;
+		int count = 0;
+		while (textIterator.hasNext()) {
+			if (count % 2 == 0) {
+				position += textIterator.next().length();
+			} else {
+				position = textIterator.nextBoundary();
+			}
+			++count;
+			assertEquals(count * TEXT_LONGER_THAN_BUFFER_RESULT[0].length(), 
+					position);
+		}
+		assertEquals(-1, textIterator.nextBoundary());
+		assertEquals(text.length(), position);
+	}
+	
+	/**
+	 * Tests if long positions are counted from the beginning of the stream
+	 * across buffer refills.
+	 */
+	@Test
+	public void testLongPositions() {
+		String text = merge(TEXT_LONGER_THAN_BUFFER_RESULT);
+		SrxTextIterator textIterator = (SrxTextIterator)getTextIterator(
+				TEXT_LONGER_THAN_BUFFER_DOCUMENT, "", text);
+		assertEquals(0, textIterator.getPosition());
+		long position = 0;
+		int count = 0;
+		while (textIterator.hasNext()) {
+			if (count % 2 == 0) {
+				position += textIterator.next().length();
+			} else {
+				position = textIterator.nextLongBoundary();
+			}
+			assertEquals(position, textIterator.getPosition());
+			++count;
+		}
+		assertEquals(-1, textIterator.nextLongBoundary());
+		assertEquals(text.length(), textIterator.getPosition());
+	}
+
+	/**
+	 * @param overflowPolicy overflow policy
+	 * @param text text
+	 * @return streaming iterator with short buffer and a single rule
+	 * 		breaking after a dot
+	 */
+	private SrxTextIterator getOverflowTextIterator(
+			SrxTextIterator.OverflowPolicy overflowPolicy, String text) {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "\\.", ""));
+		document.addLanguageMap(".*", languageRule);
+		Map<String, Object> parameterMap = createParameterMap();
+		parameterMap.put(SrxTextIterator.OVERFLOW_POLICY_PARAMETER, 
+				overflowPolicy);
+		parameterMap.put(SrxTextIterator.MAX_BUFFER_LENGTH_PARAMETER, 
+				BUFFER_SIZE * 4);
+		return new SrxTextIterator(document, "", new StringReader(text), 
+				parameterMap);
+	}
+	
+	/**
+	 * @param length length
+	 * @return string consisting of given number of letters
+	 */
+	private String letters(int length) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < length; ++i) {
+			builder.append('a');
+		}
+		return builder.toString();
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testOverflowFail() {
+		SrxTextIterator textIterator = getOverflowTextIterator(
+				SrxTextIterator.OverflowPolicy.FAIL, letters(BUFFER_SIZE * 2));
+		textIterator.next();
+	}
+
+	@Test
+	public void testOverflowGrow() {
+		String longSegment = letters(BUFFER_SIZE * 3) + ".";
+		SrxTextIterator textIterator = getOverflowTextIterator(
+				SrxTextIterator.OverflowPolicy.GROW, "a." + longSegment + "b.");
+		assertEquals("a.", textIterator.next());
+		assertEquals(longSegment, textIterator.next());
+		assertEquals("b.", textIterator.next());
+		assertFalse(textIterator.hasNext());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testOverflowGrowLimit() {
+		SrxTextIterator textIterator = getOverflowTextIterator(
+				SrxTextIterator.OverflowPolicy.GROW, letters(BUFFER_SIZE * 5));
+		textIterator.next();
+	}
+
+	@Test
+	public void testOverflowBreak() {
+		int maxSegmentLength = BUFFER_SIZE - MARGIN;
+		SrxTextIterator textIterator = getOverflowTextIterator(
+				SrxTextIterator.OverflowPolicy.BREAK, 
+				"a." + letters(maxSegmentLength * 2 + 1) + ".b.");
+		assertEquals("a.", textIterator.next());
+		assertEquals(letters(maxSegmentLength), textIterator.next());
+		assertEquals(letters(maxSegmentLength), textIterator.next());
+		assertEquals("a.", textIterator.next());
+		assertEquals("b.", textIterator.next());
+		assertFalse(textIterator.hasNext());
+	}
+
+	@Test
+	public void testOverflowBreakWithoutMoreText() {
+		SrxTextIterator textIterator = getOverflowTextIterator(
+				SrxTextIterator.OverflowPolicy.BREAK, letters(BUFFER_SIZE));
+		int maxSegmentLength = BUFFER_SIZE - MARGIN;
+		assertEquals(letters(maxSegmentLength), textIterator.next());
+		assertEquals(letters(MARGIN), textIterator.next());
+		assertFalse(textIterator.hasNext());
+	}
+
+	/**
+	 * Tests if matchers which keep their matches or start the search 
+	 * before the margin after the buffer is refilled find the same 
+	 * segments as non-streaming iterator.
+	 */
+	@Test
+	public void testRefillWithRareRules() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "Mr\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "xyz", ""));
+		languageRule.addRule(new Rule(true, "[0-9]{3}", "\\s"));
+		languageRule.addRule(new Rule(true, "^a", ""));
+		document.addLanguageMap(".*", languageRule);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 200; ++i) {
+			builder.append(i % 7 == 0 ? "Mr. Smith" : "Sentence");
+			builder.append(i % 5 == 0 ? " 1234 " : " ");
+			builder.append(i % 11 == 0 ? "xyz. " : "end. ");
+		}
+		String text = builder.toString();
+		SrxTextIterator streamingIterator = new SrxTextIterator(document, "", 
+				new StringReader(text), createParameterMap());
+		SrxTextIterator iterator = new SrxTextIterator(document, "", text);
+		while (iterator.hasNext()) {
+			assertEquals(iterator.next(), streamingIterator.next());
+		}
+		assertFalse(streamingIterator.hasNext());
+	}
+
+	/**
+	 * Tests if matchers whose matches can overlap find the same matches
+	 * after the buffer is refilled as non-streaming iterator, which 
+	 * skips the overlapping ones.
+	 */
+	@Test
+	public void testRefillWithOverlappingMatches() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "[a-z]{2}", "[A-Z]"));
+		document.addLanguageMap(".*", languageRule);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50; ++i) {
+			builder.append(letters(i * 7 % 9 + 1));
+			builder.append(i % 3 == 0 ? "A " : "B");
+		}
+		String text = builder.toString();
+		SrxTextIterator streamingIterator = new SrxTextIterator(document, "", 
+				new StringReader(text), createParameterMap());
+		SrxTextIterator iterator = new SrxTextIterator(document, "", text);
+		while (iterator.hasNext()) {
+			assertEquals(iterator.next(), streamingIterator.next());
+		}
+		assertFalse(streamingIterator.hasNext());
+	}
+
+	/**
+	 * Tests if text decoded from input stream is segmented like a string.
+	 */
+	@Test
+	public void testInputStream() throws UnsupportedEncodingException {
+		String text = merge(TEXT_LONGER_THAN_BUFFER_RESULT) + 
+			"\u017b\u00f3\u0142w. \ud834\udd1e \u6f22\u5b57. ";
+		SrxTextIterator streamingIterator = new SrxTextIterator(
+				TEXT_LONGER_THAN_BUFFER_DOCUMENT, "", 
+				new ByteArrayInputStream(text.getBytes("UTF-8")), 
+				Charset.forName("UTF-8"), createParameterMap());
+		SrxTextIterator iterator = new SrxTextIterator(
+				TEXT_LONGER_THAN_BUFFER_DOCUMENT, "", text);
+		while (iterator.hasNext()) {
+			assertEquals(iterator.next(), streamingIterator.next());
+		}
+		assertFalse(streamingIterator.hasNext());
+	}
+
+	/**
+	 * Tests if in low latency mode segments are the same as when 
+	 * segmenting a string and if they are returned before the rest of 
+	 * the text is read.
+	 */
+	@Test
+	public void testLowLatency() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "Mr\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		languageRule.addRule(new Rule(true, "[0-9]+", "\\s"));
+		document.addLanguageMap(".*", languageRule);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50; ++i) {
+			builder.append(i % 7 == 0 ? "Mr. Smith" : "Sentence");
+			builder.append(i % 5 == 0 ? " 1234 end. " : " end. ");
+		}
+		String text = builder.toString();
+		for (int chunkLength = 1; chunkLength < 8; chunkLength += 3) {
+			ChunkReader reader = new ChunkReader(text, chunkLength);
+			Map<String, Object> parameterMap = createParameterMap();
+			parameterMap.put(SrxTextIterator.LOW_LATENCY_PARAMETER, true);
+			// Margin required by the rules is used.
+			parameterMap.remove(SrxTextIterator.MARGIN_PARAMETER);
+			SrxTextIterator streamingIterator = 
+				new SrxTextIterator(document, "", reader, parameterMap);
+			SrxTextIterator iterator = new SrxTextIterator(document, "", text);
+			int position = 0;
+			while (iterator.hasNext()) {
+				String segment = streamingIterator.next();
+				assertEquals(iterator.next(), segment);
+				position += segment.length();
+				// Break position is confirmed by the next character.
+				assertTrue(reader.getPosition() <= position + chunkLength + 1);
+			}
+			assertFalse(streamingIterator.hasNext());
+		}
+	}
+
+	/**
+	 * Tests if in low latency mode text before current segment is kept, 
+	 * so exception rules can look behind it.
+	 */
+	@Test
+	public void testLowLatencyLookbehind() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(false, "[A-Z][a-z]", ""));
+		languageRule.addRule(new Rule(true, "[A-Za-z]", ""));
+		document.addLanguageMap(".*", languageRule);
+		String text = "aBcD eFgH iJkL";
+		for (int chunkLength = 1; chunkLength < 4; ++chunkLength) {
+			ChunkReader reader = new ChunkReader(text, chunkLength);
+			Map<String, Object> parameterMap = createParameterMap();
+			parameterMap.put(SrxTextIterator.LOW_LATENCY_PARAMETER, true);
+			parameterMap.remove(SrxTextIterator.MARGIN_PARAMETER);
+			TextIterator streamingIterator = 
+				new SrxTextIterator(document, "", reader, parameterMap);
+			TextIterator iterator = new SrxTextIterator(document, "", text);
+			assertEquals(segment(iterator), segment(streamingIterator));
+		}
+	}
+
+	/**
+	 * Tests if in low latency mode segments longer than buffer without 
+	 * the margin are returned like in default mode, which accepts break 
+	 * position inside the margin after the buffer has been refilled.
+	 */
+	@Test
+	public void testLowLatencyLongSegments() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		document.addLanguageMap(".*", languageRule);
+		String[] expectedResult = new String[] {"Ab.", 
+				" " + letters(BUFFER_SIZE - MARGIN + 3) + ".", 
+				" " + letters(BUFFER_SIZE - 2) + "."};
+		String text = merge(expectedResult);
+		TextIterator iterator = new SrxTextIterator(document, "", 
+				new StringReader(text), createParameterMap());
+		assertEquals(Arrays.asList(expectedResult), segment(iterator));
+		for (int chunkLength = 1; chunkLength < 8; ++chunkLength) {
+			ChunkReader reader = new ChunkReader(text, chunkLength);
+			Map<String, Object> parameterMap = createParameterMap();
+			parameterMap.put(SrxTextIterator.LOW_LATENCY_PARAMETER, true);
+			TextIterator streamingIterator = 
+				new SrxTextIterator(document, "", reader, parameterMap);
+			assertEquals(Arrays.asList(expectedResult), 
+					segment(streamingIterator));
+		}
+	}
+
+	/**
+	 * Represents reader returning at most given number of characters 
+	 * at once, like interactive input.
+	 */
+	private static class ChunkReader extends StringReader {
+
+		private int chunkLength;
+
+		private int position;
+
+		public ChunkReader(String text, int chunkLength) {
+			super(text);
+			this.chunkLength = chunkLength;
+			this.position = 0;
+		}
+
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			int result = super.read(cbuf, off, Math.min(len, chunkLength));
+			if (result > 0) {
+				position += result;
+			}
+			return result;
+		}
+
+		public int getPosition() {
+			return position;
+		}
+
+	}
+
+	private Map<String, Object> createParameterMap() {
 		Map<String, Object> parameterMap = new HashMap<String, Object>();
 		parameterMap.put(SrxTextIterator.BUFFER_LENGTH_PARAMETER, BUFFER_SIZE);
 		parameterMap.put(SrxTextIterator.MARGIN_PARAMETER, MARGIN);
-		return new SrxTextIterator(document, languageCode, reader, parameterMap);
+		return parameterMap;
 	}
-	
+
 }
@@ -0,0 +1,63 @@
+package net.loomchild.segment.srx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+
+import org.junit.Test;
+
+/**
+ * Tests iterator which has already segmented other text, partially
+ * and then fully, and has been reset.
+ */
+public class SrxTextIteratorResetTest extends AbstractSrxTextIteratorTest {
+	
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		SrxTextIterator textIterator = new SrxTextIterator(document, 
+				languageCode, text + " " + text);
+		textIterator.next();
+		textIterator.reset(new StringBuilder(text).reverse());
+		segment(textIterator);
+		textIterator.reset(text);
+		return textIterator;
+	}
+
+	/**
+	 * Tests if streaming iterator reset with text shorter than its margin
+	 * does not break segments when using 
+	 * {@link SrxTextIterator.OverflowPolicy#BREAK}.
+	 */
+	@Test
+	public void testResetStreaming() {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.BUFFER_LENGTH_PARAMETER, 200);
+		parameterMap.put(SrxTextIterator.MARGIN_PARAMETER, 20);
+		parameterMap.put(SrxTextIterator.OVERFLOW_POLICY_PARAMETER,
+				SrxTextIterator.OverflowPolicy.BREAK);
+		SrxTextIterator textIterator = new SrxTextIterator(
+				createDocument(), "", new StringReader("Streamed text."),
+				parameterMap);
+		segment(textIterator);
+		
+		textIterator.reset("Hello world. Bye.");
+		List<String> segmentList = segment(textIterator);
+		String[] segmentArray = segmentList.toArray(new String[segmentList.size()]);
+
+		assertEquals(new String[] {"Hello world.", " Bye."}, segmentArray);
+	}
+
+	private SrxDocument createDocument() {
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		SrxDocument document = new SrxDocument();
+		document.addLanguageMap(".*", languageRule);
+		return document;
+	}
+	
+}
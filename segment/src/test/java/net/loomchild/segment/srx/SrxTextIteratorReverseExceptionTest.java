@@ -0,0 +1,17 @@
+package net.loomchild.segment.srx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.loomchild.segment.TextIterator;
+
+public class SrxTextIteratorReverseExceptionTest extends AbstractSrxTextIteratorTest {
+	
+	protected TextIterator getTextIterator(SrxDocument document,
+			String languageCode, String text) {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.REVERSE_EXCEPTION_PARAMETER, true);
+		return new SrxTextIterator(document, languageCode, text, parameterMap);
+	}
+	
+}
@@ -51,5 +51,26 @@ public class SrxTextIteratorStringTest extends AbstractSrxTextIteratorTest {
 
 		assertEquals(MAX_LOOKBEHIND_CONSTRUCT_LENGTH_RESULT, segmentArray);
 	}
+
+	/**
+	 * Test if exception before patterns are not limited by 
+	 * {@link SrxTextIterator#MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER} 
+	 * when {@link SrxTextIterator#REVERSE_EXCEPTION_PARAMETER} is set.
+	 */
+	@Test
+	public void testReverseException() {
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put(SrxTextIterator.MAX_LOOKBEHIND_CONSTRUCT_LENGTH_PARAMETER, 2);
+		parameterMap.put(SrxTextIterator.REVERSE_EXCEPTION_PARAMETER, true);
+		
+		String text = merge(MAX_LOOKBEHIND_CONSTRUCT_LENGTH_RESULT);
+		TextIterator textIterator = 
+			new SrxTextIterator(MAX_LOOKBEHIND_CONSTRUCT_LENGTH_DOCUMENT, 
+					"", text, parameterMap);
+		List<String> segmentList = segment(textIterator);
+		String[] segmentArray = segmentList.toArray(new String[segmentList.size()]); 
+
+		assertEquals(new String[] {text}, segmentArray);
+	}
 	
 }
@@ -38,18 +38,49 @@ public class TextManagerTest {
 		assertEquals(2, manager.getBufferLength());
 
 		assertEquals("te", manager.getText().toString());
+		assertEquals(0, manager.getOffset());
 		assertEquals(true, manager.hasMoreText());		
 
 		manager.readText(1);
 		assertEquals("ex", manager.getText().toString());
+		assertEquals(1, manager.getOffset());
 		assertEquals(true, manager.hasMoreText());		
 
 		manager.readText(1);
 		assertEquals("xt", manager.getText().toString());
+		assertEquals(2, manager.getOffset());
 		assertEquals(false, manager.hasMoreText());		
 
 	}
 	
+	@Test
+	public void testReaderLongerThanInitialCapacity() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < TextManager.INITIAL_CAPACITY * 3; ++i) {
+			builder.append((char)('a' + i % 26));
+		}
+		String text = builder.toString();
+		int bufferLength = TextManager.INITIAL_CAPACITY * 2 + 1;
+		TextManager manager = 
+			new TextManager(new StringReader(text), bufferLength);
+		
+		CharSequence managerText = manager.getText();
+		assertEquals(text.substring(0, bufferLength), managerText.toString());
+		assertEquals(true, manager.hasMoreText());
+		
+		String segment = managerText.subSequence(0, 10).toString();
+		manager.readText(1000);
+		assertEquals(text.substring(1000, 1000 + bufferLength), 
+				manager.getText().toString());
+		assertEquals(text.substring(0, 10), segment);
+		assertEquals(1000, manager.getOffset());
+		
+		manager.readText(bufferLength);
+		assertEquals(text.substring(1000 + bufferLength), 
+				manager.getText().toString());
+		assertEquals(false, manager.hasMoreText());
+	}
+	
 	@Test
 	public void testEmptyReader() {
 		StringReader reader = new StringReader("");
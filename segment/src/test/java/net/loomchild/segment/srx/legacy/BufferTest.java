@@ -36,6 +36,18 @@ public class BufferTest {
 		assertEquals('g', charQueue.charAt(2));
 	}
 
+	@Test
+	public void testWideCharacter() {
+		Buffer charQueue = new Buffer(3);
+		charQueue.enqueue('\u00e9');
+		charQueue.enqueue('b');
+		charQueue.enqueue('\u0142');
+		charQueue.dequeue();
+		charQueue.forceEnqueue('\u00ff');
+		assertEquals("b\u0142\u00ff", charQueue.toString());
+		assertEquals("\u0142", charQueue.subSequence(1, 2).toString());
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void testOverflow() {
 		Buffer charQueue = new Buffer(3);
@@ -0,0 +1,94 @@
+package net.loomchild.segment.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class ChannelReaderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String TEXT = "Zdanie pierwsze. " +
+		"\u0179d\u017ab\u0142o \u017c\u00f3\u0142te. \ud834\udd1e " +
+		"\u6f22\u5b57\u3067\u3059. \ud834\udd1e";
+
+	/**
+	 * Tests if characters crossing byte buffer boundaries are decoded.
+	 */
+	@Test
+	public void testShortBuffer() throws IOException {
+		Reader reader = new ChannelReader(Channels.newChannel(
+				new ByteArrayInputStream(TEXT.getBytes("UTF-8"))), UTF_8,
+				ChannelReader.MIN_BUFFER_LENGTH);
+		assertEquals(TEXT, read(reader, 7));
+	}
+
+	/**
+	 * Tests if surrogate pairs are returned when reading single characters.
+	 */
+	@Test
+	public void testSingleCharacters() throws IOException {
+		Reader reader = new ChannelReader(
+				new ByteArrayInputStream(TEXT.getBytes("UTF-8")), UTF_8);
+		assertEquals(TEXT, read(reader, 1));
+	}
+
+	/**
+	 * Tests if decoded characters are returned without waiting for more
+	 * input, which would block on interactive input.
+	 */
+	@Test
+	public void testAvailableCharacters() throws IOException {
+		InputStream inputStream = new InputStream() {
+			private boolean read = false;
+			public int read() throws IOException {
+				throw new UnsupportedOperationException();
+			}
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (read) {
+					throw new IOException("Waiting for more input.");
+				}
+				read = true;
+				b[off] = 'a';
+				return 1;
+			}
+		};
+		Reader reader = new ChannelReader(inputStream, UTF_8);
+		char[] buffer = new char[16];
+		assertEquals(1, reader.read(buffer));
+		assertEquals('a', buffer[0]);
+	}
+
+	@Test
+	public void testMalformedInput() throws IOException {
+		Reader reader = new ChannelReader(new ByteArrayInputStream(
+				new byte[] {'a', (byte)0xff, 'b'}), UTF_8);
+		assertEquals("a\ufffdb", read(reader, 16));
+	}
+
+	@Test(expected=IOException.class)
+	public void testClosed() throws IOException {
+		Reader reader = new ChannelReader(
+				new ByteArrayInputStream(new byte[0]), UTF_8);
+		reader.close();
+		reader.read(new char[1]);
+	}
+
+	private String read(Reader reader, int length) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[length];
+		int count;
+		while ((count = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, count);
+		}
+		return builder.toString();
+	}
+
+}
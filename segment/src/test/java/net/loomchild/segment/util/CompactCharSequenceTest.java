@@ -0,0 +1,94 @@
+package net.loomchild.segment.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import net.loomchild.segment.srx.LanguageRule;
+import net.loomchild.segment.srx.Rule;
+import net.loomchild.segment.srx.SrxDocument;
+import net.loomchild.segment.srx.SrxTextIterator;
+
+import org.junit.Test;
+
+public class CompactCharSequenceTest {
+
+	private static final String LATIN1_TEXT = "Caf\u00e9 cr\u00e8me. Ni\u00f1o \u00ff.";
+
+	private static final String WIDE_TEXT = "Caf\u00e9. \u0179d\u017ab\u0142o. \ud834\udd1e.";
+
+	@Test
+	public void testLatin1() {
+		CompactCharSequence sequence = CompactCharSequence.valueOf(LATIN1_TEXT);
+		assertTrue(sequence.isLatin1());
+		assertSequence(LATIN1_TEXT, sequence);
+	}
+
+	@Test
+	public void testWide() {
+		CompactCharSequence sequence = CompactCharSequence.valueOf(WIDE_TEXT);
+		assertFalse(sequence.isLatin1());
+		assertSequence(WIDE_TEXT, sequence);
+	}
+
+	/**
+	 * Tests if reading switches to UTF-16 when wide character is found
+	 * after many Latin-1 characters.
+	 */
+	@Test
+	public void testRead() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			builder.append(LATIN1_TEXT);
+		}
+		String latin1Text = builder.toString();
+		CompactCharSequence sequence = 
+			CompactCharSequence.read(new StringReader(latin1Text));
+		assertTrue(sequence.isLatin1());
+		assertSequence(latin1Text, sequence);
+		builder.append(WIDE_TEXT);
+		String text = builder.toString();
+		sequence = CompactCharSequence.read(new StringReader(text));
+		assertFalse(sequence.isLatin1());
+		assertSequence(text, sequence);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfBounds() {
+		CompactCharSequence.valueOf(LATIN1_TEXT).subSequence(1, 3).charAt(2);
+	}
+
+	/**
+	 * Tests if text iterator accepts compact sequence directly.
+	 */
+	@Test
+	public void testSegmentation() {
+		SrxDocument document = new SrxDocument();
+		LanguageRule languageRule = new LanguageRule("");
+		languageRule.addRule(new Rule(true, "\\.", "\\s"));
+		document.addLanguageMap(".*", languageRule);
+		SrxTextIterator expectedIterator = 
+			new SrxTextIterator(document, "", LATIN1_TEXT);
+		SrxTextIterator iterator = new SrxTextIterator(document, "", 
+				CompactCharSequence.valueOf(LATIN1_TEXT));
+		while (expectedIterator.hasNext()) {
+			assertEquals(expectedIterator.next(), iterator.next());
+		}
+		assertFalse(iterator.hasNext());
+	}
+
+	private void assertSequence(String expected, CharSequence sequence) {
+		assertEquals(expected.length(), sequence.length());
+		for (int i = 0; i < expected.length(); ++i) {
+			assertEquals(expected.charAt(i), sequence.charAt(i));
+		}
+		assertEquals(expected, sequence.toString());
+		assertEquals(expected.substring(3, 10), 
+				sequence.subSequence(3, 10).toString());
+		assertEquals(expected.substring(5, 7), 
+				sequence.subSequence(3, 10).subSequence(2, 4).toString());
+	}
+
+}
@@ -0,0 +1,90 @@
+package net.loomchild.segment.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String TEXT = "a\ud83d\ude00b. " +
+		"\u0179d\u017ab\u0142o \u017c\u00f3\u0142te. \ud834\udd1e " +
+		"\u6f22\u5b57\u3067\u3059. \ud834\udd1e";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("segment", ".txt");
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(TEXT.getBytes("UTF-8"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Tests if characters crossing mapped part boundaries are decoded.
+	 */
+	@Test
+	public void testShortMap() throws IOException {
+		Reader reader = new MappedFileReader(file, UTF_8, 
+				MappedFileReader.MIN_MAP_LENGTH);
+		try {
+			assertEquals(TEXT, read(reader, 7));
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Tests if surrogate pairs are returned when there is space only for
+	 * a single character.
+	 */
+	@Test
+	public void testSingleCharacters() throws IOException {
+		for (int length = 1; length <= 3; ++length) {
+			Reader reader = new MappedFileReader(file, UTF_8, 
+					MappedFileReader.MIN_MAP_LENGTH);
+			try {
+				assertEquals(TEXT, read(reader, length));
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testClosed() throws IOException {
+		Reader reader = new MappedFileReader(file, UTF_8);
+		reader.close();
+		reader.read(new char[1]);
+	}
+
+	private String read(Reader reader, int length) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[length];
+		int count;
+		while ((count = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, count);
+		}
+		return builder.toString();
+	}
+
+}